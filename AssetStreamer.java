@@ -0,0 +1,132 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+
+/**
+ * An asset streamer loads the assets of a scene from the asset directory on a background thread while
+ * the scene is drawn with proxies, and swaps them into the scene as they become ready: first the road,
+ * the terrain, and the vehicles, and then the sky. Texture atlases, mip maps, road chunks, and the sky
+ * panorama are all built on the streaming thread, so the scene thread only ever picks up new references
+ * and loading never stalls a frame.
+ * <p>
+ * The streamer measures the time to the first frame, and the time to the first frame drawn entirely
+ * from the loaded assets, both from the start of the JVM, which is the wait a user sees.
+ */
+public class AssetStreamer implements Runnable {
+    private final PrintStream report;
+    private Scene scene;
+    private Thread thread;
+    private volatile boolean stopped;
+    private volatile boolean loaded;
+    private boolean loadedBeforeFrame;
+    private long loadMillis;
+    private long firstFrameMillis;
+    private long fullQualityMillis;
+
+    /**
+     * Constructs an asset streamer.
+     * @param report the stream the times to the first frame and to full quality are printed to once
+     *     the loaded assets are drawn, or null to print nothing
+     */
+    public AssetStreamer(PrintStream report) {
+        this.report = report;
+        stopped = false;
+        loaded = false;
+        loadedBeforeFrame = false;
+        loadMillis = -1L;
+        firstFrameMillis = -1L;
+        fullQualityMillis = -1L;
+    }
+
+    /**
+     * Starts the thread that loads the assets of a scene and swaps them in.
+     * @param scene the scene to swap the loaded assets into
+     */
+    public void start(Scene scene) {
+        this.scene = scene;
+        thread = new Thread(this, "AssetStreamer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops swapping assets into the scene. An asset that is being loaded is still loaded, but is not
+     * swapped in. The thread is not interrupted, since an interrupt closes the file being read.
+     */
+    public void stop() {
+        stopped = true;
+        thread = null;
+    }
+
+    /**
+     * Gets the thread that loads the assets.
+     * @return the streaming thread, or null if the streamer is not running
+     */
+    public Thread getThread() {
+        return thread;
+    }
+
+    /**
+     * Records that the scene has swapped a frame. Called by the scene thread after every frame.
+     */
+    public void frameDrawn() {
+        long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+        if (firstFrameMillis < 0L) {
+            firstFrameMillis = uptime;
+        }
+
+        // A frame started before the last swap may still have drawn proxies, so full quality is
+        // reached at the end of the first frame started after it.
+        if (fullQualityMillis < 0L && loadedBeforeFrame) {
+            fullQualityMillis = uptime;
+            if (report != null) {
+                report.printf("First frame after %d ms, full quality after %d ms (assets loaded in %d ms)%n",
+                    firstFrameMillis, fullQualityMillis, loadMillis);
+            }
+        }
+
+        loadedBeforeFrame = loaded;
+    }
+
+    /**
+     * Gets the time from the start of the JVM to the end of the first frame.
+     * @return the time to the first frame in milliseconds, or -1 before the first frame
+     */
+    public long getFirstFrameMillis() {
+        return firstFrameMillis;
+    }
+
+    /**
+     * Gets the time from the start of the JVM to the end of the first frame drawn entirely from the
+     * loaded assets.
+     * @return the time to full quality in milliseconds, or -1 before the loaded assets are drawn
+     */
+    public long getFullQualityMillis() {
+        return fullQualityMillis;
+    }
+
+    /**
+     * The implementation of Runnable.
+     */
+    @Override
+    public void run() {
+        long start = System.nanoTime();
+        Model road = SceneAssets.loadModel("road");
+        Model terrain = SceneAssets.loadModel("terrain");
+        Model camero = SceneAssets.loadModel("camero");
+        Model policeCar = SceneAssets.loadModel("policeCar");
+        if (stopped) {
+            return;
+        }
+
+        scene.setModels(road, terrain, camero, policeCar);
+
+        Model sky = SceneAssets.loadModel("sky");
+        if (stopped) {
+            return;
+        }
+
+        scene.setSky(sky);
+        loadMillis = (System.nanoTime() - start) / 1000000L;
+        loaded = true;
+    }
+}
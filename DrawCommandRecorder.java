@@ -0,0 +1,154 @@
+import java.awt.Graphics2D;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A draw command recorder is a render context that forwards every call to another render context
+ * and records it to a file, so the exact rendering workload can be replayed by DrawCommandReplay
+ * without running the simulation. Only one thread may draw into the recorder.
+ * <p>
+ * File layout: the magic number, the screen width, and the screen height; then a sequence of records,
+ * each starting with a tag. A MODEL record defines a model id by its files and whether it is an occluder
+ * the first time the model is drawn, followed by its triangles when the model was not loaded from a file,
+ * a DRAW record holds a model id and its transformation, and a FRAME record ends a frame and
+ * holds the camera position, target, and up-axis.
+ */
+public class DrawCommandRecorder implements RenderContext {
+    static final int MAGIC = 0x43414344;
+    static final byte MODEL = 'M';
+    static final byte DRAW = 'D';
+    static final byte FRAME = 'F';
+
+    private final RenderContext context;
+    private final DataOutputStream out;
+    private final Map<Model, Integer> modelIds;
+    private int frameCount;
+
+    /**
+     * Constructs a draw command recorder and writes the file header.
+     * @param context the render context every call is forwarded to
+     * @param path the file to record to
+     * @param width the screen width
+     * @param height the screen height
+     * @throws IOException when the file cannot be created
+     */
+    public DrawCommandRecorder(RenderContext context, String path, int width, int height) throws IOException {
+        this.context = context;
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16));
+        modelIds = new IdentityHashMap<>();
+        out.writeInt(MAGIC);
+        out.writeInt(width);
+        out.writeInt(height);
+    }
+
+    /**
+     * Gets the camera of the forwarded render context.
+     * @return the camera
+     */
+    @Override
+    public Camera getCamera() {
+        return context.getCamera();
+    }
+
+    /**
+     * Records a draw command, and then forwards it.
+     * @param model the model to draw
+     * @param transform the model transformation of the model
+     */
+    @Override
+    public void drawModel(Model model, double[] transform) {
+        try {
+            Integer id = modelIds.get(model);
+            if (id == null) {
+                id = modelIds.size();
+                modelIds.put(model, id);
+                out.writeByte(MODEL);
+                out.writeInt(id);
+                out.writeUTF(model.getFileName() != null ? model.getFileName() : "");
+                out.writeUTF(model.getTextureFileName() != null ? model.getTextureFileName() : "");
+                out.writeBoolean(model.isOccluder());
+                if (model.getFileName() == null) {
+                    writeTriangles(model.getTriangles(), model.getTexCoordOffset());
+                }
+            }
+
+            out.writeByte(DRAW);
+            out.writeInt(id);
+            for (int i = 0; i < 16; i++) {
+                out.writeDouble(transform[i]);
+            }
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        context.drawModel(model, transform);
+    }
+
+    /**
+     * Records the end of a frame with the camera, and then forwards the render.
+     * @param g the device context used to draw the models
+     */
+    @Override
+    public void render(Graphics2D g) {
+        Camera camera = context.getCamera();
+
+        try {
+            out.writeByte(FRAME);
+            writeVec3(camera.getPosition());
+            writeVec3(camera.getTarget());
+            writeVec3(camera.getUp());
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        frameCount++;
+        context.render(g);
+    }
+
+    /**
+     * Gets the number of frames recorded.
+     * @return the number of frames recorded
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Flushes and closes the file.
+     * @throws IOException when the file cannot be written
+     */
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Writes triangles with the texture coordinates of the texture file, undoing any texture atlas offset.
+     */
+    private void writeTriangles(Model.Triangle[] triangles, Vec2 texCoordOffset) throws IOException {
+        out.writeInt(triangles.length);
+        for (Model.Triangle triangle : triangles) {
+            writeVertex(triangle.getA(), texCoordOffset);
+            writeVertex(triangle.getB(), texCoordOffset);
+            writeVertex(triangle.getC(), texCoordOffset);
+            writeVec3(triangle.getNormal());
+        }
+    }
+
+    private void writeVertex(Model.Vertex vertex, Vec2 texCoordOffset) throws IOException {
+        writeVec3(vertex.getPosition());
+        out.writeDouble(vertex.getTexCoord().getX() - texCoordOffset.getX());
+        out.writeDouble(vertex.getTexCoord().getY() - texCoordOffset.getY());
+    }
+
+    private void writeVec3(Vec3 vector) throws IOException {
+        out.writeDouble(vector.getX());
+        out.writeDouble(vector.getY());
+        out.writeDouble(vector.getZ());
+    }
+}
@@ -0,0 +1,256 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import javax.imageio.ImageIO;
+
+/**
+ * A draw command replay loads a file written by DrawCommandRecorder into memory and feeds its
+ * frames into a render context as fast as possible, timing every frame and checksumming the
+ * rendered image. This gives a reproducible workload for comparing renderer backends.
+ */
+public class DrawCommandReplay {
+    private final int width;
+    private final int height;
+    private final List<Model> models;
+    private final List<Frame> frames;
+
+    /**
+     * Loads a recorded file and the models it references.
+     * @param path the recorded file
+     * @throws IOException when the file cannot be read or is not a draw command recording
+     */
+    public DrawCommandReplay(String path) throws IOException {
+        models = new ArrayList<>();
+        frames = new ArrayList<>();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path), 1 << 16))) {
+            if (in.readInt() != DrawCommandRecorder.MAGIC) {
+                throw new IOException("Not a draw command recording: " + path);
+            }
+
+            width = in.readInt();
+            height = in.readInt();
+            List<Integer> modelIds = new ArrayList<>();
+            List<double[]> transforms = new ArrayList<>();
+
+            for (;;) {
+                int tag;
+                try {
+                    tag = in.readByte();
+                }
+                catch (EOFException e) {
+                    break;
+                }
+
+                switch (tag) {
+                case DrawCommandRecorder.MODEL: {
+                    int id = in.readInt();
+                    String fileName = in.readUTF();
+                    String textureFileName = in.readUTF();
+                    boolean occluder = in.readBoolean();
+                    while (models.size() <= id) {
+                        models.add(null);
+                    }
+                    models.set(id, fileName.isEmpty()
+                        ? Model.create(readTriangles(in), textureFileName.isEmpty() ? null : textureFileName,
+                            textureFileName.isEmpty() ? null : ImageIO.read(new File(textureFileName)))
+                        : Model.load(fileName, textureFileName.isEmpty() ? null : textureFileName));
+                    models.get(id).setOccluder(occluder);
+                } break;
+
+                case DrawCommandRecorder.DRAW: {
+                    modelIds.add(in.readInt());
+                    double[] transform = new double[16];
+                    for (int i = 0; i < 16; i++) {
+                        transform[i] = in.readDouble();
+                    }
+                    transforms.add(transform);
+                } break;
+
+                case DrawCommandRecorder.FRAME: {
+                    Frame frame = new Frame(readVec3(in), readVec3(in), readVec3(in),
+                        modelIds.stream().mapToInt(Integer::intValue).toArray(),
+                        transforms.toArray(new double[transforms.size()][]));
+                    frames.add(frame);
+                    modelIds.clear();
+                    transforms.clear();
+                } break;
+
+                default:
+                    throw new IOException("Corrupt draw command recording: " + path);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the screen width the commands were recorded with.
+     * @return the screen width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the screen height the commands were recorded with.
+     * @return the screen height
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the number of recorded frames.
+     * @return the number of recorded frames
+     */
+    public int getFrameCount() {
+        return frames.size();
+    }
+
+    /**
+     * Renders every recorded frame into an image.
+     * @param context the render context to feed the commands into
+     * @param target the image to render into, which must be of type TYPE_INT_RGB
+     * @param frameNanos receives the render time of every frame
+     * @param checksums receives the CRC-32 of the rendered image of every frame
+     */
+    public void replay(RenderContext context, BufferedImage target, long[] frameNanos, long[] checksums) {
+        Graphics2D g = target.createGraphics();
+        int[] pixels = ((DataBufferInt) target.getRaster().getDataBuffer()).getData();
+        CRC32 crc = new CRC32();
+
+        for (int i = 0; i < frames.size(); i++) {
+            Frame frame = frames.get(i);
+            long start = System.nanoTime();
+
+            g.setColor(new Color(0, 127, 255));
+            g.setTransform(new AffineTransform());
+            g.fillRect(0, 0, target.getWidth(), target.getHeight());
+            context.getCamera().setPosition(frame.cameraPosition);
+            context.getCamera().setTarget(frame.cameraTarget);
+            context.getCamera().setUp(frame.cameraUp);
+
+            for (int j = 0; j < frame.modelIds.length; j++) {
+                context.drawModel(models.get(frame.modelIds[j]), frame.transforms[j]);
+            }
+
+            context.render(g);
+            frameNanos[i] = System.nanoTime() - start;
+
+            crc.reset();
+            for (int j = 0; j < pixels.length; j++) {
+                crc.update(pixels[j] >> 16);
+                crc.update(pixels[j] >> 8);
+                crc.update(pixels[j]);
+            }
+            checksums[i] = crc.getValue();
+        }
+
+        g.dispose();
+    }
+
+    /**
+     * Replays a recorded file through the software renderer and reports frame times and checksums.
+     * @param args the recorded file, the number of passes (default 3), and an optional CSV file that
+     *     receives the time and checksum of every frame of the last pass
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java DrawCommandReplay <capture> [passes] [csv]");
+            System.exit(-1);
+        }
+
+        DrawCommandReplay replay = new DrawCommandReplay(args[0]);
+        int passes = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        BufferedImage target = new BufferedImage(replay.getWidth(), replay.getHeight(), BufferedImage.TYPE_INT_RGB);
+        long[] frameNanos = new long[replay.getFrameCount()];
+        long[] checksums = new long[replay.getFrameCount()];
+
+        for (int pass = 0; pass < passes; pass++) {
+            replay.replay(new Renderer(replay.getWidth(), replay.getHeight()), target, frameNanos, checksums);
+
+            long total = Arrays.stream(frameNanos).sum();
+            long[] sorted = frameNanos.clone();
+            Arrays.sort(sorted);
+            CRC32 crc = new CRC32();
+            for (long checksum : checksums) {
+                crc.update((int) checksum >> 24);
+                crc.update((int) checksum >> 16);
+                crc.update((int) checksum >> 8);
+                crc.update((int) checksum);
+            }
+
+            System.out.printf("pass %d: %d frames, %.1f fps, mean %.3f ms, p50 %.3f ms, p99 %.3f ms, checksum %08x%n",
+                pass,
+                sorted.length,
+                sorted.length / (total / 1.0e9),
+                total / 1.0e6 / sorted.length,
+                sorted[sorted.length / 2] / 1.0e6,
+                sorted[Math.max(0, (int) Math.ceil(sorted.length * 0.99) - 1)] / 1.0e6,
+                crc.getValue());
+        }
+
+        if (args.length > 2) {
+            try (PrintStream csv = new PrintStream(args[2])) {
+                csv.println("frame,millis,crc32");
+                for (int i = 0; i < frameNanos.length; i++) {
+                    csv.printf("%d,%.4f,%08x%n", i, frameNanos[i] / 1.0e6, checksums[i]);
+                }
+            }
+        }
+    }
+
+    private static Model.Triangle[] readTriangles(DataInputStream in) throws IOException {
+        Model.Triangle[] triangles = new Model.Triangle[in.readInt()];
+        for (int i = 0; i < triangles.length; i++) {
+            triangles[i] = new Model.Triangle(readVertex(in), readVertex(in), readVertex(in), readVec3(in));
+        }
+        return triangles;
+    }
+
+    private static Model.Vertex readVertex(DataInputStream in) throws IOException {
+        return new Model.Vertex(readVec3(in), new Vec2(in.readDouble(), in.readDouble()));
+    }
+
+    private static Vec3 readVec3(DataInputStream in) throws IOException {
+        return new Vec3(in.readDouble(), in.readDouble(), in.readDouble());
+    }
+
+    private static class Frame {
+        private final Vec3 cameraPosition;
+        private final Vec3 cameraTarget;
+        private final Vec3 cameraUp;
+        private final int[] modelIds;
+        private final double[][] transforms;
+
+        /**
+         * Constructs a recorded frame.
+         * @param cameraPosition the camera position
+         * @param cameraTarget the camera target
+         * @param cameraUp the camera up-axis
+         * @param modelIds the ids of the drawn models in draw order
+         * @param transforms the model transformations in draw order
+         */
+        public Frame(Vec3 cameraPosition, Vec3 cameraTarget, Vec3 cameraUp, int[] modelIds, double[][] transforms) {
+            this.cameraPosition = cameraPosition;
+            this.cameraTarget = cameraTarget;
+            this.cameraUp = cameraUp;
+            this.modelIds = modelIds;
+            this.transforms = transforms;
+        }
+    }
+}
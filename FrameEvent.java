@@ -0,0 +1,76 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A JFR event emitted by FrameProfiler for every rendered frame.
+ */
+@Name("CarAnimation.Frame")
+@Label("Frame")
+@Category("Car Animation")
+@Description("Time spent in each stage of a rendered frame, and the number of models and triangles")
+public class FrameEvent extends Event {
+    @Label("Scene Submit")
+    @Timespan(Timespan.NANOSECONDS)
+    long submit;
+
+    @Label("View-Projection Setup")
+    @Timespan(Timespan.NANOSECONDS)
+    long setup;
+
+    @Label("Vertex Transform")
+    @Timespan(Timespan.NANOSECONDS)
+    long transform;
+
+    @Label("Sort")
+    @Timespan(Timespan.NANOSECONDS)
+    long sort;
+
+    @Label("Cull")
+    @Timespan(Timespan.NANOSECONDS)
+    long cull;
+
+    @Label("Fill")
+    @Timespan(Timespan.NANOSECONDS)
+    long fill;
+
+    @Label("Present")
+    @Timespan(Timespan.NANOSECONDS)
+    long present;
+
+    @Label("Pursuit AI")
+    @Timespan(Timespan.NANOSECONDS)
+    long pursuit;
+
+    @Label("Occlusion Cull")
+    @Timespan(Timespan.NANOSECONDS)
+    long occlusion;
+
+    @Label("Sky")
+    @Timespan(Timespan.NANOSECONDS)
+    long sky;
+
+    @Label("Models")
+    int models;
+
+    @Label("Triangles Submitted")
+    int trianglesSubmitted;
+
+    @Label("Triangles Culled")
+    int trianglesCulled;
+
+    @Label("Triangles Drawn")
+    int trianglesDrawn;
+
+    @Label("Models Occluded")
+    int modelsOccluded;
+
+    @Label("Texture Switches")
+    int textureSwitches;
+
+    @Label("Texel Footprint (Thousands)")
+    int texelFootprint;
+}
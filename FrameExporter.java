@@ -0,0 +1,419 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.imageio.ImageIO;
+
+/**
+ * A frame exporter is an output graphics provider that writes every swapped frame to disk,
+ * either as a numbered PNG sequence or as an uncompressed Y4M or raw RGB stream.
+ * Swapped frames are copied into pooled buffers and encoded by background threads; when every
+ * pooled buffer is still waiting to be written, the frame is dropped instead of stalling the caller,
+ * unless the exporter is blocking.
+ * <p>
+ * When a frame cannot be written, such as when the disk is full, the encoders keep returning queued
+ * frames to the pool without writing them, so that nothing waits on them, and the error is thrown by
+ * the next swap and by close.
+ */
+public class FrameExporter implements OutputGraphicsProvider {
+    /**
+     * Writes each frame to its own PNG file in a directory.
+     */
+    public static final int PNG = 0;
+
+    /**
+     * Writes a YUV4MPEG2 stream with 4:2:0 chroma subsampling.
+     */
+    public static final int Y4M = 1;
+
+    /**
+     * Writes a headerless stream of packed 24-bit RGB pixels.
+     */
+    public static final int RGB = 2;
+
+    private static final ExportFrame END = new ExportFrame(null);
+
+    private final int width;
+    private final int height;
+    private final int format;
+    private final Path path;
+    private final BufferedImage backBuffer;
+    private final Graphics2D graphics2D;
+    private final BlockingQueue<ExportFrame> freeFrames;
+    private final BlockingQueue<ExportFrame> queuedFrames;
+    private final Thread[] encoders;
+    private final AtomicInteger writtenFrames;
+    private final AtomicLong writtenBytes;
+    private final AtomicReference<IOException> error;
+    private final long startNanos;
+    private FileChannel channel;
+    private int frameIndex;
+    private int droppedFrames;
+    private boolean blocking;
+
+    /**
+     * Constructs a frame exporter and starts its encoder threads.
+     * @param width the frame width
+     * @param height the frame height
+     * @param format the output format, which is PNG, Y4M, or RGB
+     * @param path the output directory for PNG, or the output file for Y4M and RGB
+     * @param frameRate the frame rate written into the Y4M header
+     * @param queueLength the number of pooled frames that can wait to be written
+     * @param threadCount the number of PNG encoder threads; streams always use a single writer
+     * @throws IOException when the output cannot be created
+     */
+    public FrameExporter(int width, int height, int format, String path, int frameRate, int queueLength, int threadCount)
+        throws IOException
+    {
+        if (format == Y4M && (width % 2 != 0 || height % 2 != 0)) {
+            throw new IllegalArgumentException("width and height must be even for Y4M");
+        }
+
+        this.width = width;
+        this.height = height;
+        this.format = format;
+        this.path = Path.of(path);
+        backBuffer = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        graphics2D = backBuffer.createGraphics();
+        freeFrames = new ArrayBlockingQueue<>(queueLength);
+        queuedFrames = new ArrayBlockingQueue<>(queueLength + threadCount);
+        writtenFrames = new AtomicInteger();
+        writtenBytes = new AtomicLong();
+        error = new AtomicReference<>();
+
+        for (int i = 0; i < queueLength; i++) {
+            freeFrames.add(new ExportFrame(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB)));
+        }
+
+        if (format == PNG) {
+            Files.createDirectories(this.path);
+        }
+        else {
+            channel = FileChannel.open(this.path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+            if (format == Y4M) {
+                String header = "YUV4MPEG2 W" + width + " H" + height + " F" + frameRate + ":1 Ip A1:1 C420jpeg\n";
+                write(ByteBuffer.wrap(header.getBytes(StandardCharsets.US_ASCII)));
+            }
+        }
+
+        encoders = new Thread[format == PNG ? threadCount : 1];
+        for (int i = 0; i < encoders.length; i++) {
+            encoders[i] = new Thread(this::encodeLoop, "FrameExporter-" + i);
+            encoders[i].setDaemon(true);
+            encoders[i].start();
+        }
+
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Gets the output format with a name.
+     * @param name the name of the format, which is png, y4m, or rgb
+     * @return the output format, which is PNG, Y4M, or RGB
+     */
+    public static int getFormat(String name) {
+        switch (name) {
+        case "png":
+            return PNG;
+
+        case "y4m":
+            return Y4M;
+
+        case "rgb":
+            return RGB;
+
+        default:
+            throw new IllegalArgumentException("Unknown export format: " + name);
+        }
+    }
+
+    /**
+     * Gets the device context.
+     * @return the device context
+     */
+    @Override
+    public Graphics2D getGraphics2D() {
+        return graphics2D;
+    }
+
+    /**
+     * Gets the back buffer that the device context draws into.
+     * @return the back buffer
+     */
+    @Override
+    public BufferedImage getBackBuffer() {
+        return backBuffer;
+    }
+
+    /**
+     * Gets the back buffer width.
+     * @return the back buffer width
+     */
+    @Override
+    public int getBufferWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the back buffer height.
+     * @return the back buffer height
+     */
+    @Override
+    public int getBufferHeight() {
+        return height;
+    }
+
+    /**
+     * Sets the index of the next swapped frame, which numbers the files of a PNG sequence.
+     * @param frameIndex the index of the next frame
+     */
+    public void setFrameIndex(int frameIndex) {
+        this.frameIndex = frameIndex;
+    }
+
+    /**
+     * Sets whether swapping waits for a free pooled frame instead of dropping the frame.
+     * Offline rendering blocks so that no frame is lost.
+     * @param blocking true to wait for a free pooled frame
+     */
+    public void setBlocking(boolean blocking) {
+        this.blocking = blocking;
+    }
+
+    /**
+     * Copies the back buffer into a pooled frame and queues it for writing.
+     * The frame is dropped when no pooled frame is free, unless the exporter is blocking.
+     * @throws IllegalStateException when an earlier frame could not be written
+     */
+    @Override
+    public void swapBuffers() {
+        if (error.get() != null) {
+            throw new IllegalStateException("Cannot write exported frames", error.get());
+        }
+
+        ExportFrame frame = freeFrames.poll();
+
+        if (frame == null && blocking) {
+            try {
+                frame = freeFrames.take();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (frame == null) {
+            droppedFrames++;
+        }
+        else {
+            System.arraycopy(getPixels(backBuffer), 0, getPixels(frame.image), 0, width * height);
+            frame.index = frameIndex;
+            queuedFrames.add(frame);
+        }
+
+        frameIndex++;
+    }
+
+    /**
+     * Gets the number of frames dropped because the encoders could not keep up.
+     * @return the number of dropped frames
+     */
+    public int getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * Gets the number of frames waiting to be written.
+     * @return the number of queued frames
+     */
+    public int getQueuedFrames() {
+        return queuedFrames.size();
+    }
+
+    /**
+     * Gets the number of frames written to disk.
+     * @return the number of written frames
+     */
+    public int getWrittenFrames() {
+        return writtenFrames.get();
+    }
+
+    /**
+     * Returns a readable summary of the exported frames and the sustained write throughput.
+     * @return a summary of the export
+     */
+    public String getReport() {
+        double seconds = (System.nanoTime() - startNanos) / 1.0e9;
+        return String.format("export: %d written, %d queued, %d dropped, %.1f fps, %.1f MB/s",
+            writtenFrames.get(),
+            queuedFrames.size(),
+            droppedFrames,
+            writtenFrames.get() / seconds,
+            writtenBytes.get() / 1.0e6 / seconds);
+    }
+
+    /**
+     * Writes every queued frame, stops the encoder threads, and closes the output.
+     * @throws IOException when a frame could not be written, or the output cannot be closed
+     */
+    public void close() throws IOException {
+        try {
+            for (int i = 0; i < encoders.length; i++) {
+                queuedFrames.put(END);
+            }
+            for (int i = 0; i < encoders.length; i++) {
+                encoders[i].join();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (channel != null) {
+            channel.close();
+        }
+
+        if (error.get() != null) {
+            throw error.get();
+        }
+    }
+
+    private void encodeLoop() {
+        ByteBuffer buffer = format == PNG
+            ? null
+            : ByteBuffer.allocateDirect(format == Y4M ? 6 + width * height * 3 / 2 : width * height * 3);
+
+        try {
+            for (;;) {
+                ExportFrame frame = queuedFrames.take();
+                if (frame == END) {
+                    return;
+                }
+
+                try {
+                    // After a failed write the stream is incomplete, so later frames are not written.
+                    if (error.get() == null) {
+                        encode(frame, buffer);
+                        writtenFrames.incrementAndGet();
+                    }
+                }
+                catch (IOException e) {
+                    error.compareAndSet(null, e);
+                }
+                finally {
+                    // The pool holds every frame, so returning one never waits.
+                    freeFrames.add(frame);
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void encode(ExportFrame frame, ByteBuffer buffer) throws IOException {
+        if (format == PNG) {
+            File file = path.resolve(String.format("frame%06d.png", frame.index)).toFile();
+            ImageIO.write(frame.image, "png", file);
+            writtenBytes.addAndGet(file.length());
+        }
+        else {
+            buffer.clear();
+            if (format == Y4M) {
+                encodeY4m(getPixels(frame.image), buffer);
+            }
+            else {
+                encodeRgb(getPixels(frame.image), buffer);
+            }
+            buffer.flip();
+            writtenBytes.addAndGet(write(buffer));
+        }
+    }
+
+    private int write(ByteBuffer buffer) throws IOException {
+        int bytes = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        return bytes;
+    }
+
+    private void encodeRgb(int[] pixels, ByteBuffer buffer) {
+        for (int i = 0; i < pixels.length; i++) {
+            int pixel = pixels[i];
+            buffer.put((byte) (pixel >> 16));
+            buffer.put((byte) (pixel >> 8));
+            buffer.put((byte) pixel);
+        }
+    }
+
+    private void encodeY4m(int[] pixels, ByteBuffer buffer) {
+        buffer.put("FRAME\n".getBytes(StandardCharsets.US_ASCII));
+
+        for (int i = 0; i < pixels.length; i++) {
+            int pixel = pixels[i];
+            int r = (pixel >> 16) & 0xFF;
+            int g = (pixel >> 8) & 0xFF;
+            int b = pixel & 0xFF;
+            buffer.put((byte) ((77 * r + 150 * g + 29 * b + 128) >> 8));
+        }
+
+        int chromaStart = buffer.position();
+        int chromaSize = width * height / 4;
+
+        for (int y = 0; y < height; y += 2) {
+            for (int x = 0; x < width; x += 2) {
+                int r = 0;
+                int g = 0;
+                int b = 0;
+
+                for (int i = 0; i < 4; i++) {
+                    int pixel = pixels[(y + i / 2) * width + x + i % 2];
+                    r += (pixel >> 16) & 0xFF;
+                    g += (pixel >> 8) & 0xFF;
+                    b += pixel & 0xFF;
+                }
+
+                int u = (-43 * r - 85 * g + 128 * b + 512) / 1024 + 128;
+                int v = (128 * r - 107 * g - 21 * b + 512) / 1024 + 128;
+                int offset = y / 2 * (width / 2) + x / 2;
+                buffer.put(chromaStart + offset, (byte) Math.max(0, Math.min(255, u)));
+                buffer.put(chromaStart + chromaSize + offset, (byte) Math.max(0, Math.min(255, v)));
+            }
+        }
+
+        buffer.position(chromaStart + 2 * chromaSize);
+    }
+
+    private static int[] getPixels(BufferedImage image) {
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    private static class ExportFrame {
+        private final BufferedImage image;
+        private int index;
+
+        /**
+         * Constructs an export frame.
+         * @param image the pooled image the frame is copied into
+         */
+        public ExportFrame(BufferedImage image) {
+            this.image = image;
+        }
+    }
+}
@@ -0,0 +1,329 @@
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Times the stages of every rendered frame and counts the models and triangles it draws.
+ * Each frame is emitted as a FrameEvent to JFR, and rolling percentiles over the recent frames
+ * are readable through JMX under CarAnimation:type=FrameProfiler.
+ * The profiler is enabled by the system property profiler.enabled, or by hud.enabled since the
+ * performance HUD displays its measurements; when disabled, every method returns immediately and
+ * is folded away by the JIT compiler.
+ * Stages and counters are recorded by the rendering thread only; viewport workers measure their own
+ * and the rendering thread adds them up.
+ */
+public final class FrameProfiler implements FrameProfilerMXBean {
+    public static final boolean ENABLED = Boolean.getBoolean("profiler.enabled") || Boolean.getBoolean("hud.enabled");
+
+    public static final int SUBMIT = 0;
+    public static final int SETUP = 1;
+    public static final int TRANSFORM = 2;
+    public static final int SORT = 3;
+    public static final int CULL = 4;
+    public static final int FILL = 5;
+    /**
+     * Times the swap of the back buffer. When the output presents on its own thread, as a pipelined
+     * PresentPipeline does, this only times handing the back buffer over and waiting for a free one,
+     * not the present itself; FrameStats reports the present time of the presenter thread.
+     */
+    public static final int PRESENT = 6;
+    public static final int PURSUIT = 7;
+    public static final int OCCLUSION = 8;
+    public static final int SKY = 9;
+    public static final int STAGE_COUNT = 10;
+
+    public static final int MODELS = 0;
+    public static final int TRIANGLES_SUBMITTED = 1;
+    public static final int TRIANGLES_CULLED = 2;
+    public static final int TRIANGLES_DRAWN = 3;
+    public static final int MODELS_OCCLUDED = 4;
+    public static final int TEXTURE_SWITCHES = 5;
+    public static final int TEXEL_FOOTPRINT = 6;
+    public static final int COUNTER_COUNT = 7;
+
+    private static final String[] STAGE_NAMES = {
+        "submit", "setup", "transform", "sort", "cull", "fill", "present", "pursuit", "occlusion", "sky"
+    };
+    private static final int HISTORY_LENGTH = 1024;
+    private static final FrameProfiler instance = new FrameProfiler();
+
+    private final long[] stageNanos;
+    private final int[] counters;
+    private final int[] lastCounters;
+    private final long[] lastStageNanos;
+    private final long[][] history;
+    private final long[] sortScratch;
+    private long frameStart;
+    private int frameIndex;
+    private FrameEvent event;
+
+    static {
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    instance, new ObjectName("CarAnimation:type=FrameProfiler"));
+            }
+            catch (JMException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private FrameProfiler() {
+        stageNanos = new long[STAGE_COUNT];
+        counters = new int[COUNTER_COUNT];
+        lastCounters = new int[COUNTER_COUNT];
+        lastStageNanos = new long[STAGE_COUNT + 1];
+        history = new long[STAGE_COUNT + 1][HISTORY_LENGTH];
+        sortScratch = new long[HISTORY_LENGTH];
+    }
+
+    /**
+     * Gets the profiler instance.
+     * @return the profiler instance
+     */
+    public static FrameProfiler getInstance() {
+        return instance;
+    }
+
+    /**
+     * Starts a frame.
+     */
+    public static void beginFrame() {
+        if (ENABLED) {
+            instance.begin();
+        }
+    }
+
+    /**
+     * Ends a frame, and then publishes its stage times and counters.
+     */
+    public static void endFrame() {
+        if (ENABLED) {
+            instance.end();
+        }
+    }
+
+    /**
+     * Returns a timestamp for timing a stage.
+     * @return a timestamp in nanoseconds, or 0 when the profiler is disabled
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Adds the time since a timestamp to a stage of the current frame.
+     * @param stage the stage to add to
+     * @param start the timestamp returned by start
+     * @return a timestamp for timing the next stage
+     */
+    public static long stop(int stage, long start) {
+        if (ENABLED) {
+            long now = System.nanoTime();
+            instance.stageNanos[stage] += now - start;
+            return now;
+        }
+
+        return 0L;
+    }
+
+    /**
+     * Adds to a counter of the current frame.
+     * @param counter the counter to add to
+     * @param amount the amount to add
+     */
+    public static void count(int counter, int amount) {
+        if (ENABLED) {
+            instance.counters[counter] += amount;
+        }
+    }
+
+    /**
+     * Adds a time measured by another thread, such as a viewport worker, to a stage of the current frame.
+     * @param stage the stage to add to
+     * @param nanos the time to add in nanoseconds
+     */
+    public static void add(int stage, long nanos) {
+        if (ENABLED) {
+            instance.stageNanos[stage] += nanos;
+        }
+    }
+
+    private void begin() {
+        Arrays.fill(stageNanos, 0L);
+        Arrays.fill(counters, 0);
+        event = new FrameEvent();
+        event.begin();
+        frameStart = System.nanoTime();
+    }
+
+    private void end() {
+        long frameNanos = System.nanoTime() - frameStart;
+
+        if (event.shouldCommit()) {
+            event.submit = stageNanos[SUBMIT];
+            event.setup = stageNanos[SETUP];
+            event.transform = stageNanos[TRANSFORM];
+            event.sort = stageNanos[SORT];
+            event.cull = stageNanos[CULL];
+            event.fill = stageNanos[FILL];
+            event.present = stageNanos[PRESENT];
+            event.pursuit = stageNanos[PURSUIT];
+            event.occlusion = stageNanos[OCCLUSION];
+            event.sky = stageNanos[SKY];
+            event.models = counters[MODELS];
+            event.trianglesSubmitted = counters[TRIANGLES_SUBMITTED];
+            event.trianglesCulled = counters[TRIANGLES_CULLED];
+            event.trianglesDrawn = counters[TRIANGLES_DRAWN];
+            event.modelsOccluded = counters[MODELS_OCCLUDED];
+            event.textureSwitches = counters[TEXTURE_SWITCHES];
+            event.texelFootprint = counters[TEXEL_FOOTPRINT];
+            event.commit();
+        }
+
+        synchronized (this) {
+            int slot = frameIndex % HISTORY_LENGTH;
+            for (int i = 0; i < STAGE_COUNT; i++) {
+                history[i][slot] = stageNanos[i];
+            }
+            history[STAGE_COUNT][slot] = frameNanos;
+            System.arraycopy(counters, 0, lastCounters, 0, COUNTER_COUNT);
+            System.arraycopy(stageNanos, 0, lastStageNanos, 0, STAGE_COUNT);
+            lastStageNanos[STAGE_COUNT] = frameNanos;
+            frameIndex++;
+        }
+    }
+
+    /**
+     * Gets a counter of the last completed frame.
+     * @param counter the counter to get
+     * @return the value of the counter
+     */
+    public synchronized int getLastCounter(int counter) {
+        return lastCounters[counter];
+    }
+
+    /**
+     * Gets the time of a stage in the last completed frame.
+     * @param stage the stage to get, or STAGE_COUNT for the whole frame
+     * @return the time of the stage in nanoseconds
+     */
+    public synchronized long getLastStageNanos(int stage) {
+        return lastStageNanos[stage];
+    }
+
+    /**
+     * Copies the most recent frame times, oldest first, into an array.
+     * @param frameNanos the array to copy the frame times into, in nanoseconds
+     * @return the number of frame times copied, which is less than the array length when fewer frames completed
+     */
+    public synchronized int getFrameTimeHistory(long[] frameNanos) {
+        int length = Math.min(Math.min(frameIndex, HISTORY_LENGTH), frameNanos.length);
+        for (int i = 0; i < length; i++) {
+            frameNanos[i] = history[STAGE_COUNT][(frameIndex - length + i) % HISTORY_LENGTH];
+        }
+        return length;
+    }
+
+    private synchronized double percentileMillis(int series, double percentile) {
+        int length = Math.min(frameIndex, HISTORY_LENGTH);
+        if (length == 0) {
+            return 0.0;
+        }
+
+        System.arraycopy(history[series], 0, sortScratch, 0, length);
+        Arrays.sort(sortScratch, 0, length);
+        int index = (int) Math.ceil(percentile / 100.0 * length) - 1;
+        return sortScratch[Math.max(0, Math.min(length - 1, index))] / 1.0e6;
+    }
+
+    @Override
+    public String[] getStageNames() {
+        return STAGE_NAMES.clone();
+    }
+
+    @Override
+    public double getFrameTimeP50Millis() {
+        return percentileMillis(STAGE_COUNT, 50.0);
+    }
+
+    @Override
+    public double getFrameTimeP95Millis() {
+        return percentileMillis(STAGE_COUNT, 95.0);
+    }
+
+    @Override
+    public double getFrameTimeP99Millis() {
+        return percentileMillis(STAGE_COUNT, 99.0);
+    }
+
+    @Override
+    public double[] getStageP50Millis() {
+        double[] result = new double[STAGE_COUNT];
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            result[i] = percentileMillis(i, 50.0);
+        }
+        return result;
+    }
+
+    @Override
+    public double[] getStageP99Millis() {
+        double[] result = new double[STAGE_COUNT];
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            result[i] = percentileMillis(i, 99.0);
+        }
+        return result;
+    }
+
+    @Override
+    public double getPercentileMillis(String stage, double percentile) {
+        if (stage.equals("frame")) {
+            return percentileMillis(STAGE_COUNT, percentile);
+        }
+
+        int index = Arrays.asList(STAGE_NAMES).indexOf(stage);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown stage: " + stage);
+        }
+
+        return percentileMillis(index, percentile);
+    }
+
+    @Override
+    public synchronized int getModels() {
+        return lastCounters[MODELS];
+    }
+
+    @Override
+    public synchronized int getTrianglesSubmitted() {
+        return lastCounters[TRIANGLES_SUBMITTED];
+    }
+
+    @Override
+    public synchronized int getTrianglesCulled() {
+        return lastCounters[TRIANGLES_CULLED];
+    }
+
+    @Override
+    public synchronized int getTrianglesDrawn() {
+        return lastCounters[TRIANGLES_DRAWN];
+    }
+
+    @Override
+    public synchronized int getModelsOccluded() {
+        return lastCounters[MODELS_OCCLUDED];
+    }
+
+    @Override
+    public synchronized int getTextureSwitches() {
+        return lastCounters[TEXTURE_SWITCHES];
+    }
+
+    @Override
+    public synchronized int getTexelFootprint() {
+        return lastCounters[TEXEL_FOOTPRINT];
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * The JMX management interface of FrameProfiler.
+ */
+public interface FrameProfilerMXBean {
+    /**
+     * Gets the names of the profiled stages.
+     * @return the names of the profiled stages
+     */
+    String[] getStageNames();
+
+    /**
+     * Gets the median frame time over the recent frames.
+     * @return the median frame time in milliseconds
+     */
+    double getFrameTimeP50Millis();
+
+    /**
+     * Gets the 95th percentile frame time over the recent frames.
+     * @return the 95th percentile frame time in milliseconds
+     */
+    double getFrameTimeP95Millis();
+
+    /**
+     * Gets the 99th percentile frame time over the recent frames.
+     * @return the 99th percentile frame time in milliseconds
+     */
+    double getFrameTimeP99Millis();
+
+    /**
+     * Gets the median time of every stage over the recent frames, in the order of getStageNames.
+     * @return the median stage times in milliseconds
+     */
+    double[] getStageP50Millis();
+
+    /**
+     * Gets the 99th percentile time of every stage over the recent frames, in the order of getStageNames.
+     * @return the 99th percentile stage times in milliseconds
+     */
+    double[] getStageP99Millis();
+
+    /**
+     * Gets a percentile of a stage over the recent frames.
+     * @param stage the stage name, or "frame" for the whole frame
+     * @param percentile the percentile between 0 and 100
+     * @return the percentile in milliseconds
+     */
+    double getPercentileMillis(String stage, double percentile);
+
+    /**
+     * Gets the number of models drawn in the last frame.
+     * @return the number of models
+     */
+    int getModels();
+
+    /**
+     * Gets the number of triangles submitted in the last frame.
+     * @return the number of submitted triangles
+     */
+    int getTrianglesSubmitted();
+
+    /**
+     * Gets the number of triangles culled in the last frame.
+     * @return the number of culled triangles
+     */
+    int getTrianglesCulled();
+
+    /**
+     * Gets the number of triangles drawn in the last frame.
+     * @return the number of drawn triangles
+     */
+    int getTrianglesDrawn();
+
+    /**
+     * Gets the number of models skipped in the last frame because nearer models hid them.
+     * @return the number of occluded models
+     */
+    int getModelsOccluded();
+
+    /**
+     * Gets the number of times the texture paint was switched in the last frame.
+     * @return the number of texture switches
+     */
+    int getTextureSwitches();
+
+    /**
+     * Gets the number of texels the triangles drawn in the last frame span, in the mip levels they were drawn from.
+     * @return the texel footprint of the last frame, in thousands of texels
+     */
+    int getTexelFootprint();
+}
@@ -0,0 +1,493 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A frame server is an output graphics provider that streams every swapped frame to any number of
+ * viewers over TCP, such as FrameViewer, served by a single thread from a non-blocking NIO selector.
+ * <p>
+ * Swapping only copies the back buffer into the latest frame and wakes the server thread, so a slow
+ * viewer never stalls the scene. Each viewer is sent the latest frame whenever it has taken the whole
+ * previous message; frames that arrive while a message is still being sent are dropped for that viewer.
+ * <p>
+ * The stream starts with the magic number STREAM_MAGIC, the frame width and height, and the tile size.
+ * Every frame is then sent as a message of its length in bytes, the frame index, the number of changed
+ * tiles, and for every changed tile its column and row as shorts followed by the XOR of its pixels with
+ * the pixels the viewer already has, row by row. The XOR values are run-length encoded as packed 24-bit
+ * pixels: a byte n below 128 is followed by n + 1 literal pixels, and a byte n of 128 or more by one
+ * pixel repeated n - 126 times. Unchanged pixels are zero, so a tile that changes in a few pixels takes
+ * a few bytes. The first frame a viewer is sent is a delta against black.
+ */
+public class FrameServer implements OutputGraphicsProvider {
+    /**
+     * The first four bytes of a stream, "CARF".
+     */
+    public static final int STREAM_MAGIC = 0x43415246;
+
+    /**
+     * The width and height of a tile in pixels.
+     */
+    public static final int TILE_SIZE = 16;
+
+    private static final int MAX_RUN = 129;
+    private static final int MAX_LITERALS = 128;
+
+    private final int width;
+    private final int height;
+    private final int tileColumns;
+    private final int tileRows;
+    private final long frameNanos;
+    private final BufferedImage backBuffer;
+    private final Graphics2D graphics2D;
+    private final int[] latest;
+    private final int[] current;
+    private final int[] tileDeltas;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final List<Viewer> viewers;
+    private final Map<Integer, ByteBuffer> encodedFrames;
+    private final Thread thread;
+    private final long startNanos;
+    private volatile boolean running;
+    private int frameIndex;
+    private int servedIndex;
+    private long nextFrameNanos;
+    private int skippedFrames;
+    private long sentFrames;
+    private long droppedFrames;
+    private long sentBytes;
+    private long rawBytes;
+
+    /**
+     * Constructs a frame server, binds it, and starts its server thread.
+     * @param width the frame width
+     * @param height the frame height
+     * @param host the address to listen on, such as 127.0.0.1 to only serve viewers on this machine
+     * @param port the port to listen on, or 0 for any free port
+     * @param frameRate the number of frames swapped per second, or 0 to swap as fast as frames are drawn
+     * @throws IOException when the server socket cannot be bound
+     */
+    public FrameServer(int width, int height, String host, int port, double frameRate) throws IOException {
+        this.width = width;
+        this.height = height;
+        tileColumns = (width + TILE_SIZE - 1) / TILE_SIZE;
+        tileRows = (height + TILE_SIZE - 1) / TILE_SIZE;
+        frameNanos = frameRate > 0.0 ? (long) (1.0e9 / frameRate) : 0;
+        backBuffer = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        graphics2D = backBuffer.createGraphics();
+        latest = new int[width * height];
+        current = new int[width * height];
+        tileDeltas = new int[TILE_SIZE * TILE_SIZE];
+        viewers = new ArrayList<>();
+        encodedFrames = new HashMap<>();
+        frameIndex = 0;
+        servedIndex = 0;
+
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(host, port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        running = true;
+        thread = new Thread(this::serveLoop, "FrameServer");
+        thread.setDaemon(true);
+        thread.start();
+        startNanos = System.nanoTime();
+        nextFrameNanos = startNanos;
+    }
+
+    /**
+     * Gets the device context.
+     * @return the device context
+     */
+    @Override
+    public Graphics2D getGraphics2D() {
+        return graphics2D;
+    }
+
+    /**
+     * Gets the back buffer that the device context draws into.
+     * @return the back buffer
+     */
+    @Override
+    public BufferedImage getBackBuffer() {
+        return backBuffer;
+    }
+
+    /**
+     * Gets the back buffer width.
+     * @return the back buffer width
+     */
+    @Override
+    public int getBufferWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the back buffer height.
+     * @return the back buffer height
+     */
+    @Override
+    public int getBufferHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the port the server listens on.
+     * @return the local port of the server socket
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Copies the back buffer into the latest frame and wakes the server thread. With a frame rate,
+     * first waits for the time of the frame, the way a display waits for its refresh. Never waits
+     * for viewers.
+     */
+    @Override
+    public void swapBuffers() {
+        if (frameNanos > 0) {
+            nextFrameNanos += frameNanos;
+            long delay = nextFrameNanos - System.nanoTime();
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay / 1000000, (int) (delay % 1000000));
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            else {
+                // Running behind; do not try to catch up with a burst of frames.
+                nextFrameNanos = System.nanoTime();
+            }
+        }
+
+        synchronized (latest) {
+            System.arraycopy(((DataBufferInt) backBuffer.getRaster().getDataBuffer()).getData(), 0,
+                latest, 0, latest.length);
+            frameIndex++;
+        }
+        selector.wakeup();
+    }
+
+    /**
+     * Gets the number of viewers that are connected.
+     * @return the number of viewers
+     */
+    public synchronized int getViewerCount() {
+        return viewers.size();
+    }
+
+    /**
+     * Returns a readable summary of the frames sent to viewers and how well they were compressed.
+     * @return a summary of the stream
+     */
+    public synchronized String getReport() {
+        double seconds = (System.nanoTime() - startNanos) / 1.0e9;
+        return String.format("stream: %d viewers, %d frames swapped, %d skipped, %d sent, %d dropped, "
+                + "%.2f MB sent, %.1f:1 compression, %.1f fps",
+            viewers.size(),
+            frameIndex,
+            skippedFrames,
+            sentFrames,
+            droppedFrames,
+            sentBytes / 1.0e6,
+            sentBytes > 0 ? (double) rawBytes / sentBytes : 0.0,
+            sentFrames / seconds);
+    }
+
+    /**
+     * Stops the server thread and disconnects every viewer.
+     * @throws IOException when the server socket cannot be closed
+     */
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+
+        try {
+            thread.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (this) {
+            for (Viewer viewer : viewers) {
+                viewer.channel.close();
+            }
+            viewers.clear();
+        }
+        serverChannel.close();
+        selector.close();
+    }
+
+    private void serveLoop() {
+        try {
+            while (running) {
+                selector.select();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    else if (key.isAcceptable()) {
+                        accept();
+                    }
+                    else if (key.isReadable()) {
+                        // Viewers never send anything, so reading only notices that one has gone away.
+                        Viewer viewer = (Viewer) key.attachment();
+                        int read;
+                        try {
+                            read = viewer.channel.read(viewer.input.clear());
+                        }
+                        catch (IOException e) {
+                            read = -1;
+                        }
+                        if (read < 0) {
+                            disconnect(viewer);
+                        }
+                    }
+                    else if (key.isWritable()) {
+                        flush((Viewer) key.attachment());
+                    }
+                }
+
+                boolean newFrame = false;
+                synchronized (latest) {
+                    if (frameIndex != servedIndex) {
+                        System.arraycopy(latest, 0, current, 0, current.length);
+                        synchronized (this) {
+                            skippedFrames += frameIndex - servedIndex - 1;
+                        }
+                        servedIndex = frameIndex;
+                        newFrame = true;
+                    }
+                }
+
+                if (newFrame) {
+                    serveFrame();
+                }
+            }
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Viewer viewer = new Viewer(channel, width * height,
+            16 + 4 * tileColumns * tileRows + width * height * 4);
+        viewer.key = channel.register(selector, SelectionKey.OP_READ, viewer);
+        viewer.output.putInt(STREAM_MAGIC).putInt(width).putInt(height).putInt(TILE_SIZE).flip();
+
+        synchronized (this) {
+            viewers.add(viewer);
+        }
+        System.out.println("Viewer connected from " + channel.getRemoteAddress());
+        flush(viewer);
+    }
+
+    private void disconnect(Viewer viewer) throws IOException {
+        System.out.println("Viewer disconnected");
+        viewer.key.cancel();
+        viewer.channel.close();
+
+        synchronized (this) {
+            viewers.remove(viewer);
+        }
+    }
+
+    /**
+     * Sends the current frame to every viewer that has taken its previous message. Viewers that are
+     * up to date with the same frame get the same delta, so it is only encoded once.
+     */
+    private void serveFrame() throws IOException {
+        encodedFrames.clear();
+
+        for (Viewer viewer : new ArrayList<>(viewers)) {
+            if (viewer.output.hasRemaining()) {
+                synchronized (this) {
+                    droppedFrames++;
+                }
+                continue;
+            }
+
+            ByteBuffer encoded = encodedFrames.get(viewer.frameIndex);
+            if (encoded == null) {
+                encoded = encode(viewer.reference, viewer.output);
+                encodedFrames.put(viewer.frameIndex, encoded);
+            }
+            else {
+                viewer.output.clear();
+                viewer.output.put(encoded.duplicate()).flip();
+            }
+
+            System.arraycopy(current, 0, viewer.reference, 0, current.length);
+            viewer.frameIndex = servedIndex;
+
+            synchronized (this) {
+                sentFrames++;
+                sentBytes += viewer.output.remaining();
+                rawBytes += 3L * width * height;
+            }
+            flush(viewer);
+        }
+    }
+
+    /**
+     * Encodes the changed tiles of the current frame against a reference frame into a buffer.
+     * @return a read-only view of the encoded message
+     */
+    private ByteBuffer encode(int[] reference, ByteBuffer output) {
+        output.clear();
+        output.putInt(0).putInt(servedIndex).putInt(0);
+        int changedTiles = 0;
+
+        for (int tileY = 0; tileY < tileRows; tileY++) {
+            for (int tileX = 0; tileX < tileColumns; tileX++) {
+                int x0 = tileX * TILE_SIZE;
+                int y0 = tileY * TILE_SIZE;
+                int x1 = Math.min(x0 + TILE_SIZE, width);
+                int y1 = Math.min(y0 + TILE_SIZE, height);
+                if (getTileDeltas(reference, x0, y0, x1, y1)) {
+                    output.putShort((short) tileX).putShort((short) tileY);
+                    encodeTile((x1 - x0) * (y1 - y0), output);
+                    changedTiles++;
+                }
+            }
+        }
+
+        output.putInt(0, output.position() - 4).putInt(8, changedTiles).flip();
+        return output.asReadOnlyBuffer();
+    }
+
+    /**
+     * Gathers the XOR of the pixels of a tile with the reference, row by row.
+     * @return true if any pixel of the tile changed
+     */
+    private boolean getTileDeltas(int[] reference, int x0, int y0, int x1, int y1) {
+        int changed = 0;
+        int count = 0;
+        for (int y = y0; y < y1; y++) {
+            for (int i = y * width + x0; i < y * width + x1; i++) {
+                int delta = (current[i] ^ reference[i]) & 0xFFFFFF;
+                tileDeltas[count++] = delta;
+                changed |= delta;
+            }
+        }
+        return changed != 0;
+    }
+
+    /**
+     * Run-length encodes the gathered deltas of a tile.
+     */
+    private void encodeTile(int count, ByteBuffer output) {
+        int literalStart = 0;
+        int i = 0;
+
+        while (i < count) {
+            int value = tileDeltas[i];
+            int run = 1;
+            while (i + run < count && run < MAX_RUN && tileDeltas[i + run] == value) {
+                run++;
+            }
+
+            if (run >= 2) {
+                putLiterals(literalStart, i, output);
+                output.put((byte) (run + 126));
+                putPixel(output, value);
+                i += run;
+                literalStart = i;
+            }
+            else {
+                i++;
+                if (i - literalStart == MAX_LITERALS) {
+                    putLiterals(literalStart, i, output);
+                    literalStart = i;
+                }
+            }
+        }
+
+        putLiterals(literalStart, count, output);
+    }
+
+    private void putLiterals(int start, int end, ByteBuffer output) {
+        if (start < end) {
+            output.put((byte) (end - start - 1));
+            for (int i = start; i < end; i++) {
+                putPixel(output, tileDeltas[i]);
+            }
+        }
+    }
+
+    private static void putPixel(ByteBuffer output, int pixel) {
+        output.put((byte) (pixel >> 16)).put((byte) (pixel >> 8)).put((byte) pixel);
+    }
+
+    /**
+     * Writes as much of the pending message of a viewer as its socket takes, and waits for the socket
+     * to become writable again if some is left.
+     */
+    private void flush(Viewer viewer) throws IOException {
+        try {
+            viewer.channel.write(viewer.output);
+        }
+        catch (IOException e) {
+            disconnect(viewer);
+            return;
+        }
+
+        viewer.key.interestOps(viewer.output.hasRemaining()
+            ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+            : SelectionKey.OP_READ);
+    }
+
+    private static class Viewer {
+        private final SocketChannel channel;
+        private final int[] reference;
+        private final ByteBuffer output;
+        private final ByteBuffer input;
+        private SelectionKey key;
+        private int frameIndex;
+
+        /**
+         * Constructs a viewer.
+         * @param channel the socket of the viewer
+         * @param pixelCount the number of pixels of a frame
+         * @param capacity the largest message size in bytes
+         */
+        public Viewer(SocketChannel channel, int pixelCount, int capacity) {
+            this.channel = channel;
+            reference = new int[pixelCount];
+            output = ByteBuffer.allocateDirect(capacity);
+            input = ByteBuffer.allocate(64);
+            frameIndex = -1;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+import java.io.PrintStream;
+
+/**
+ * Accumulates per-frame presentation timings and periodically reports throughput,
+ * end-to-end latency, and present time.
+ */
+public class FrameStats {
+    private final String name;
+    private final PrintStream out;
+    private final long reportIntervalNanos;
+    private long intervalStart;
+    private int frames;
+    private long latencySum;
+    private long latencyMax;
+    private long presentSum;
+    private long presentMax;
+
+    /**
+     * Constructs frame statistics.
+     * @param name the name printed in front of every report
+     * @param out the stream the reports are printed to
+     * @param reportIntervalSeconds the number of seconds between reports
+     */
+    public FrameStats(String name, PrintStream out, double reportIntervalSeconds) {
+        this.name = name;
+        this.out = out;
+        reportIntervalNanos = (long) (reportIntervalSeconds * 1.0e9);
+        intervalStart = System.nanoTime();
+    }
+
+    /**
+     * Records a presented frame, and prints a report when the report interval elapsed.
+     * @param latencyNanos the time from the start of rendering the frame until it was displayed
+     * @param presentNanos the time spent displaying the frame
+     */
+    public synchronized void record(long latencyNanos, long presentNanos) {
+        frames++;
+        latencySum += latencyNanos;
+        latencyMax = Math.max(latencyMax, latencyNanos);
+        presentSum += presentNanos;
+        presentMax = Math.max(presentMax, presentNanos);
+
+        long now = System.nanoTime();
+        if (now - intervalStart >= reportIntervalNanos) {
+            double seconds = (now - intervalStart) / 1.0e9;
+            out.printf("%s: %.1f fps, latency avg %.2f ms max %.2f ms, present avg %.2f ms max %.2f ms%n",
+                name,
+                frames / seconds,
+                latencySum / 1.0e6 / frames,
+                latencyMax / 1.0e6,
+                presentSum / 1.0e6 / frames,
+                presentMax / 1.0e6);
+
+            intervalStart = now;
+            frames = 0;
+            latencySum = 0;
+            latencyMax = 0;
+            presentSum = 0;
+            presentMax = 0;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.Socket;
+
+import javax.imageio.ImageIO;
+import javax.swing.JFrame;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+
+/**
+ * A frame viewer connects to a FrameServer, applies the changed tiles of every frame it receives to
+ * its own copy of the frame, and shows it in a window. Without a window, it receives a number of frames,
+ * writes the last one to a PNG file, and prints how many frames and bytes it received.
+ */
+public class FrameViewer {
+    private final DataInputStream in;
+    private final int width;
+    private final int height;
+    private final int tileSize;
+    private final BufferedImage image;
+    private final int[] pixels;
+    private byte[] message;
+    private int frameIndex;
+    private long receivedBytes;
+
+    /**
+     * Constructs a frame viewer and reads the header of the stream.
+     * @param socket the socket connected to the server
+     * @throws IOException when the header cannot be read or is not a frame stream
+     */
+    public FrameViewer(Socket socket) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+        if (in.readInt() != FrameServer.STREAM_MAGIC) {
+            throw new IOException("Not a frame stream");
+        }
+
+        width = in.readInt();
+        height = in.readInt();
+        tileSize = in.readInt();
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        message = new byte[0];
+        receivedBytes = 16;
+    }
+
+    /**
+     * Connects to a frame server and shows its frames.
+     * @param args the host (default 127.0.0.1) and port (default 5800) of the server, and, to run
+     *     without a window, the number of frames to receive and the PNG file to write the last one to
+     */
+    public static void main(String[] args) {
+        String host = args.length > 0 ? args[0] : "127.0.0.1";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 5800;
+
+        try (Socket socket = new Socket(host, port)) {
+            FrameViewer viewer = new FrameViewer(socket);
+
+            if (args.length > 3) {
+                int frameCount = Integer.parseInt(args[2]);
+                long start = System.nanoTime();
+                int received = 0;
+                while (received < frameCount && viewer.readFrame()) {
+                    received++;
+                }
+                double seconds = (System.nanoTime() - start) / 1.0e9;
+
+                ImageIO.write(viewer.image, "png", new File(args[3]));
+                System.out.printf("viewer: %d frames, last frame %d, %.2f MB received, %.1f fps%n",
+                    received,
+                    viewer.frameIndex,
+                    viewer.receivedBytes / 1.0e6,
+                    received / seconds);
+            }
+            else {
+                viewer.show(host + ":" + port);
+            }
+        }
+        catch (EOFException e) {
+            System.out.println("Server closed the stream");
+        }
+        catch (IOException e) {
+            System.err.println("Cannot view stream: " + e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Reads the next frame and applies its changed tiles.
+     * @return false if the server closed the stream
+     * @throws IOException when the frame cannot be read
+     */
+    public boolean readFrame() throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        }
+        catch (EOFException e) {
+            return false;
+        }
+
+        if (message.length < length) {
+            message = new byte[length];
+        }
+        in.readFully(message, 0, length);
+        receivedBytes += 4 + length;
+
+        synchronized (image) {
+            frameIndex = getInt(0);
+            int tileCount = getInt(4);
+            int position = 8;
+
+            for (int tile = 0; tile < tileCount; tile++) {
+                int x0 = (getShort(position) & 0xFFFF) * tileSize;
+                int y0 = (getShort(position + 2) & 0xFFFF) * tileSize;
+                position = applyTile(position + 4, x0, y0,
+                    Math.min(x0 + tileSize, width) - x0, Math.min(y0 + tileSize, height) - y0);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Gets the frame the viewer has received so far.
+     * @return the frame
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * Decodes the run-length encoded deltas of a tile and applies them to the frame.
+     * @return the position after the tile in the message
+     */
+    private int applyTile(int position, int x0, int y0, int tileWidth, int tileHeight) {
+        int count = tileWidth * tileHeight;
+        int i = 0;
+
+        while (i < count) {
+            int header = message[position++] & 0xFF;
+            if (header < 128) {
+                for (int n = 0; n <= header; n++) {
+                    applyDelta(x0, y0, tileWidth, i++, getPixel(position));
+                    position += 3;
+                }
+            }
+            else {
+                int delta = getPixel(position);
+                position += 3;
+                for (int n = 0; n < header - 126; n++) {
+                    applyDelta(x0, y0, tileWidth, i++, delta);
+                }
+            }
+        }
+
+        return position;
+    }
+
+    private void applyDelta(int x0, int y0, int tileWidth, int i, int delta) {
+        pixels[(y0 + i / tileWidth) * width + x0 + i % tileWidth] ^= delta;
+    }
+
+    private int getPixel(int position) {
+        return (message[position] & 0xFF) << 16 | (message[position + 1] & 0xFF) << 8 | message[position + 2] & 0xFF;
+    }
+
+    private int getShort(int position) {
+        return (message[position] & 0xFF) << 8 | message[position + 1] & 0xFF;
+    }
+
+    private int getInt(int position) {
+        return getShort(position) << 16 | getShort(position + 2);
+    }
+
+    private void show(String title) throws IOException {
+        JPanel panel = new JPanel() {
+            @Override
+            protected void paintComponent(Graphics g) {
+                synchronized (image) {
+                    g.drawImage(image, 0, 0, null);
+                }
+            }
+        };
+        panel.setPreferredSize(new Dimension(width, height));
+
+        SwingUtilities.invokeLater(() -> {
+            JFrame frame = new JFrame("Frame Viewer - " + title);
+            frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+            frame.setContentPane(panel);
+            frame.setResizable(false);
+            frame.pack();
+            frame.setLocationRelativeTo(null);
+            frame.setVisible(true);
+        });
+
+        while (readFrame()) {
+            panel.repaint();
+        }
+        System.out.println("Server closed the stream");
+    }
+}
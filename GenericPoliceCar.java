@@ -3,16 +3,50 @@
  * Represents a generic police car.
  */
 public class GenericPoliceCar extends Vehicle {
+    private boolean steered;
+    private double steeringX;
+    private double steeringY;
+    private double steeringZ;
+
     /**
      * Constructs a generic police car.
      * @param scene the scene the police car is in
      */
     public GenericPoliceCar(Scene scene) {
-        super(scene, Model.load("asset/police2.obj", "asset/police_map.png"), 0.29);
+        this(scene, Model.load("asset/police2.obj", "asset/police_map.png"));
+    }
+
+    /**
+     * Constructs a generic police car that shares a model with other police cars.
+     * @param scene the scene the police car is in
+     * @param model the model of the police car
+     */
+    public GenericPoliceCar(Scene scene, Model model) {
+        super(scene, model, 0.29);
+        steered = false;
+    }
+
+    /**
+     * Sets the acceleration of the next step, as computed by a PursuitSystem.
+     * Without steering, the police car just speeds up along the road.
+     * @param x the x-component of the acceleration of the next step
+     * @param y the y-component of the acceleration of the next step
+     * @param z the z-component of the acceleration of the next step
+     */
+    public void setSteering(double x, double y, double z) {
+        steered = true;
+        steeringX = x;
+        steeringY = y;
+        steeringZ = z;
     }
 
     @Override
     protected void tick() {
-        acceleration = Vec3.add(acceleration, new Vec3(0.0, 0.0, 0.0004));
+        if (steered) {
+            acceleration = new Vec3(steeringX, steeringY, steeringZ);
+        }
+        else {
+            acceleration = Vec3.add(acceleration, new Vec3(0.0, 0.0, 0.0004));
+        }
     }
 }
\ No newline at end of file
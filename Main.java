@@ -1,8 +1,10 @@
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Insets;
 import java.awt.image.BufferStrategy;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
 
 import javax.swing.JFrame;
 import javax.swing.JPanel;
@@ -10,20 +12,134 @@ import javax.swing.JPanel;
 /**
  * Main class for initializing the animation.
  */
-public class Main extends JFrame implements OutputGraphicsProvider {
-    private static final int WIDTH = 640;
-    private static final int HEIGHT = 360;
+public class Main extends JFrame implements OutputGraphicsProvider, PresentPipeline.Presenter {
+    static final int WIDTH = 640;
+    static final int HEIGHT = 360;
     private static final int SCALE = 2;
 
-    private final BufferedImage backBuffer;
-    private final Graphics2D graphics2D;
+    private final PresentPipeline pipeline;
+    private final Upscaler upscaler;
 
     /**
-     * Entry point.
+     * Entry point. Setting the system property scene.fixedTimestep to true decouples the
+     * simulation rate from the frame rate. The system property present.framesInFlight sets
+     * the number of back buffers, where 1 presents synchronously. Setting present.stats to
+     * true prints throughput and latency reports. The system property present.upscaler selects
+     * how back buffers are scaled to the window, which is one of nearest, scale2x, or java2d.
+     * Setting hud.enabled to true draws frame timings over the animation. See configure for
+     * deterministic simulation, recording, and replay.
+     * Setting export.path renders headlessly to disk instead; see export. Setting stream.port
+     * renders headlessly to FrameViewer clients instead; see stream.
      * @param args the command line arguments which are not used
      */
     public static void main(String[] args) {
-        new Main();
+        if (System.getProperty("export.path") != null) {
+            export();
+        }
+        else if (System.getProperty("stream.port") != null) {
+            stream();
+        }
+        else {
+            new Main();
+        }
+    }
+
+    /**
+     * Renders the animation without a window and writes the frames to export.path.
+     * The system property export.format is one of png, y4m, or rgb. The animation is simulated
+     * at export.fps frames per second for export.frames frames, and export.queue frames may wait
+     * for export.threads encoder threads before frames are dropped. Setting capture.path also records
+     * every draw command to a file for DrawCommandReplay.
+     */
+    private static void export() {
+        int format = FrameExporter.getFormat(System.getProperty("export.format", "png"));
+        int frameRate = Integer.getInteger("export.fps", 30);
+        FrameExporter exporter;
+
+        try {
+            exporter = new FrameExporter(WIDTH, HEIGHT, format,
+                System.getProperty("export.path"),
+                frameRate,
+                Integer.getInteger("export.queue", 64),
+                Integer.getInteger("export.threads", Runtime.getRuntime().availableProcessors()));
+        }
+        catch (IOException e) {
+            System.err.println("Cannot create export output: " + e.getMessage());
+            System.exit(-1);
+            return;
+        }
+
+        Scene scene = createScene(exporter, false);
+        configure(scene);
+        scene.setFixedTimestep(true);
+        scene.setFrameRate(frameRate);
+        scene.setFrameCount(Integer.getInteger("export.frames", 300));
+
+        DrawCommandRecorder capture = null;
+        if (System.getProperty("capture.path") != null) {
+            try {
+                capture = new DrawCommandRecorder(scene.getRenderContext(), System.getProperty("capture.path"), WIDTH, HEIGHT);
+                scene.setRenderContext(capture);
+            }
+            catch (IOException e) {
+                System.err.println("Cannot create capture: " + e.getMessage());
+                System.exit(-1);
+            }
+        }
+
+        scene.run();
+
+        boolean failed = false;
+        try {
+            exporter.close();
+            if (capture != null) {
+                capture.close();
+            }
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+            failed = true;
+        }
+
+        System.out.println(exporter.getReport());
+        if (failed) {
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Renders the animation without a window and serves the frames to viewers on stream.port.
+     * The server listens on stream.host, which is 127.0.0.1 unless set otherwise, and swaps
+     * stream.fps frames per second. The animation runs for stream.frames frames, or indefinitely.
+     */
+    private static void stream() {
+        FrameServer server;
+
+        try {
+            server = new FrameServer(WIDTH, HEIGHT,
+                System.getProperty("stream.host", "127.0.0.1"),
+                Integer.getInteger("stream.port"),
+                Integer.getInteger("stream.fps", 30));
+        }
+        catch (IOException e) {
+            System.err.println("Cannot start stream: " + e.getMessage());
+            System.exit(-1);
+            return;
+        }
+
+        System.out.println("Streaming on port " + server.getPort());
+        Scene scene = createScene(server, true);
+        configure(scene);
+        scene.setFrameCount(Integer.getInteger("stream.frames", 0));
+        scene.run();
+
+        System.out.println(server.getReport());
+        try {
+            server.close();
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
 	private Main() {
@@ -38,9 +154,17 @@ public class Main extends JFrame implements OutputGraphicsProvider {
         setLocationRelativeTo(null);
         setVisible(true);
 
-        backBuffer = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
-        graphics2D = backBuffer.createGraphics();
-        new Thread(new Scene(this)).start();
+        upscaler = createUpscaler(System.getProperty("present.upscaler", "nearest"));
+
+        int framesInFlight = Integer.getInteger("present.framesInFlight", 2);
+        FrameStats stats = Boolean.getBoolean("present.stats")
+            ? new FrameStats("present (" + framesInFlight + " in flight)", System.out, 5.0)
+            : null;
+        pipeline = new PresentPipeline(WIDTH, HEIGHT, framesInFlight, this, stats);
+
+        Scene scene = createScene(this, true);
+        configure(scene);
+        new Thread(scene).start();
     }
 
     /**
@@ -49,7 +173,16 @@ public class Main extends JFrame implements OutputGraphicsProvider {
      */
     @Override
     public Graphics2D getGraphics2D() {
-        return graphics2D;
+        return pipeline.getGraphics2D();
+    }
+
+    /**
+     * Gets the back buffer that the device context draws into.
+     * @return the back buffer
+     */
+    @Override
+    public BufferedImage getBackBuffer() {
+        return pipeline.getBackBuffer();
     }
 
     /**
@@ -71,20 +204,128 @@ public class Main extends JFrame implements OutputGraphicsProvider {
     }
 
     /**
-     * Swaps the front and back buffers, and then displays them.
+     * Submits the back buffer for presentation, and then continues with the next back buffer.
      */
     @Override
     public void swapBuffers() {
+        pipeline.submit();
+    }
+
+    /**
+     * Scales a finished back buffer to the window, and then displays it.
+     * @param frame the back buffer to display
+     */
+    @Override
+    public void present(BufferedImage frame) {
         BufferStrategy bs = getBufferStrategy();
 
         if (bs == null) {
             createBufferStrategy(2);
         }
         else {
+            Insets insets = getInsets();
             Graphics g = bs.getDrawGraphics();
-            g.drawImage(backBuffer, 3, 25, SCALE * WIDTH, SCALE * HEIGHT, null);
+
+            if (upscaler != null) {
+                g.drawImage(upscaler.upscale(frame), insets.left, insets.top, null);
+            }
+            else {
+                g.drawImage(frame, insets.left, insets.top, SCALE * WIDTH, SCALE * HEIGHT, null);
+            }
+
             g.dispose();
             bs.show();
         }
     }
+
+    /**
+     * Creates the scene with scene.policeCars police cars. When scene.progressive is true, the scene is
+     * constructed from generated proxies and the asset files are streamed in while it runs, so the first
+     * frame is drawn before any file is read; otherwise every asset is loaded first.
+     * @param output the output graphics provider used to display the scene
+     * @param progressive whether the scene is progressive when scene.progressive is not set
+     * @return the scene
+     */
+    static Scene createScene(OutputGraphicsProvider output, boolean progressive) {
+        int policeCarCount = Integer.getInteger("scene.policeCars", 2);
+        if (!Boolean.parseBoolean(System.getProperty("scene.progressive", Boolean.toString(progressive)))) {
+            return new Scene(output, policeCarCount);
+        }
+
+        Scene scene = new Scene(output, policeCarCount, SceneAssets.createProxies());
+        scene.setAssetStreamer(new AssetStreamer(System.out));
+        return scene;
+    }
+
+    /**
+     * Configures a scene from the system properties shared by the window and the export.
+     * road.chunksBehind and road.chunksAhead set the draw distance of the road in chunks of
+     * road.tilesPerChunk tiles. pursuit.threads sets the threads that steer the police cars, which only
+     * applies from 256 police cars on, since fewer cars are steered faster on the simulation thread.
+     * texture.atlas packs the textures into atlases stored in the texel format texture.format.
+     * render.views lists the views drawn side by side, such as chase,helicopter,rear.
+     * scene.seed seeds the simulation. record.path records every frame state to a file, with a
+     * keyframe every record.keyframeInterval frames. replay.path draws the frames of a recording
+     * instead of simulating, starting at frame replay.start. ShardedRender configures every shard here too,
+     * so that the shards draw the frames of a single export.
+     * @param scene the scene to configure
+     */
+    static void configure(Scene scene) {
+        scene.setFixedTimestep(Boolean.getBoolean("scene.fixedTimestep"));
+        scene.setPursuitThreads(Integer.getInteger("pursuit.threads", Runtime.getRuntime().availableProcessors()));
+        scene.setHud(Boolean.getBoolean("hud.enabled") ? new PerformanceHud() : null);
+
+        if (Boolean.parseBoolean(System.getProperty("texture.atlas", "true"))) {
+            scene.packTextures(System.getProperty("texture.format", "rgb"));
+        }
+
+        scene.setViews(System.getProperty("render.views", "chase").split(","));
+        scene.setRoadDistance(Integer.getInteger("road.tilesPerChunk", 4),
+            Integer.getInteger("road.chunksBehind", 1),
+            Integer.getInteger("road.chunksAhead", 1));
+
+        if (System.getProperty("scene.seed") != null) {
+            scene.setSeed(Long.getLong("scene.seed"));
+        }
+
+        try {
+            if (System.getProperty("record.path") != null) {
+                scene.setRecorder(new StateRecorder(System.getProperty("record.path"),
+                    scene.getFrameStateSize(),
+                    Integer.getInteger("record.keyframeInterval", 60)));
+            }
+
+            if (System.getProperty("replay.path") != null) {
+                StateReplay replay = new StateReplay(System.getProperty("replay.path"));
+                if (replay.getValueCount() != scene.getFrameStateSize()) {
+                    throw new IOException("Recording does not match the scene");
+                }
+
+                replay.seek(Integer.getInteger("replay.start", 0));
+                scene.setReplay(replay);
+            }
+        }
+        catch (IOException e) {
+            System.err.println("Cannot open recording: " + e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    private static Upscaler createUpscaler(String name) {
+        int threadCount = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+        switch (name) {
+        case "nearest":
+            return new Upscaler(WIDTH, HEIGHT, SCALE, Upscaler.NEAREST, threadCount);
+
+        case "scale2x":
+            return new Upscaler(WIDTH, HEIGHT, SCALE, Upscaler.SCALE2X, threadCount);
+
+        case "java2d":
+            return null;
+
+        default:
+            throw new IllegalArgumentException("Unknown upscaler: " + name);
+        }
+    }
 }
\ No newline at end of file
@@ -109,6 +109,42 @@ public final class Mat3 {
         return mul(transformedTri, inverse(originalTri));
     }
 
+    /**
+     * Computes the same matrix as affineMatFromTriangle followed by toColMajor2x3, with the same arithmetic,
+     * into an array instead of allocating.
+     * @param original the x and y of the first, second, and third vertex of the original triangle
+     * @param transformed the x and y of the first, second, and third vertex of the transformed triangle
+     * @param result receives the 2x3 column-major matrix that transforms the original triangle to the
+     *     transformed triangle
+     */
+    public static void affineMatFromTriangle(double[] original, double[] transformed, double[] result) {
+        double m0 = original[0], m1 = original[2], m2 = original[4];
+        double m3 = original[1], m4 = original[3], m5 = original[5];
+        double m6 = 1.0, m7 = 1.0, m8 = 1.0;
+        double determinant = m0 * (m4 * m8 - m5 * m7)
+            -  m1 * (m3 * m8 - m5 * m6)
+            +  m2 * (m3 * m7 - m4 * m6);
+
+        double i0 = (m4 * m8 - m5 * m7) / determinant;
+        double i1 = (m2 * m7 - m1 * m8) / determinant;
+        double i2 = (m1 * m5 - m2 * m4) / determinant;
+        double i3 = (m5 * m6 - m3 * m8) / determinant;
+        double i4 = (m0 * m8 - m2 * m6) / determinant;
+        double i5 = (m2 * m3 - m0 * m5) / determinant;
+        double i6 = (m3 * m7 - m4 * m6) / determinant;
+        double i7 = (m1 * m6 - m0 * m7) / determinant;
+        double i8 = (m0 * m4 - m1 * m3) / determinant;
+
+        double t0 = transformed[0], t1 = transformed[2], t2 = transformed[4];
+        double t3 = transformed[1], t4 = transformed[3], t5 = transformed[5];
+        result[0] = t0 * i0 + t1 * i3 + t2 * i6;
+        result[1] = t3 * i0 + t4 * i3 + t5 * i6;
+        result[2] = t0 * i1 + t1 * i4 + t2 * i7;
+        result[3] = t3 * i1 + t4 * i4 + t5 * i7;
+        result[4] = t0 * i2 + t1 * i5 + t2 * i8;
+        result[5] = t3 * i2 + t4 * i5 + t5 * i8;
+    }
+
     /**
      * Converts a 3x3 row-major matrix to a 2x3 column-major matrix.
      * @return a 2x3 column-major matrix
@@ -1,6 +1,7 @@
 
 import static java.lang.Math.cos;
 import static java.lang.Math.sin;
+import static java.lang.Math.sqrt;
 import static java.lang.Math.tan;
 
 /**
@@ -57,6 +58,21 @@ public final class Mat4 {
         };
     }
 
+    /**
+     * Multiplies two matrices together into an array instead of allocating.
+     * @param lhs the left operand
+     * @param rhs the right operand
+     * @param result receives the product of the two matrices, which must not be one of the operands
+     */
+    public static void mul(double[] lhs, double[] rhs, double[] result) {
+        for (int row = 0; row < 16; row += 4) {
+            for (int column = 0; column < 4; column++) {
+                result[row + column] = lhs[row] * rhs[column] + lhs[row + 1] * rhs[4 + column]
+                    + lhs[row + 2] * rhs[8 + column] + lhs[row + 3] * rhs[12 + column];
+            }
+        }
+    }
+
     /**
      * Multiplies a vector and a matrix together. The three-dimensional vector is converted
      * to a four-dimensional vector with a w-component of one.
@@ -179,6 +195,52 @@ public final class Mat4 {
         };
     }
 
+    /**
+     * Computes the same view matrix as lookAt, with the same arithmetic, into an array instead of allocating.
+     * @param position the position of the camera
+     * @param target the point the camera looks at
+     * @param up the up direction of the camera
+     * @param result receives the view matrix
+     */
+    public static void lookAt(Vec3 position, Vec3 target, Vec3 up, double[] result) {
+        double zx = position.getX() - target.getX();
+        double zy = position.getY() - target.getY();
+        double zz = position.getZ() - target.getZ();
+        double invMagnitude = 1.0 / sqrt(zx * zx + zy * zy + zz * zz);
+        zx *= invMagnitude;
+        zy *= invMagnitude;
+        zz *= invMagnitude;
+
+        double xx = up.getY() * zz - up.getZ() * zy;
+        double xy = up.getZ() * zx - up.getX() * zz;
+        double xz = up.getX() * zy - up.getY() * zx;
+        invMagnitude = 1.0 / sqrt(xx * xx + xy * xy + xz * xz);
+        xx *= invMagnitude;
+        xy *= invMagnitude;
+        xz *= invMagnitude;
+
+        double yx = zy * xz - zz * xy;
+        double yy = zz * xx - zx * xz;
+        double yz = zx * xy - zy * xx;
+
+        result[0] = xx;
+        result[1] = yx;
+        result[2] = zx;
+        result[3] = 0.0;
+        result[4] = xy;
+        result[5] = yy;
+        result[6] = zy;
+        result[7] = 0.0;
+        result[8] = xz;
+        result[9] = yz;
+        result[10] = zz;
+        result[11] = 0.0;
+        result[12] = -(xx * position.getX() + xy * position.getY() + xz * position.getZ());
+        result[13] = -(yx * position.getX() + yy * position.getY() + yz * position.getZ());
+        result[14] = -(zx * position.getX() + zy * position.getY() + zz * position.getZ());
+        result[15] = 1.0;
+    }
+
     /**
      * Returns a perspective projection matrix.
      * @param fov the field of view in radians
@@ -0,0 +1,168 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.TexturePaint;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.util.stream.IntStream;
+
+/**
+ * A mip map holds the mip chain of a texture: every level halves the width and height of the level above
+ * it by averaging boxes of two by two texels, down to a single texel. The rows of a level are filtered in
+ * parallel.
+ * <p>
+ * The levels are packed into one image, the full texture on the left and the smaller levels stacked on its
+ * right, so that a model is drawn from any level with a single texture paint: a triangle picks its level by
+ * moving its texture coordinates into the level, instead of by switching paint, which costs Java2D more than
+ * sampling the texture. Since the packed image does not repeat like the texture, only models whose texture
+ * coordinates stay inside their texture can be drawn from a mip map.
+ */
+public class MipMap {
+    private final BufferedImage image;
+    private final TexturePaint paint;
+    private final int[] levelX;
+    private final int[] levelY;
+
+    /**
+     * Constructs the mip map of a texture.
+     * @param texture the texture, which is level 0
+     * @param maxLevels the largest number of levels, including level 0
+     */
+    public MipMap(BufferedImage texture, int maxLevels) {
+        int width = texture.getWidth();
+        int height = texture.getHeight();
+        int levelCount = 1;
+        while (levelCount < maxLevels && (width >> levelCount > 0 || height >> levelCount > 0)) {
+            levelCount++;
+        }
+
+        levelX = new int[levelCount];
+        levelY = new int[levelCount];
+        int packedHeight = height;
+        for (int level = 1; level < levelCount; level++) {
+            levelX[level] = width;
+            levelY[level] = level > 1 ? levelY[level - 1] + Math.max(1, height >> level - 1) : 0;
+            packedHeight = Math.max(packedHeight, levelY[level] + Math.max(1, height >> level));
+        }
+
+        int packedWidth = levelCount > 1 ? width + Math.max(1, width / 2) : width;
+        int[][] levels = new int[levelCount][];
+        levels[0] = texture.getRGB(0, 0, width, height, null, 0, width);
+
+        for (int level = 1; level < levelCount; level++) {
+            int sourceWidth = width;
+            int sourceHeight = height;
+            int[] source = levels[level - 1];
+            width = Math.max(1, width / 2);
+            height = Math.max(1, height / 2);
+            int levelWidth = width;
+            int[] filtered = new int[width * height];
+
+            IntStream.range(0, height).parallel().forEach(y -> {
+                int y0 = Math.min(2 * y, sourceHeight - 1) * sourceWidth;
+                int y1 = Math.min(2 * y + 1, sourceHeight - 1) * sourceWidth;
+                for (int x = 0; x < levelWidth; x++) {
+                    int x0 = Math.min(2 * x, sourceWidth - 1);
+                    int x1 = Math.min(2 * x + 1, sourceWidth - 1);
+                    filtered[y * levelWidth + x] = average(
+                        source[y0 + x0], source[y0 + x1], source[y1 + x0], source[y1 + x1]);
+                }
+            });
+
+            levels[level] = filtered;
+        }
+
+        // Pixels at the edge of a thin triangle can sample outside its level, so the space around the
+        // levels is filled with the average color of the texture, which is the color of the smallest level.
+        image = createImage(texture, packedWidth, packedHeight);
+        Graphics2D g = image.createGraphics();
+        g.setColor(new Color(levels[levelCount - 1][0], texture.getColorModel().hasAlpha()));
+        g.fillRect(0, 0, packedWidth, packedHeight);
+        g.dispose();
+
+        // The texels are stored from this thread, since an indexed color model is not safe to share.
+        if (image.getType() == texture.getType()) {
+            image.getRaster().setRect(texture.getRaster());
+        }
+        else {
+            image.setRGB(0, 0, texture.getWidth(), texture.getHeight(), levels[0], 0, texture.getWidth());
+        }
+        for (int level = 1; level < levelCount; level++) {
+            int levelWidth = Math.max(1, texture.getWidth() >> level);
+            int levelHeight = Math.max(1, texture.getHeight() >> level);
+            image.setRGB(levelX[level], levelY[level], levelWidth, levelHeight, levels[level], 0, levelWidth);
+        }
+
+        paint = new TexturePaint(image, new Rectangle2D.Double(0.0, 0.0, image.getWidth(), image.getHeight()));
+    }
+
+    /**
+     * Gets the image all the levels are packed into.
+     * @return the packed image
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * Gets the texture paint of the packed image.
+     * @return the texture paint of the mip map
+     */
+    public TexturePaint getPaint() {
+        return paint;
+    }
+
+    /**
+     * Gets the number of levels, including the full texture.
+     * @return the number of levels
+     */
+    public int getLevelCount() {
+        return levelX.length;
+    }
+
+    /**
+     * Gets the left edge of a level in the packed image.
+     * @param level the level, where 0 is the full texture
+     * @return the x coordinate of the level in texels
+     */
+    public int getLevelX(int level) {
+        return levelX[level];
+    }
+
+    /**
+     * Gets the top edge of a level in the packed image.
+     * @param level the level, where 0 is the full texture
+     * @return the y coordinate of the level in texels
+     */
+    public int getLevelY(int level) {
+        return levelY[level];
+    }
+
+    /**
+     * Creates the packed image in the image type of the texture. An indexed texture keeps its palette.
+     */
+    private static BufferedImage createImage(BufferedImage texture, int width, int height) {
+        if (texture.getType() == BufferedImage.TYPE_BYTE_INDEXED) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED,
+                (IndexColorModel) texture.getColorModel());
+        }
+        else if (texture.getType() != BufferedImage.TYPE_CUSTOM
+            && texture.getType() != BufferedImage.TYPE_BYTE_BINARY)
+        {
+            return new BufferedImage(width, height, texture.getType());
+        }
+
+        return new BufferedImage(width, height, texture.getColorModel().hasAlpha()
+            ? BufferedImage.TYPE_INT_ARGB
+            : BufferedImage.TYPE_INT_RGB);
+    }
+
+    private static int average(int a, int b, int c, int d) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int sum = (a >>> shift & 0xFF) + (b >>> shift & 0xFF) + (c >>> shift & 0xFF) + (d >>> shift & 0xFF);
+            result |= (sum + 2) / 4 << shift;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,143 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * A mip map benchmark renders a field of box-shaped cars with a detailed texture spread far down the
+ * road, with mip mapping turned off and on, and prints how many texels the drawn triangles span and
+ * how long a frame took.
+ */
+public class MipMapBenchmark {
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 360;
+    private static final int TEXTURE_SIZE = 2048;
+    private static final double NEAR_DISTANCE = 20.0;
+    private static final double FAR_DISTANCE = 400.0;
+    private static final double ROAD_WIDTH = 60.0;
+
+    /**
+     * Runs the benchmark.
+     * @param args the number of cars (default 300) and the number of frames per pass (default 200)
+     */
+    public static void main(String[] args) {
+        // The texel footprint is read from the profiler, which must be enabled before it is loaded.
+        System.setProperty("profiler.enabled", "true");
+
+        int carCount = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int frameCount = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        BufferedImage texture = createTexture();
+        long buildStart = System.nanoTime();
+        Model car = createBox(new Vec3(-1.0, 0.0, -2.25), new Vec3(1.0, 1.5, 2.25), texture);
+        System.out.printf("mip chain of a %dx%d texture: %d levels built in %.3f ms%n",
+            TEXTURE_SIZE,
+            TEXTURE_SIZE,
+            car.getMipMap().getLevelCount(),
+            (System.nanoTime() - buildStart) / 1.0e6);
+
+        Random random = new Random(0);
+        double[][] transforms = new double[carCount][];
+        for (int i = 0; i < carCount; i++) {
+            transforms[i] = Mat4.mul(
+                Mat4.rotateY(random.nextDouble() * 2.0 * Math.PI),
+                Mat4.translate(new Vec3(
+                    (random.nextDouble() - 0.5) * ROAD_WIDTH,
+                    0.0,
+                    NEAR_DISTANCE + random.nextDouble() * (FAR_DISTANCE - NEAR_DISTANCE))));
+        }
+
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        Renderer renderer = new Renderer(WIDTH, HEIGHT);
+        renderer.setOcclusionCulling(false);
+        FrameProfiler profiler = FrameProfiler.getInstance();
+
+        for (int pass = 0; pass < 6; pass++) {
+            boolean mipMapping = pass % 2 == 1;
+            renderer.setMipMapping(mipMapping);
+            long texelCount = 0;
+
+            long start = System.nanoTime();
+            for (int frame = 0; frame < frameCount; frame++) {
+                FrameProfiler.beginFrame();
+                double sway = Math.sin(frame * 0.05) * 2.0;
+                renderer.getCamera().setPosition(new Vec3(sway, 3.0, 0.0));
+                renderer.getCamera().setTarget(new Vec3(sway * 0.5, 2.0, 100.0));
+
+                for (int i = 0; i < carCount; i++) {
+                    renderer.drawModel(car, transforms[i]);
+                }
+
+                g.setColor(new Color(0, 127, 255));
+                g.setTransform(new AffineTransform());
+                g.fillRect(0, 0, WIDTH, HEIGHT);
+                renderer.render(g);
+                FrameProfiler.endFrame();
+                texelCount += profiler.getLastCounter(FrameProfiler.TEXEL_FOOTPRINT);
+            }
+            long nanos = System.nanoTime() - start;
+
+            System.out.printf("pass %d: %d cars, mip mapping %s, %.1f thousand texels spanned per frame, %.3f ms per frame%n",
+                pass,
+                carCount,
+                mipMapping ? "on " : "off",
+                (double) texelCount / frameCount,
+                nanos / 1.0e6 / frameCount);
+        }
+    }
+
+    /**
+     * Creates a checkered texture of fine noise that shimmers when it is sampled far below its resolution.
+     */
+    private static BufferedImage createTexture() {
+        BufferedImage texture = new BufferedImage(TEXTURE_SIZE, TEXTURE_SIZE, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(1);
+        for (int y = 0; y < texture.getHeight(); y++) {
+            for (int x = 0; x < texture.getWidth(); x++) {
+                int shade = 96 + random.nextInt(160);
+                texture.setRGB(x, y, (x / 32 + y / 32) % 2 == 0 ? shade << 16 | shade / 4 : shade << 8 | shade);
+            }
+        }
+        return texture;
+    }
+
+    /**
+     * Creates a box with two triangles on every face and outward normals, covered by a texture.
+     */
+    private static Model createBox(Vec3 min, Vec3 max, BufferedImage texture) {
+        Model.Triangle[] triangles = new Model.Triangle[12];
+        int count = 0;
+
+        for (int axis = 0; axis < 3; axis++) {
+            for (int side = 0; side < 2; side++) {
+                Model.Vertex[] corners = new Model.Vertex[4];
+                for (int i = 0; i < 4; i++) {
+                    // Walk the four corners of the face around its edge.
+                    int u = i == 1 || i == 2 ? 1 : 0;
+                    int v = i >= 2 ? 1 : 0;
+                    double[] point = new double[3];
+                    point[axis] = side == 0 ? getAxis(min, axis) : getAxis(max, axis);
+                    point[(axis + 1) % 3] = u == 0 ? getAxis(min, (axis + 1) % 3) : getAxis(max, (axis + 1) % 3);
+                    point[(axis + 2) % 3] = v == 0 ? getAxis(min, (axis + 2) % 3) : getAxis(max, (axis + 2) % 3);
+                    corners[i] = new Model.Vertex(
+                        new Vec3(point[0], point[1], point[2]),
+                        new Vec2(u * texture.getWidth(), v * texture.getHeight()));
+                }
+
+                double[] normal = new double[3];
+                normal[axis] = side == 0 ? -1.0 : 1.0;
+                Vec3 faceNormal = new Vec3(normal[0], normal[1], normal[2]);
+                triangles[count++] = new Model.Triangle(corners[0], corners[1], corners[2], faceNormal);
+                triangles[count++] = new Model.Triangle(corners[0], corners[2], corners[3], faceNormal);
+            }
+        }
+
+        return Model.create(triangles, null, texture);
+    }
+
+    private static double getAxis(Vec3 vector, int axis) {
+        return axis == 0 ? vector.getX() : axis == 1 ? vector.getY() : vector.getZ();
+    }
+}
@@ -4,6 +4,7 @@ import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.DoubleBuffer;
 import java.util.ArrayList;
 import java.util.Scanner;
 
@@ -11,26 +12,270 @@ import javax.imageio.ImageIO;
 
 /**
  * Represents a three-dimensional model made up of triangles and a texture.
+ * <p>
+ * The mesh is stored in flat buffers of vertex positions, texture coordinates, and normals, which the
+ * renderer reads every frame. Setting the system property model.offHeap to true stores these buffers in
+ * the shared OffHeapArena instead of on the heap, and drops the triangle objects the model was built from,
+ * so large meshes add nothing for the garbage collector to trace.
  */
 public class Model {
-    private final Triangle[] triangles;
-    private final BufferedImage texture;
-    private final TexturePaint paint;
+    public static final boolean OFF_HEAP = Boolean.getBoolean("model.offHeap");
 
-    private Model(Triangle[] triangles, BufferedImage texture) {
-        this.triangles = triangles;
+    private static final int MAX_MIP_LEVELS = 16;
+
+    private final String fileName;
+    private final String textureFileName;
+    private Triangle[] triangles;
+    private final int triangleCount;
+    private BufferedImage texture;
+    private TexturePaint paint;
+    // Built on first use, since most textures are moved onto an atlas with its own mip map first.
+    private volatile MipMap mipMap;
+    private volatile boolean mipMapPending;
+    private Vec2 texCoordOffset;
+    private final DoubleBuffer positions;
+    private final DoubleBuffer texCoords;
+    private final DoubleBuffer normals;
+    private final Vec3 boundsMin;
+    private final Vec3 boundsMax;
+    private boolean occluder;
+
+    private Model(String fileName, String textureFileName, Triangle[] triangles, BufferedImage texture) {
+        this(fileName, textureFileName, triangles, texture,
+            texture != null
+                ? new TexturePaint(texture, new Rectangle2D.Double(0.0, 0.0, texture.getWidth(), texture.getHeight()))
+                : null,
+            null,
+            Vec2.ZERO);
+        mipMapPending = texture != null && isInsideTexture(triangles, texture);
+    }
+
+    /**
+     * Constructs a model that shares the texture paint and mip map of another model, such as a baked
+     * model, so that they are not built again.
+     */
+    private Model(String fileName, String textureFileName, Triangle[] triangles, BufferedImage texture,
+        TexturePaint paint, MipMap mipMap, Vec2 texCoordOffset)
+    {
+        this.fileName = fileName;
+        this.textureFileName = textureFileName;
+        triangleCount = triangles.length;
         this.texture = texture;
-        paint = texture != null
-            ? new TexturePaint(texture, new Rectangle2D.Double(0.0, 0.0, texture.getWidth(), texture.getHeight()))
-            : null;
+        this.paint = paint;
+        this.mipMap = mipMap;
+        this.texCoordOffset = texCoordOffset;
+        positions = allocate(9 * triangles.length);
+        texCoords = allocate(6 * triangles.length);
+        normals = allocate(3 * triangles.length);
+
+        for (int i = 0; i < triangles.length; i++) {
+            putVec3(positions, 9 * i, triangles[i].getA().getPosition());
+            putVec3(positions, 9 * i + 3, triangles[i].getB().getPosition());
+            putVec3(positions, 9 * i + 6, triangles[i].getC().getPosition());
+            putVec2(texCoords, 6 * i, triangles[i].getA().getTexCoord());
+            putVec2(texCoords, 6 * i + 2, triangles[i].getB().getTexCoord());
+            putVec2(texCoords, 6 * i + 4, triangles[i].getC().getTexCoord());
+            putVec3(normals, 3 * i, triangles[i].getNormal());
+        }
+
+        double[] min = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
+        double[] max = { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+        for (int i = 0; i < positions.capacity(); i++) {
+            min[i % 3] = Math.min(min[i % 3], positions.get(i));
+            max[i % 3] = Math.max(max[i % 3], positions.get(i));
+        }
+        boundsMin = triangles.length > 0 ? new Vec3(min[0], min[1], min[2]) : Vec3.ZERO;
+        boundsMax = triangles.length > 0 ? new Vec3(max[0], max[1], max[2]) : Vec3.ZERO;
+        occluder = false;
+        this.triangles = OFF_HEAP ? null : triangles;
+    }
+
+    /**
+     * Constructs a model from triangles that were not loaded from an obj file.
+     * @param triangles the triangles of the model, with texture coordinates in texels
+     * @param textureFileName the texture file of the model, or null if the model has no texture
+     * @param texture the model texture, or null if the model has no texture
+     * @return the model
+     */
+    public static Model create(Triangle[] triangles, String textureFileName, BufferedImage texture) {
+        return new Model(null, textureFileName, triangles, texture);
     }
 
     /**
-     * Gets the triangles of the model.
+     * Bakes copies of a model at several offsets into a single static model that shares its texture,
+     * so that geometry which only ever translates together is transformed and drawn as one model.
+     * @param model the model to copy
+     * @param offsets the offset of every copy
+     * @return the baked model
+     */
+    public static Model merge(Model model, Vec3[] offsets) {
+        Triangle[] triangles = model.getTriangles();
+        Triangle[] merged = new Triangle[triangles.length * offsets.length];
+
+        for (int i = 0; i < offsets.length; i++) {
+            for (int j = 0; j < triangles.length; j++) {
+                Triangle triangle = triangles[j];
+                merged[i * triangles.length + j] = new Triangle(
+                    new Vertex(Vec3.add(triangle.getA().getPosition(), offsets[i]), triangle.getA().getTexCoord()),
+                    new Vertex(Vec3.add(triangle.getB().getPosition(), offsets[i]), triangle.getB().getTexCoord()),
+                    new Vertex(Vec3.add(triangle.getC().getPosition(), offsets[i]), triangle.getC().getTexCoord()),
+                    triangle.getNormal());
+            }
+        }
+
+        return new Model(null, model.textureFileName, merged, model.texture, model.paint, model.getMipMap(),
+            model.texCoordOffset);
+    }
+
+    /**
+     * Gets the file the model was loaded from.
+     * @return the file of the model, or null if the model was not loaded from a file
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Gets the file the model texture was loaded from.
+     * @return the texture file of the model, or null if the model has no texture
+     */
+    public String getTextureFileName() {
+        return textureFileName;
+    }
+
+    /**
+     * Gets the triangles of the model. When the mesh is stored off the heap, the triangles are rebuilt
+     * from it on every call, so code that runs every frame reads the mesh buffers instead.
      * @return the triangles of the model
      */
     public Triangle[] getTriangles() {
-        return triangles;
+        if (triangles != null) {
+            return triangles;
+        }
+
+        Triangle[] result = new Triangle[triangleCount];
+        for (int i = 0; i < triangleCount; i++) {
+            result[i] = new Triangle(
+                new Vertex(getVec3(positions, 9 * i), getVec2(texCoords, 6 * i)),
+                new Vertex(getVec3(positions, 9 * i + 3), getVec2(texCoords, 6 * i + 2)),
+                new Vertex(getVec3(positions, 9 * i + 6), getVec2(texCoords, 6 * i + 4)),
+                getVec3(normals, 3 * i));
+        }
+        return result;
+    }
+
+    /**
+     * Gets the number of triangles of the model.
+     * @return the number of triangles
+     */
+    public int getTriangleCount() {
+        return triangleCount;
+    }
+
+    /**
+     * Gets the vertex positions of every triangle in one contiguous buffer: the x, y, and z of the
+     * first, second, and third vertex of the first triangle, followed by those of the next triangle.
+     * The buffer must only be read with absolute gets, since it is shared by the rendering threads.
+     * @return the vertex positions of the model
+     */
+    public DoubleBuffer getPositions() {
+        return positions;
+    }
+
+    /**
+     * Gets the texture coordinates of every triangle in one contiguous buffer: the u and v of the
+     * first, second, and third vertex of the first triangle, followed by those of the next triangle.
+     * The buffer must only be read with absolute gets, since it is shared by the rendering threads.
+     * @return the texture coordinates of the model in texels
+     */
+    public DoubleBuffer getTexCoords() {
+        return texCoords;
+    }
+
+    /**
+     * Gets the normal of every triangle in one contiguous buffer: the x, y, and z of the normal of the
+     * first triangle, followed by that of the next triangle.
+     * The buffer must only be read with absolute gets, since it is shared by the rendering threads.
+     * @return the normals of the model
+     */
+    public DoubleBuffer getNormals() {
+        return normals;
+    }
+
+    /**
+     * Gets the offset of the model's texture coordinates from the texture it was loaded with,
+     * which is the place of that texture in a texture atlas.
+     * @return the offset of the texture coordinates in texels
+     */
+    public Vec2 getTexCoordOffset() {
+        return texCoordOffset;
+    }
+
+    /**
+     * Moves the model onto a texture atlas, and moves its texture coordinates to the place
+     * of its texture in the atlas.
+     * @param atlas the image of the atlas
+     * @param paint the texture paint of the atlas
+     * @param mipMap the mip map of the atlas
+     * @param offset the position of the model's original texture in the atlas, in texels
+     */
+    public void setAtlas(BufferedImage atlas, TexturePaint paint, MipMap mipMap, Vec2 offset) {
+        Vec2 shift = new Vec2(offset.getX() - texCoordOffset.getX(), offset.getY() - texCoordOffset.getY());
+
+        for (int i = 0; i < texCoords.capacity(); i += 2) {
+            texCoords.put(i, texCoords.get(i) + shift.getX());
+            texCoords.put(i + 1, texCoords.get(i + 1) + shift.getY());
+        }
+
+        if (triangles != null) {
+            for (int i = 0; i < triangles.length; i++) {
+                Triangle triangle = triangles[i];
+                triangles[i] = new Triangle(
+                    shiftTexCoord(triangle.getA(), shift),
+                    shiftTexCoord(triangle.getB(), shift),
+                    shiftTexCoord(triangle.getC(), shift),
+                    triangle.getNormal());
+            }
+        }
+
+        texture = atlas;
+        this.paint = paint;
+        mipMapPending = false;
+        this.mipMap = mipMap;
+        texCoordOffset = offset;
+    }
+
+    /**
+     * Gets the corner of the model's axis-aligned bounding box with the smallest coordinates.
+     * @return the minimum corner of the bounding box, in model space
+     */
+    public Vec3 getBoundsMin() {
+        return boundsMin;
+    }
+
+    /**
+     * Gets the corner of the model's axis-aligned bounding box with the largest coordinates.
+     * @return the maximum corner of the bounding box, in model space
+     */
+    public Vec3 getBoundsMax() {
+        return boundsMax;
+    }
+
+    /**
+     * Checks whether the model is solid enough to hide the models behind it from occlusion culling.
+     * @return true if the model is an occluder
+     */
+    public boolean isOccluder() {
+        return occluder;
+    }
+
+    /**
+     * Sets whether the model is solid enough to hide the models behind it from occlusion culling.
+     * Only closed models, such as vehicle bodies, should be occluders.
+     * @param occluder true if the model is an occluder
+     */
+    public void setOccluder(boolean occluder) {
+        this.occluder = occluder;
     }
 
     /**
@@ -49,6 +294,26 @@ public class Model {
         return paint;
     }
 
+    /**
+     * Gets the mip map of the model texture, which is built the first time it is needed.
+     * @return the mip map of the model texture, or null if the model has no texture or repeats its texture
+     */
+    public MipMap getMipMap() {
+        MipMap mipMap = this.mipMap;
+        if (mipMap == null && mipMapPending) {
+            mipMap = buildMipMap();
+        }
+        return mipMap;
+    }
+
+    private synchronized MipMap buildMipMap() {
+        if (mipMapPending) {
+            mipMap = new MipMap(texture, MAX_MIP_LEVELS);
+            mipMapPending = false;
+        }
+        return mipMap;
+    }
+
     /**
      * Loads a model from an obj file and a texture.
      * @param fileName the file of the model
@@ -106,7 +371,7 @@ public class Model {
             }
 
             scanner.close();
-            return new Model(triangles.toArray(new Triangle[triangles.size()]), texture);
+            return new Model(fileName, textureFileName, triangles.toArray(new Triangle[triangles.size()]), texture);
         }
         catch (IOException e) {
             System.err.println("File not found: " + fileName + ", " + textureFileName);
@@ -119,6 +384,49 @@ public class Model {
         return null;
     }
 
+    private static boolean isInsideTexture(Triangle[] triangles, BufferedImage texture) {
+        for (Triangle triangle : triangles) {
+            for (Vertex vertex : new Vertex[] { triangle.getA(), triangle.getB(), triangle.getC() }) {
+                Vec2 texCoord = vertex.getTexCoord();
+                if (texCoord.getX() < 0.0 || texCoord.getX() > texture.getWidth()
+                    || texCoord.getY() < 0.0 || texCoord.getY() > texture.getHeight())
+                {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private static Vertex shiftTexCoord(Vertex vertex, Vec2 shift) {
+        return new Vertex(vertex.getPosition(),
+            new Vec2(vertex.getTexCoord().getX() + shift.getX(), vertex.getTexCoord().getY() + shift.getY()));
+    }
+
+    private static DoubleBuffer allocate(int count) {
+        return OFF_HEAP ? OffHeapArena.getShared().allocateDoubles(count) : DoubleBuffer.allocate(count);
+    }
+
+    private static void putVec3(DoubleBuffer values, int offset, Vec3 vector) {
+        values.put(offset, vector.getX());
+        values.put(offset + 1, vector.getY());
+        values.put(offset + 2, vector.getZ());
+    }
+
+    private static void putVec2(DoubleBuffer values, int offset, Vec2 vector) {
+        values.put(offset, vector.getX());
+        values.put(offset + 1, vector.getY());
+    }
+
+    private static Vec3 getVec3(DoubleBuffer values, int offset) {
+        return new Vec3(values.get(offset), values.get(offset + 1), values.get(offset + 2));
+    }
+
+    private static Vec2 getVec2(DoubleBuffer values, int offset) {
+        return new Vec2(values.get(offset), values.get(offset + 1));
+    }
+
     /**
      * Represents a three-dimensional vertex that has a position.
      */
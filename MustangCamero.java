@@ -1,6 +1,5 @@
 
 import java.awt.Color;
-import java.util.Random;
 
 /**
  * Represents a yellow Mustang Camero.
@@ -14,7 +13,6 @@ public class MustangCamero extends Vehicle {
     private static final int WHEELIE_HOLD = 5;
     private static final int WHEELIE_DOWN = 6;
     private static final int STATE_COUNT = 7;
-    private static final Random random = new Random();
 
     private int state;
     private int time;
@@ -24,7 +22,16 @@ public class MustangCamero extends Vehicle {
      * @param scene the scene the car is in
      */
     public MustangCamero(Scene scene) {
-        super(scene, Model.load("asset/camero2.obj", "asset/camero_map.png"), 0.3);
+        this(scene, Model.load("asset/camero2.obj", "asset/camero_map.png"));
+    }
+
+    /**
+     * Constructs a Mustang Camero with a model that was not loaded from the asset files.
+     * @param scene the scene the car is in
+     * @param model the model of the car
+     */
+    public MustangCamero(Scene scene, Model model) {
+        super(scene, model, 0.3);
         state = JUMP;
         time = 0;
     }
@@ -36,7 +43,7 @@ public class MustangCamero extends Vehicle {
         switch (state) {
         case STRAIGHT:
             if (++time % 30 == 0) {
-                state = random.nextInt(STATE_COUNT);
+                state = scene.getRandom().nextInt(STATE_COUNT);
             }
             break;
 
@@ -0,0 +1,122 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+/**
+ * An occlusion benchmark renders a dense chase of box-shaped cars in three lanes, seen from just
+ * behind the first row below the height of the roofs, with occlusion culling turned off and on, and
+ * prints how many cars were hidden and how long a frame took.
+ */
+public class OcclusionBenchmark {
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 360;
+    private static final int LANE_COUNT = 3;
+    private static final double LANE_WIDTH = 3.0;
+    private static final double ROW_SPACING = 6.0;
+
+    /**
+     * Runs the benchmark.
+     * @param args the number of cars (default 300) and the number of frames per pass (default 200)
+     */
+    public static void main(String[] args) {
+        // The hidden model count is read from the profiler, which must be enabled before it is loaded.
+        System.setProperty("profiler.enabled", "true");
+
+        int carCount = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int frameCount = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        Model car = createBox(new Vec3(-1.0, 0.0, -2.25), new Vec3(1.0, 1.5, 2.25));
+        car.setOccluder(true);
+        double[][] transforms = new double[carCount][];
+        for (int i = 0; i < carCount; i++) {
+            transforms[i] = Mat4.translate(new Vec3(
+                (i % LANE_COUNT - LANE_COUNT / 2) * LANE_WIDTH,
+                0.0,
+                i / LANE_COUNT * ROW_SPACING));
+        }
+
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        Renderer renderer = new Renderer(WIDTH, HEIGHT);
+        FrameProfiler profiler = FrameProfiler.getInstance();
+
+        for (int pass = 0; pass < 6; pass++) {
+            boolean occlusionCulling = pass % 2 == 1;
+            renderer.setOcclusionCulling(occlusionCulling);
+            long hiddenCount = 0;
+
+            long start = System.nanoTime();
+            for (int frame = 0; frame < frameCount; frame++) {
+                FrameProfiler.beginFrame();
+                double sway = Math.sin(frame * 0.05) * 2.0;
+                renderer.getCamera().setPosition(new Vec3(sway, 1.2, -9.0));
+                renderer.getCamera().setTarget(new Vec3(sway * 0.5, 1.0, 20.0));
+
+                for (int i = 0; i < carCount; i++) {
+                    renderer.drawModel(car, transforms[i]);
+                }
+
+                g.setColor(new Color(0, 127, 255));
+                g.setTransform(new AffineTransform());
+                g.fillRect(0, 0, WIDTH, HEIGHT);
+                renderer.render(g);
+                FrameProfiler.endFrame();
+                hiddenCount += profiler.getLastCounter(FrameProfiler.MODELS_OCCLUDED);
+            }
+            long nanos = System.nanoTime() - start;
+
+            System.out.printf("pass %d: %d cars, occlusion %s, %.1f hidden per frame, %.3f ms per frame%n",
+                pass,
+                carCount,
+                occlusionCulling ? "on " : "off",
+                (double) hiddenCount / frameCount,
+                nanos / 1.0e6 / frameCount);
+        }
+    }
+
+    /**
+     * Creates a box with two triangles on every face and outward normals, covered by a checkered texture.
+     */
+    private static Model createBox(Vec3 min, Vec3 max) {
+        BufferedImage texture = new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < texture.getHeight(); y++) {
+            for (int x = 0; x < texture.getWidth(); x++) {
+                texture.setRGB(x, y, (x / 4 + y / 4) % 2 == 0 ? 0x1F2FCF : 0xE0E0E0);
+            }
+        }
+
+        Model.Triangle[] triangles = new Model.Triangle[12];
+        int count = 0;
+
+        for (int axis = 0; axis < 3; axis++) {
+            for (int side = 0; side < 2; side++) {
+                Model.Vertex[] corners = new Model.Vertex[4];
+                for (int i = 0; i < 4; i++) {
+                    // Walk the four corners of the face around its edge.
+                    int u = i == 1 || i == 2 ? 1 : 0;
+                    int v = i >= 2 ? 1 : 0;
+                    double[] point = new double[3];
+                    point[axis] = side == 0 ? getAxis(min, axis) : getAxis(max, axis);
+                    point[(axis + 1) % 3] = u == 0 ? getAxis(min, (axis + 1) % 3) : getAxis(max, (axis + 1) % 3);
+                    point[(axis + 2) % 3] = v == 0 ? getAxis(min, (axis + 2) % 3) : getAxis(max, (axis + 2) % 3);
+                    corners[i] = new Model.Vertex(
+                        new Vec3(point[0], point[1], point[2]),
+                        new Vec2(u * texture.getWidth(), v * texture.getHeight()));
+                }
+
+                double[] normal = new double[3];
+                normal[axis] = side == 0 ? -1.0 : 1.0;
+                Vec3 faceNormal = new Vec3(normal[0], normal[1], normal[2]);
+                triangles[count++] = new Model.Triangle(corners[0], corners[1], corners[2], faceNormal);
+                triangles[count++] = new Model.Triangle(corners[0], corners[2], corners[3], faceNormal);
+            }
+        }
+
+        return Model.create(triangles, null, texture);
+    }
+
+    private static double getAxis(Vec3 vector, int axis) {
+        return axis == 0 ? vector.getX() : axis == 1 ? vector.getY() : vector.getZ();
+    }
+}
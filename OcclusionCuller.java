@@ -0,0 +1,312 @@
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * An occlusion culler finds the models of a frame that are completely hidden behind nearer models,
+ * so the renderer can skip them before transforming their triangles.
+ * <p>
+ * The nearest models marked as occluders are rasterized into a low-resolution depth buffer of
+ * cells. The front faces of an occluder are sampled at the corners of the cells, keeping the nearest
+ * farthest depth of the triangles covering each corner, and a cell only takes the depth of an occluder
+ * when the occluder covers all four corners of the cell; this is exact for occluders without holes smaller
+ * than a cell, such as closed vehicle bodies. A pyramid of coarser levels keeps the farthest depth
+ * of every block of four cells. Each model's bounding box is projected to the screen and tested against
+ * the level where it spans at most two cells across: the model is hidden when every cell it overlaps is
+ * covered by occluders that are all nearer than the nearest corner of its bounding box. Every other
+ * test is conservative, so a visible model is never culled.
+ */
+public class OcclusionCuller {
+    private static final int CELL_SIZE = 8;
+    private static final int MAX_OCCLUDERS = 16;
+    private static final double MIN_DEPTH = 1.0e-3;
+    private static final double NEAR_DEPTH_SUM = 5.5;
+
+    private final int screenWidth;
+    private final int screenHeight;
+    private final int[] levelWidths;
+    private final int[] levelHeights;
+    private final double[][] levels;
+    private final double[] cornerDepths;
+    private final double[] corner;
+    private double[] minXs;
+    private double[] minYs;
+    private double[] maxXs;
+    private double[] maxYs;
+    private double[] nearDepths;
+    private int[] order;
+
+    /**
+     * Constructs an occlusion culler for a screen size.
+     * @param screenWidth the screen width in pixels
+     * @param screenHeight the screen height in pixels
+     */
+    public OcclusionCuller(int screenWidth, int screenHeight) {
+        this.screenWidth = screenWidth;
+        this.screenHeight = screenHeight;
+
+        int levelCount = 1;
+        for (int size = Math.max(screenWidth, screenHeight) / CELL_SIZE; size > 1; size = (size + 1) / 2) {
+            levelCount++;
+        }
+
+        levelWidths = new int[levelCount];
+        levelHeights = new int[levelCount];
+        levels = new double[levelCount][];
+        for (int i = 0; i < levelCount; i++) {
+            levelWidths[i] = i == 0 ? (screenWidth + CELL_SIZE - 1) / CELL_SIZE : (levelWidths[i - 1] + 1) / 2;
+            levelHeights[i] = i == 0 ? (screenHeight + CELL_SIZE - 1) / CELL_SIZE : (levelHeights[i - 1] + 1) / 2;
+            levels[i] = new double[levelWidths[i] * levelHeights[i]];
+        }
+
+        cornerDepths = new double[(levelWidths[0] + 1) * (levelHeights[0] + 1)];
+        Arrays.fill(cornerDepths, Double.POSITIVE_INFINITY);
+        corner = new double[4];
+        ensureCapacity(64);
+    }
+
+    /**
+     * Finds the hidden models of a frame.
+     * @param models the models of the frame
+     * @param mvps the model-view-projection matrix of every model, ending in pixel space
+     * @param count the number of models
+     * @param cameraOrientation the x, y, and z of the direction the camera looks in, used to skip back faces
+     *     like the renderer
+     * @param occluded receives true for every hidden model
+     * @return the number of hidden models
+     */
+    public int cull(Model[] models, double[][] mvps, int count, double[] cameraOrientation, boolean[] occluded) {
+        ensureCapacity(count);
+        Arrays.fill(occluded, 0, count, false);
+        int occluderCount = 0;
+
+        for (int i = 0; i < count; i++) {
+            if (projectBounds(i, models[i], mvps[i]) && models[i].isOccluder()) {
+                order[occluderCount++] = i;
+            }
+        }
+
+        if (occluderCount == 0) {
+            return 0;
+        }
+
+        sortByNearDepth(occluderCount);
+        Arrays.fill(levels[0], Double.POSITIVE_INFINITY);
+        for (int i = 0; i < Math.min(occluderCount, MAX_OCCLUDERS); i++) {
+            rasterize(order[i], models[order[i]], mvps[order[i]], cameraOrientation);
+        }
+        buildPyramid();
+
+        int hiddenCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (nearDepths[i] > 0.0 && isHidden(i)) {
+                occluded[i] = true;
+                hiddenCount++;
+            }
+        }
+
+        return hiddenCount;
+    }
+
+    /**
+     * Projects the corners of a model's bounding box, and keeps the screen rectangle and nearest depth.
+     * The nearest depth is 0 when the box reaches behind the camera, which is never hidden.
+     * @return true if the box is entirely in front of the camera and on the screen
+     */
+    private boolean projectBounds(int index, Model model, double[] mvp) {
+        Vec3 min = model.getBoundsMin();
+        Vec3 max = model.getBoundsMax();
+        minXs[index] = Double.POSITIVE_INFINITY;
+        minYs[index] = Double.POSITIVE_INFINITY;
+        maxXs[index] = Double.NEGATIVE_INFINITY;
+        maxYs[index] = Double.NEGATIVE_INFINITY;
+        nearDepths[index] = Double.POSITIVE_INFINITY;
+
+        for (int i = 0; i < 8; i++) {
+            project((i & 1) == 0 ? min.getX() : max.getX(),
+                (i & 2) == 0 ? min.getY() : max.getY(),
+                (i & 4) == 0 ? min.getZ() : max.getZ(),
+                mvp);
+
+            if (corner[2] <= MIN_DEPTH) {
+                nearDepths[index] = 0.0;
+                return false;
+            }
+
+            minXs[index] = Math.min(minXs[index], corner[0]);
+            minYs[index] = Math.min(minYs[index], corner[1]);
+            maxXs[index] = Math.max(maxXs[index], corner[0]);
+            maxYs[index] = Math.max(maxYs[index], corner[1]);
+            nearDepths[index] = Math.min(nearDepths[index], corner[2]);
+        }
+
+        return maxXs[index] >= 0.0 && maxYs[index] >= 0.0 && minXs[index] < screenWidth && minYs[index] < screenHeight;
+    }
+
+    /**
+     * Samples the triangles of an occluder that the renderer draws at the cell corners, and then writes
+     * the occluder into the cells whose four corners it covers.
+     */
+    private void rasterize(int index, Model model, double[] mvp, double[] cameraOrientation) {
+        DoubleBuffer positions = model.getPositions();
+        DoubleBuffer normals = model.getNormals();
+        int cornerWidth = levelWidths[0] + 1;
+        int minCornerX = Math.max(0, (int) Math.floor(minXs[index] / CELL_SIZE));
+        int minCornerY = Math.max(0, (int) Math.floor(minYs[index] / CELL_SIZE));
+        int maxCornerX = Math.min(levelWidths[0], (int) Math.ceil(maxXs[index] / CELL_SIZE));
+        int maxCornerY = Math.min(levelHeights[0], (int) Math.ceil(maxYs[index] / CELL_SIZE));
+
+        for (int t = 0; t < model.getTriangleCount(); t++) {
+            if (cameraOrientation[0] * normals.get(3 * t)
+                + cameraOrientation[1] * normals.get(3 * t + 1)
+                + cameraOrientation[2] * normals.get(3 * t + 2) >= 0.0)
+            {
+                continue;
+            }
+
+            int offset = 9 * t;
+            project(positions.get(offset), positions.get(offset + 1), positions.get(offset + 2), mvp);
+            double ax = corner[0], ay = corner[1], aw = corner[2];
+            project(positions.get(offset + 3), positions.get(offset + 4), positions.get(offset + 5), mvp);
+            double bx = corner[0], by = corner[1], bw = corner[2];
+            project(positions.get(offset + 6), positions.get(offset + 7), positions.get(offset + 8), mvp);
+            double cx = corner[0], cy = corner[1], cw = corner[2];
+
+            // Only triangles the renderer actually fills may hide anything.
+            if (aw + bw + cw <= NEAR_DEPTH_SUM) {
+                continue;
+            }
+
+            double area = (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+            if (area == 0.0) {
+                continue;
+            }
+
+            double depth = Math.max(aw, Math.max(bw, cw));
+            double sign = Math.signum(area);
+            int startX = Math.max(minCornerX, (int) Math.ceil(Math.min(ax, Math.min(bx, cx)) / CELL_SIZE));
+            int startY = Math.max(minCornerY, (int) Math.ceil(Math.min(ay, Math.min(by, cy)) / CELL_SIZE));
+            int endX = Math.min(maxCornerX, (int) Math.floor(Math.max(ax, Math.max(bx, cx)) / CELL_SIZE));
+            int endY = Math.min(maxCornerY, (int) Math.floor(Math.max(ay, Math.max(by, cy)) / CELL_SIZE));
+
+            for (int y = startY; y <= endY; y++) {
+                double py = Math.min(screenHeight, y * CELL_SIZE);
+                for (int x = startX; x <= endX; x++) {
+                    double px = Math.min(screenWidth, x * CELL_SIZE);
+                    if (depth < cornerDepths[y * cornerWidth + x]
+                        && sign * ((bx - ax) * (py - ay) - (by - ay) * (px - ax)) >= 0.0
+                        && sign * ((cx - bx) * (py - by) - (cy - by) * (px - bx)) >= 0.0
+                        && sign * ((ax - cx) * (py - cy) - (ay - cy) * (px - cx)) >= 0.0)
+                    {
+                        cornerDepths[y * cornerWidth + x] = depth;
+                    }
+                }
+            }
+        }
+
+        double[] cells = levels[0];
+        int width = levelWidths[0];
+        for (int y = minCornerY; y < maxCornerY; y++) {
+            for (int x = minCornerX; x < maxCornerX; x++) {
+                int topLeft = y * cornerWidth + x;
+                double depth = Math.max(
+                    Math.max(cornerDepths[topLeft], cornerDepths[topLeft + 1]),
+                    Math.max(cornerDepths[topLeft + cornerWidth], cornerDepths[topLeft + cornerWidth + 1]));
+                cells[y * width + x] = Math.min(cells[y * width + x], depth);
+            }
+        }
+
+        for (int y = minCornerY; y <= maxCornerY; y++) {
+            Arrays.fill(cornerDepths, y * cornerWidth + minCornerX, y * cornerWidth + maxCornerX + 1,
+                Double.POSITIVE_INFINITY);
+        }
+    }
+
+    private void buildPyramid() {
+        for (int level = 1; level < levels.length; level++) {
+            double[] fine = levels[level - 1];
+            double[] coarse = levels[level];
+            int fineWidth = levelWidths[level - 1];
+            int fineHeight = levelHeights[level - 1];
+
+            for (int y = 0; y < levelHeights[level]; y++) {
+                for (int x = 0; x < levelWidths[level]; x++) {
+                    int x0 = 2 * x;
+                    int y0 = 2 * y;
+                    int x1 = Math.min(x0 + 1, fineWidth - 1);
+                    int y1 = Math.min(y0 + 1, fineHeight - 1);
+                    coarse[y * levelWidths[level] + x] = Math.max(
+                        Math.max(fine[y0 * fineWidth + x0], fine[y0 * fineWidth + x1]),
+                        Math.max(fine[y1 * fineWidth + x0], fine[y1 * fineWidth + x1]));
+                }
+            }
+        }
+    }
+
+    private boolean isHidden(int index) {
+        double minX = Math.max(0.0, minXs[index]);
+        double minY = Math.max(0.0, minYs[index]);
+        double maxX = Math.min(screenWidth - 1.0, maxXs[index]);
+        double maxY = Math.min(screenHeight - 1.0, maxYs[index]);
+        if (minX > maxX || minY > maxY) {
+            return false;
+        }
+
+        int level = 0;
+        int size = CELL_SIZE;
+        while (level < levels.length - 1 && (int) (maxX / size) - (int) (minX / size) > 1
+            || level < levels.length - 1 && (int) (maxY / size) - (int) (minY / size) > 1)
+        {
+            level++;
+            size *= 2;
+        }
+
+        double[] cells = levels[level];
+        int width = levelWidths[level];
+        for (int y = (int) (minY / size); y <= (int) (maxY / size); y++) {
+            for (int x = (int) (minX / size); x <= (int) (maxX / size); x++) {
+                if (cells[y * width + x] >= nearDepths[index]) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private void project(double x, double y, double z, double[] mvp) {
+        double w = x * mvp[3] + y * mvp[7] + z * mvp[11] + mvp[15];
+        corner[0] = (x * mvp[0] + y * mvp[4] + z * mvp[8] + mvp[12]) / w;
+        corner[1] = (x * mvp[1] + y * mvp[5] + z * mvp[9] + mvp[13]) / w;
+        corner[2] = w;
+    }
+
+    /**
+     * Sorts the first occluders of the order from near to far. An insertion sort keeps occluders at the
+     * same depth in model order, and there are only ever a few occluders.
+     */
+    private void sortByNearDepth(int count) {
+        for (int i = 1; i < count; i++) {
+            int index = order[i];
+            int j = i - 1;
+            while (j >= 0 && Double.compare(nearDepths[order[j]], nearDepths[index]) > 0) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = index;
+        }
+    }
+
+    private void ensureCapacity(int count) {
+        if (minXs != null && minXs.length >= count) {
+            return;
+        }
+
+        int capacity = Math.max(count, 2 * (minXs != null ? minXs.length : 0));
+        minXs = new double[capacity];
+        minYs = new double[capacity];
+        maxXs = new double[capacity];
+        maxYs = new double[capacity];
+        nearDepths = new double[capacity];
+        order = new int[capacity];
+    }
+}
@@ -0,0 +1,77 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
+/**
+ * An off-heap arena hands out buffers carved from large direct byte buffers, so that data which lives as
+ * long as a model, such as its mesh, is stored outside the Java heap without a direct allocation per model.
+ * Data outside the heap is never traced or copied by the garbage collector, so a scene with large meshes
+ * keeps a small heap and short collections.
+ * <p>
+ * Buffers are never freed one by one: a slab is returned to the system when it and every buffer carved
+ * from it are unreachable. Buffers are in native byte order, and are read with absolute gets only, so that
+ * any number of threads can read a buffer at once. Allocation is thread-safe.
+ */
+public final class OffHeapArena {
+    private static final int SLAB_BYTES = 16 << 20;
+    private static final OffHeapArena shared = new OffHeapArena(SLAB_BYTES);
+
+    private final int slabBytes;
+    private ByteBuffer slab;
+    private long reservedBytes;
+    private long allocatedBytes;
+
+    /**
+     * Constructs an arena.
+     * @param slabBytes the size of every slab in bytes; larger buffers get a slab of their own
+     */
+    public OffHeapArena(int slabBytes) {
+        this.slabBytes = slabBytes;
+        slab = ByteBuffer.allocateDirect(0);
+        reservedBytes = 0L;
+        allocatedBytes = 0L;
+    }
+
+    /**
+     * Gets the arena shared by the models.
+     * @return the shared arena
+     */
+    public static OffHeapArena getShared() {
+        return shared;
+    }
+
+    /**
+     * Allocates a buffer of doubles, filled with zeros.
+     * @param count the number of doubles
+     * @return the buffer
+     */
+    public synchronized DoubleBuffer allocateDoubles(int count) {
+        int bytes = Double.BYTES * count;
+        if (bytes > slab.remaining()) {
+            int size = Math.max(bytes, slabBytes);
+            slab = ByteBuffer.allocateDirect(size);
+            reservedBytes += size;
+        }
+
+        ByteBuffer buffer = slab.slice(slab.position(), bytes).order(ByteOrder.nativeOrder());
+        slab.position(slab.position() + bytes);
+        allocatedBytes += bytes;
+        return buffer.asDoubleBuffer();
+    }
+
+    /**
+     * Gets the bytes of all slabs allocated by the arena, including those that have since been freed.
+     * @return the reserved bytes
+     */
+    public synchronized long getReservedBytes() {
+        return reservedBytes;
+    }
+
+    /**
+     * Gets the bytes of all buffers allocated from the arena, including those that have since been freed.
+     * @return the allocated bytes
+     */
+    public synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+}
@@ -1,5 +1,6 @@
 
 import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
 
 /**
  * Provides basic information about the screen and a device context.
@@ -11,6 +12,13 @@ public interface OutputGraphicsProvider {
      */
     Graphics2D getGraphics2D();
 
+    /**
+     * Gets the back buffer that the device context draws into. The back buffer is of type
+     * TYPE_INT_RGB, so its pixels can be written directly through its int raster.
+     * @return the back buffer
+     */
+    BufferedImage getBackBuffer();
+
     /**
      * Gets the back buffer width.
      * @return the back buffer width
@@ -0,0 +1,296 @@
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A performance HUD draws frame timings, a frame time graph, triangle counts, and the CPU usage
+ * of tracked threads directly into the int raster of a back buffer. Text is blitted from a glyph
+ * atlas that is rasterized once, so drawing the HUD never goes through Java2D.
+ * The numbers shown are those of the last completed frame published by FrameProfiler.
+ */
+public class PerformanceHud {
+    private static final int FIRST_GLYPH = 32;
+    private static final int LAST_GLYPH = 126;
+    private static final int GRAPH_LENGTH = 256;
+    private static final int GRAPH_HEIGHT = 40;
+    private static final double GRAPH_MAX_MILLIS = 50.0;
+    private static final int MARGIN = 4;
+    private static final int TEXT_COLOR = 0xFFFFFF;
+    private static final long CPU_SAMPLE_NANOS = 500_000_000L;
+
+    private final int glyphWidth;
+    private final int glyphHeight;
+    private final byte[] glyphAtlas;
+    private final long[] frameHistory;
+    private final char[] line;
+    private final ThreadMXBean threadBean;
+    private final List<Thread> threads;
+    private final List<double[]> cpuUsage;
+    private long[] lastCpuNanos;
+    private long lastCpuSample;
+    private int lineLength;
+
+    /**
+     * Constructs a performance HUD and rasterizes its glyph atlas.
+     */
+    public PerformanceHud() {
+        Font font = new Font(Font.MONOSPACED, Font.PLAIN, 10);
+        BufferedImage probe = new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY);
+        FontMetrics metrics = probe.createGraphics().getFontMetrics(font);
+        glyphWidth = metrics.charWidth('M');
+        glyphHeight = metrics.getAscent() + metrics.getDescent();
+
+        int glyphCount = LAST_GLYPH - FIRST_GLYPH + 1;
+        BufferedImage atlas = new BufferedImage(glyphWidth * glyphCount, glyphHeight, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = atlas.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+        g.setFont(font);
+        g.setColor(Color.WHITE);
+        for (int i = 0; i < glyphCount; i++) {
+            g.drawString(String.valueOf((char) (FIRST_GLYPH + i)), i * glyphWidth, metrics.getAscent());
+        }
+        g.dispose();
+
+        glyphAtlas = ((DataBufferByte) atlas.getRaster().getDataBuffer()).getData();
+        frameHistory = new long[GRAPH_LENGTH];
+        line = new char[64];
+        threadBean = ManagementFactory.getThreadMXBean();
+        threads = new ArrayList<>();
+        cpuUsage = new ArrayList<>();
+        lastCpuNanos = new long[0];
+    }
+
+    /**
+     * Adds a thread whose CPU usage is shown by the HUD.
+     * @param thread the thread to track
+     */
+    public void trackThread(Thread thread) {
+        threads.add(thread);
+        cpuUsage.add(new double[1]);
+        lastCpuNanos = new long[threads.size()];
+        lastCpuSample = 0L;
+    }
+
+    /**
+     * Draws the HUD into the top-left corner of a back buffer. When the back buffer is too short for
+     * every line, the threads that do not fit below the frame lines and the graph are summed up in one
+     * line, and the graph is left out when even the frame lines leave no room for it.
+     * @param backBuffer the back buffer of type TYPE_INT_RGB to draw into
+     */
+    public void draw(BufferedImage backBuffer) {
+        int[] pixels = ((DataBufferInt) backBuffer.getRaster().getDataBuffer()).getData();
+        int width = backBuffer.getWidth();
+        int height = backBuffer.getHeight();
+        FrameProfiler profiler = FrameProfiler.getInstance();
+        sampleCpuUsage();
+
+        boolean showGraph = 4 * glyphHeight + GRAPH_HEIGHT + 2 * MARGIN <= height;
+        int textSpace = showGraph ? height - GRAPH_HEIGHT - 2 * MARGIN : height - MARGIN;
+        int fittingLines = Math.max(0, textSpace / glyphHeight);
+        int threadLines = Math.min(threads.size(), Math.max(0, fittingLines - 4));
+        int shownThreads = threadLines < threads.size() ? Math.max(0, threadLines - 1) : threadLines;
+        int textHeight = MARGIN + (Math.min(fittingLines, 4) + threadLines) * glyphHeight;
+        int graphTop = textHeight + MARGIN;
+
+        int panelWidth = Math.min(width, GRAPH_LENGTH + 2 * MARGIN);
+        int panelHeight = Math.min(height, showGraph ? graphTop + GRAPH_HEIGHT + MARGIN : textHeight + MARGIN);
+        darken(pixels, width, panelWidth, panelHeight);
+
+        int historyLength = profiler.getFrameTimeHistory(frameHistory);
+        long sum = 0L;
+        for (int i = 0; i < historyLength; i++) {
+            sum += frameHistory[i];
+        }
+
+        double frameMillis = profiler.getLastStageNanos(FrameProfiler.STAGE_COUNT) / 1.0e6;
+        double fps = sum > 0L ? historyLength * 1.0e9 / sum : 0.0;
+        int y = MARGIN;
+
+        clearLine();
+        append("FPS ").append(fps, 1).append("  FRAME ").append(frameMillis, 2).append(" MS");
+        drawLine(pixels, width, height, MARGIN, y);
+        y += glyphHeight;
+
+        clearLine();
+        append("FILL ").append(profiler.getLastStageNanos(FrameProfiler.FILL) / 1.0e6, 2)
+            .append(" XFORM ").append(profiler.getLastStageNanos(FrameProfiler.TRANSFORM) / 1.0e6, 2)
+            .append(" PRESENT ").append(profiler.getLastStageNanos(FrameProfiler.PRESENT) / 1.0e6, 2);
+        drawLine(pixels, width, height, MARGIN, y);
+        y += glyphHeight;
+
+        clearLine();
+        append("MODELS ").append(profiler.getLastCounter(FrameProfiler.MODELS))
+            .append("  TRIS ").append(profiler.getLastCounter(FrameProfiler.TRIANGLES_SUBMITTED))
+            .append("  HIDDEN ").append(profiler.getLastCounter(FrameProfiler.MODELS_OCCLUDED));
+        drawLine(pixels, width, height, MARGIN, y);
+        y += glyphHeight;
+
+        clearLine();
+        append("CULLED ").append(profiler.getLastCounter(FrameProfiler.TRIANGLES_CULLED))
+            .append("  DRAWN ").append(profiler.getLastCounter(FrameProfiler.TRIANGLES_DRAWN))
+            .append("  AI ").append(profiler.getLastStageNanos(FrameProfiler.PURSUIT) / 1.0e6, 2);
+        drawLine(pixels, width, height, MARGIN, y);
+        y += glyphHeight;
+
+        for (int i = 0; i < shownThreads; i++) {
+            clearLine();
+            append(threads.get(i).getName()).append(" CPU ").append(cpuUsage.get(i)[0], 1).append("%");
+            drawLine(pixels, width, height, MARGIN, y);
+            y += glyphHeight;
+        }
+
+        if (shownThreads < threadLines) {
+            clearLine();
+            append("+").append(threads.size() - shownThreads).append(" THREADS");
+            drawLine(pixels, width, height, MARGIN, y);
+        }
+
+        if (showGraph) {
+            drawGraph(pixels, width, height, MARGIN, graphTop, historyLength);
+        }
+    }
+
+    private void sampleCpuUsage() {
+        long now = System.nanoTime();
+        if (now - lastCpuSample < CPU_SAMPLE_NANOS) {
+            return;
+        }
+
+        for (int i = 0; i < threads.size(); i++) {
+            long cpuNanos = threadBean.getThreadCpuTime(threads.get(i).getId());
+            if (cpuNanos < 0L) {
+                // The thread has finished, such as the asset streamer once every asset is loaded.
+                cpuUsage.get(i)[0] = 0.0;
+            }
+            else if (lastCpuSample != 0L) {
+                cpuUsage.get(i)[0] = 100.0 * (cpuNanos - lastCpuNanos[i]) / (now - lastCpuSample);
+            }
+            lastCpuNanos[i] = cpuNanos;
+        }
+
+        lastCpuSample = now;
+    }
+
+    private void darken(int[] pixels, int width, int panelWidth, int panelHeight) {
+        for (int y = 0; y < panelHeight; y++) {
+            int row = y * width;
+            for (int x = 0; x < panelWidth; x++) {
+                pixels[row + x] = (pixels[row + x] >> 2) & 0x3F3F3F;
+            }
+        }
+    }
+
+    private void drawGraph(int[] pixels, int width, int height, int left, int top, int historyLength) {
+        if (top < 0 || top + GRAPH_HEIGHT > height) {
+            return;
+        }
+
+        int budgetY = top + GRAPH_HEIGHT - (int) (1000.0 / 60.0 / GRAPH_MAX_MILLIS * GRAPH_HEIGHT);
+        int start = GRAPH_LENGTH - historyLength;
+
+        for (int i = 0; i < historyLength; i++) {
+            double millis = frameHistory[i] / 1.0e6;
+            int barHeight = (int) Math.min(GRAPH_HEIGHT, millis / GRAPH_MAX_MILLIS * GRAPH_HEIGHT);
+            int color = millis <= 1000.0 / 60.0 ? 0x00FF00 : millis <= 1000.0 / 30.0 ? 0xFFFF00 : 0xFF0000;
+            int x = left + start + i;
+
+            if (x >= width) {
+                break;
+            }
+
+            for (int y = top + GRAPH_HEIGHT - barHeight; y < top + GRAPH_HEIGHT; y++) {
+                pixels[y * width + x] = color;
+            }
+        }
+
+        for (int x = left; x < Math.min(width, left + GRAPH_LENGTH); x++) {
+            pixels[budgetY * width + x] = TEXT_COLOR;
+        }
+    }
+
+    private void drawLine(int[] pixels, int width, int height, int left, int top) {
+        if (top < 0 || top + glyphHeight > height) {
+            return;
+        }
+
+        int atlasWidth = glyphWidth * (LAST_GLYPH - FIRST_GLYPH + 1);
+
+        for (int i = 0; i < lineLength; i++) {
+            int glyph = line[i] >= FIRST_GLYPH && line[i] <= LAST_GLYPH ? line[i] - FIRST_GLYPH : '?' - FIRST_GLYPH;
+            int x0 = left + i * glyphWidth;
+            if (x0 + glyphWidth > width) {
+                break;
+            }
+
+            for (int y = 0; y < glyphHeight; y++) {
+                int atlasRow = y * atlasWidth + glyph * glyphWidth;
+                int row = (top + y) * width + x0;
+                for (int x = 0; x < glyphWidth; x++) {
+                    if (glyphAtlas[atlasRow + x] != 0) {
+                        pixels[row + x] = TEXT_COLOR;
+                    }
+                }
+            }
+        }
+    }
+
+    private void clearLine() {
+        lineLength = 0;
+    }
+
+    private PerformanceHud append(String text) {
+        for (int i = 0; i < text.length() && lineLength < line.length; i++) {
+            line[lineLength++] = text.charAt(i);
+        }
+        return this;
+    }
+
+    private PerformanceHud append(long value) {
+        if (value < 0L) {
+            append("-");
+            value = -value;
+        }
+
+        int start = lineLength;
+        do {
+            if (lineLength == line.length) {
+                break;
+            }
+            line[lineLength++] = (char) ('0' + value % 10L);
+            value /= 10L;
+        } while (value != 0L);
+
+        for (int i = start, j = lineLength - 1; i < j; i++, j--) {
+            char temp = line[i];
+            line[i] = line[j];
+            line[j] = temp;
+        }
+        return this;
+    }
+
+    private PerformanceHud append(double value, int decimals) {
+        long scale = 1L;
+        for (int i = 0; i < decimals; i++) {
+            scale *= 10L;
+        }
+
+        long fixed = Math.round(value * scale);
+        append(fixed / scale);
+        append(".");
+
+        long fraction = Math.abs(fixed % scale);
+        for (long digit = scale / 10L; digit > 0L; digit /= 10L) {
+            append(fraction / digit % 10L);
+        }
+        return this;
+    }
+}
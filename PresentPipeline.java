@@ -0,0 +1,138 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A present pipeline owns a ring of back buffers and hands finished frames to a presenter.
+ * With more than one frame in flight, frames are presented by a dedicated thread so the next
+ * frame can be rendered while the previous one is being scaled and shown. With one frame in
+ * flight, frames are presented synchronously by the rendering thread.
+ */
+public class PresentPipeline {
+    private final Presenter presenter;
+    private final BlockingQueue<Frame> freeFrames;
+    private final BlockingQueue<Frame> readyFrames;
+    private final FrameStats stats;
+    private final boolean pipelined;
+    private Frame current;
+
+    /**
+     * Constructs a present pipeline.
+     * @param width the back buffer width
+     * @param height the back buffer height
+     * @param framesInFlight the number of back buffers, which bounds the presentation latency in frames
+     * @param presenter the presenter that displays finished frames
+     * @param stats the statistics to record presented frames into, or null
+     */
+    public PresentPipeline(int width, int height, int framesInFlight, Presenter presenter, FrameStats stats) {
+        if (framesInFlight < 1) {
+            throw new IllegalArgumentException("framesInFlight >= 1");
+        }
+
+        this.presenter = presenter;
+        this.stats = stats;
+        pipelined = framesInFlight > 1;
+        freeFrames = new ArrayBlockingQueue<>(framesInFlight);
+        readyFrames = new ArrayBlockingQueue<>(framesInFlight);
+        current = new Frame(width, height);
+
+        for (int i = 1; i < framesInFlight; i++) {
+            freeFrames.add(new Frame(width, height));
+        }
+
+        if (pipelined) {
+            Thread thread = new Thread(this::presentLoop, "Presenter");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Gets the back buffer that is currently being rendered to.
+     * @return the current back buffer
+     */
+    public BufferedImage getBackBuffer() {
+        return current.image;
+    }
+
+    /**
+     * Gets the device context of the back buffer that is currently being rendered to.
+     * @return the device context of the current back buffer
+     */
+    public Graphics2D getGraphics2D() {
+        return current.graphics;
+    }
+
+    /**
+     * Submits the current back buffer for presentation, and then acquires the next back buffer.
+     * Blocks while every back buffer is still waiting to be presented.
+     */
+    public void submit() {
+        if (!pipelined) {
+            present(current);
+            current.startNanos = System.nanoTime();
+            return;
+        }
+
+        try {
+            readyFrames.put(current);
+            current = freeFrames.take();
+            current.startNanos = System.nanoTime();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void presentLoop() {
+        try {
+            for (;;) {
+                Frame frame = readyFrames.take();
+                present(frame);
+                freeFrames.put(frame);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void present(Frame frame) {
+        long presentStart = System.nanoTime();
+        presenter.present(frame.image);
+
+        if (stats != null) {
+            long end = System.nanoTime();
+            stats.record(end - frame.startNanos, end - presentStart);
+        }
+    }
+
+    /**
+     * A presenter displays a finished back buffer.
+     */
+    public interface Presenter {
+        /**
+         * Displays a finished back buffer.
+         * @param frame the back buffer to display
+         */
+        void present(BufferedImage frame);
+    }
+
+    private static class Frame {
+        private final BufferedImage image;
+        private final Graphics2D graphics;
+        private long startNanos;
+
+        /**
+         * Constructs a frame.
+         * @param width the frame width
+         * @param height the frame height
+         */
+        public Frame(int width, int height) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            graphics = image.createGraphics();
+            startNanos = System.nanoTime();
+        }
+    }
+}
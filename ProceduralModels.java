@@ -0,0 +1,281 @@
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Procedural models build the sky, road, terrain and cars of the scene in code, together with their
+ * textures, so that a scene runs without asset files.
+ * <p>
+ * The mesh detail splits every face of a model into a grid of detail by detail quads, which multiplies
+ * its triangle count by the square of the detail without changing its shape, and every texture is a
+ * square of the texture size. Both can be swept to see how the renderer scales with triangles and texels.
+ * Textures are sprinkled with seeded noise, so that they do not compress into flat colors, and the same
+ * seed always builds the same models.
+ */
+public class ProceduralModels {
+    private static final double ROAD_HALF_WIDTH = 6.0;
+    private static final double TERRAIN_HALF_WIDTH = 60.0;
+    private static final double HILL_HEIGHT = 6.0;
+    private static final double SKY_HALF_WIDTH = 200.0;
+    private static final double SKY_HALF_HEIGHT = 100.0;
+    private static final int NOISE = 12;
+
+    private ProceduralModels() {
+    }
+
+    /**
+     * Creates a tile of road with two lanes, a dashed center line and solid edge lines, lying on the
+     * ground plane from z = 0 to the length of a road tile.
+     * @param detail the number of quads along each side of the road surface
+     * @param textureSize the width and height of the texture in texels
+     * @param seed the seed of the texture noise
+     * @return the road tile
+     */
+    public static Model createRoadTile(int detail, int textureSize, long seed) {
+        BufferedImage texture = createTexture(textureSize, seed, (u, v) -> {
+            double distance = Math.abs(u - 0.5);
+            if (distance > 0.44 && distance < 0.47 || distance < 0.015 && v % 0.5 < 0.25) {
+                return 0xE8E8E8;
+            }
+            return 0x505050;
+        });
+
+        List<Model.Triangle> triangles = new ArrayList<>();
+        addQuad(triangles,
+            new Vec3(-ROAD_HALF_WIDTH, 0.01, 0.0),
+            new Vec3(2.0 * ROAD_HALF_WIDTH, 0.0, 0.0),
+            new Vec3(0.0, 0.0, RoadStreamer.TILE_LENGTH),
+            new Vec2(0.0, 0.0), new Vec2(textureSize, 0.0), new Vec2(0.0, textureSize),
+            new Vec3(0.0, 1.0, 0.0),
+            detail);
+
+        return Model.create(triangles.toArray(new Model.Triangle[triangles.size()]), null, texture);
+    }
+
+    /**
+     * Creates a tile of rolling hills on both sides of a road tile. The hills rise from the edge of the
+     * road, and repeat along the z-axis every road tile, so that tiles placed end to end join up.
+     * @param detail the number of rows of quads along the tile; each side has twice as many columns
+     * @param textureSize the width and height of the texture in texels
+     * @param seed the seed of the texture noise
+     * @return the terrain tile
+     */
+    public static Model createTerrainTile(int detail, int textureSize, long seed) {
+        BufferedImage texture = createTexture(textureSize, seed, (u, v) -> 0x30A030);
+        List<Model.Triangle> triangles = new ArrayList<>();
+        int columns = 2 * detail;
+        int rows = detail;
+
+        for (int side = -1; side <= 1; side += 2) {
+            for (int row = 0; row < rows; row++) {
+                for (int column = 0; column < columns; column++) {
+                    Model.Vertex[] corners = new Model.Vertex[4];
+                    for (int i = 0; i < 4; i++) {
+                        // Walk the four corners of the quad around its edge.
+                        double across = (double) (column + (i == 1 || i == 2 ? 1 : 0)) / columns;
+                        double along = (double) (row + (i >= 2 ? 1 : 0)) / rows;
+                        double x = side * (ROAD_HALF_WIDTH + across * (TERRAIN_HALF_WIDTH - ROAD_HALF_WIDTH));
+                        double z = along * RoadStreamer.TILE_LENGTH;
+                        double y = HILL_HEIGHT * across * (0.6 + 0.4 * Math.sin(2.0 * Math.PI * along + 0.3 * x));
+                        corners[i] = new Model.Vertex(new Vec3(x, y, z), new Vec2(
+                            (x + TERRAIN_HALF_WIDTH) / (2.0 * TERRAIN_HALF_WIDTH) * textureSize,
+                            along * textureSize));
+                    }
+
+                    addTriangle(triangles, corners[0], corners[1], corners[2]);
+                    addTriangle(triangles, corners[0], corners[2], corners[3]);
+                }
+            }
+        }
+
+        return Model.create(triangles.toArray(new Model.Triangle[triangles.size()]), null, texture);
+    }
+
+    /**
+     * Creates a box around the origin with its faces turned inwards, covered by a sky that fades from
+     * deep blue overhead to haze at the horizon, for baking into a SkyPanorama. The walls run down the
+     * texture from top to bottom, the ceiling takes its top row and the floor its bottom row.
+     * @param textureSize the width and height of the texture in texels
+     * @return the sky
+     */
+    public static Model createSky(int textureSize) {
+        BufferedImage texture = createTexture(textureSize, 0L, (u, v) -> {
+            double t = Math.min(1.0, v * 2.0);
+            return v < 0.5 ? lerpColor(0x1E50B4, 0xB4D2F0, t * t) : 0x96A0AA;
+        });
+
+        List<Model.Triangle> triangles = new ArrayList<>();
+        double[] cornerXs = { -SKY_HALF_WIDTH, SKY_HALF_WIDTH, SKY_HALF_WIDTH, -SKY_HALF_WIDTH };
+        double[] cornerZs = { -SKY_HALF_WIDTH, -SKY_HALF_WIDTH, SKY_HALF_WIDTH, SKY_HALF_WIDTH };
+        for (int i = 0; i < 4; i++) {
+            Vec3 from = new Vec3(cornerXs[i], SKY_HALF_HEIGHT, cornerZs[i]);
+            Vec3 to = new Vec3(cornerXs[(i + 1) % 4], SKY_HALF_HEIGHT, cornerZs[(i + 1) % 4]);
+            Vec3 wall = Vec3.sub(to, from);
+            addQuad(triangles, from, wall, new Vec3(0.0, -2.0 * SKY_HALF_HEIGHT, 0.0),
+                new Vec2(0.0, 0.0), new Vec2(textureSize, 0.0), new Vec2(0.0, textureSize),
+                Vec3.cross(wall, new Vec3(0.0, 1.0, 0.0)).normalized(),
+                1);
+        }
+
+        for (int side = -1; side <= 1; side += 2) {
+            addQuad(triangles,
+                new Vec3(-SKY_HALF_WIDTH, side * SKY_HALF_HEIGHT, -SKY_HALF_WIDTH),
+                new Vec3(2.0 * SKY_HALF_WIDTH, 0.0, 0.0),
+                new Vec3(0.0, 0.0, 2.0 * SKY_HALF_WIDTH),
+                new Vec2(0.0, side < 0 ? textureSize - 1.0 : 0.0), new Vec2(textureSize, 0.0), new Vec2(0.0, 1.0),
+                new Vec3(0.0, -side, 0.0),
+                1);
+        }
+
+        return Model.create(triangles.toArray(new Model.Triangle[triangles.size()]), null, texture);
+    }
+
+    /**
+     * Creates a car with a body and a cabin, both boxes, the size of the Camero. The body is painted
+     * in the body color and the cabin has dark windows under a roof in the roof color.
+     * @param detail the number of quads along each side of every face
+     * @param textureSize the width and height of the texture in texels
+     * @param seed the seed of the texture noise
+     * @param bodyColor the RGB color of the body
+     * @param roofColor the RGB color of the roof, such as the light bar of a police car
+     * @return the car
+     */
+    public static Model createCar(int detail, int textureSize, long seed, int bodyColor, int roofColor) {
+        // The body is drawn from the top half of the texture, and the cabin from the bottom half.
+        BufferedImage texture = createTexture(textureSize, seed, (u, v) -> {
+            if (v < 0.5) {
+                return bodyColor;
+            }
+            return v < 0.62 ? roofColor : 0x283848;
+        });
+
+        List<Model.Triangle> triangles = new ArrayList<>();
+        addBox(triangles, new Vec3(-1.0, 0.2, -2.2), new Vec3(1.0, 0.8, 2.2),
+            new Vec2(0.0, 0.0), new Vec2(textureSize, textureSize / 2.0),
+            detail);
+        addBox(triangles, new Vec3(-0.85, 0.8, -1.1), new Vec3(0.85, 1.3, 0.9),
+            new Vec2(0.0, textureSize / 2.0), new Vec2(textureSize, textureSize),
+            detail);
+
+        return Model.create(triangles.toArray(new Model.Triangle[triangles.size()]), null, texture);
+    }
+
+    /**
+     * Adds the six faces of a box with outward normals, every face mapped onto the same rectangle of the texture.
+     */
+    private static void addBox(List<Model.Triangle> triangles, Vec3 min, Vec3 max, Vec2 uvMin, Vec2 uvMax,
+        int detail)
+    {
+        Vec3 size = Vec3.sub(max, min);
+        Vec2 uvU = new Vec2(uvMax.getX() - uvMin.getX(), 0.0);
+        Vec2 uvV = new Vec2(0.0, uvMax.getY() - uvMin.getY());
+
+        for (int axis = 0; axis < 3; axis++) {
+            for (int side = 0; side < 2; side++) {
+                double[] origin = { min.getX(), min.getY(), min.getZ() };
+                double[] edgeU = new double[3];
+                double[] edgeV = new double[3];
+                double[] normal = new double[3];
+                origin[axis] += side * getAxis(size, axis);
+                edgeU[(axis + 1) % 3] = getAxis(size, (axis + 1) % 3);
+                edgeV[(axis + 2) % 3] = getAxis(size, (axis + 2) % 3);
+                normal[axis] = side == 0 ? -1.0 : 1.0;
+
+                addQuad(triangles,
+                    new Vec3(origin[0], origin[1], origin[2]),
+                    new Vec3(edgeU[0], edgeU[1], edgeU[2]),
+                    new Vec3(edgeV[0], edgeV[1], edgeV[2]),
+                    uvMin, uvU, uvV,
+                    new Vec3(normal[0], normal[1], normal[2]),
+                    detail);
+            }
+        }
+    }
+
+    /**
+     * Adds a parallelogram split into a grid of detail by detail quads of two triangles each.
+     */
+    private static void addQuad(List<Model.Triangle> triangles, Vec3 origin, Vec3 edgeU, Vec3 edgeV,
+        Vec2 uvOrigin, Vec2 uvEdgeU, Vec2 uvEdgeV, Vec3 normal, int detail)
+    {
+        for (int row = 0; row < detail; row++) {
+            for (int column = 0; column < detail; column++) {
+                Model.Vertex[] corners = new Model.Vertex[4];
+                for (int i = 0; i < 4; i++) {
+                    double u = (double) (column + (i == 1 || i == 2 ? 1 : 0)) / detail;
+                    double v = (double) (row + (i >= 2 ? 1 : 0)) / detail;
+                    corners[i] = new Model.Vertex(
+                        Vec3.add(origin, Vec3.add(Vec3.mul(edgeU, u), Vec3.mul(edgeV, v))),
+                        new Vec2(
+                            uvOrigin.getX() + u * uvEdgeU.getX() + v * uvEdgeV.getX(),
+                            uvOrigin.getY() + u * uvEdgeU.getY() + v * uvEdgeV.getY()));
+                }
+
+                triangles.add(new Model.Triangle(corners[0], corners[1], corners[2], normal));
+                triangles.add(new Model.Triangle(corners[0], corners[2], corners[3], normal));
+            }
+        }
+    }
+
+    /**
+     * Adds a triangle whose normal is computed from its corners and turned upwards.
+     */
+    private static void addTriangle(List<Model.Triangle> triangles, Model.Vertex a, Model.Vertex b, Model.Vertex c) {
+        Vec3 normal = Vec3.cross(
+            Vec3.sub(b.getPosition(), a.getPosition()),
+            Vec3.sub(c.getPosition(), a.getPosition())).normalized();
+        triangles.add(new Model.Triangle(a, b, c, normal.getY() < 0.0 ? Vec3.mul(normal, -1.0) : normal));
+    }
+
+    /**
+     * Creates a square texture from a function of the texture coordinates between 0 and 1, with noise
+     * added to every channel of every texel.
+     */
+    private static BufferedImage createTexture(int size, long seed, TexelFunction function) {
+        BufferedImage texture = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(seed);
+        int[] texels = new int[size * size];
+
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int color = function.getColor((x + 0.5) / size, (y + 0.5) / size);
+                int noise = random.nextInt(2 * NOISE + 1) - NOISE;
+                int result = 0;
+                for (int shift = 0; shift < 24; shift += 8) {
+                    result |= Math.max(0, Math.min(255, (color >> shift & 0xFF) + noise)) << shift;
+                }
+                texels[y * size + x] = result;
+            }
+        }
+
+        texture.setRGB(0, 0, size, size, texels, 0, size);
+        return texture;
+    }
+
+    private static int lerpColor(int from, int to, double t) {
+        int result = 0;
+        for (int shift = 0; shift < 24; shift += 8) {
+            double channel = (from >> shift & 0xFF) + t * ((to >> shift & 0xFF) - (from >> shift & 0xFF));
+            result |= (int) Math.round(channel) << shift;
+        }
+        return result;
+    }
+
+    private static double getAxis(Vec3 vector, int axis) {
+        return axis == 0 ? vector.getX() : axis == 1 ? vector.getY() : vector.getZ();
+    }
+
+    /**
+     * A texel function gives the color of a texture at a point.
+     */
+    private interface TexelFunction {
+        /**
+         * Gets the color of the texture at a point.
+         * @param u the horizontal texture coordinate, between 0 and 1
+         * @param v the vertical texture coordinate, between 0 and 1
+         * @return the RGB color
+         */
+        int getColor(double u, double v);
+    }
+}
@@ -0,0 +1,200 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A pursuit system steers every police car of a scene towards its slot in a formation behind the
+ * Camero while keeping clear of nearby vehicles. The steering of all police cars is computed in one
+ * batch per simulation step, split into bands that run on several cores. Every band only reads a
+ * snapshot of the vehicle positions and velocities taken before the batch, and the spatial grid of the
+ * scene, so no locking is needed and the result does not depend on the number of threads. A band holds
+ * at least 128 police cars, so the steering is only split across threads from 256 police cars on, since
+ * smaller batches take less time than waking the threads. The bands read and write flat arrays only and
+ * allocate nothing; only handing them to the threads allocates their futures.
+ * <p>
+ * The formation has three lanes, and each row of three police cars follows further behind.
+ */
+public class PursuitSystem {
+    private static final int LANE_COUNT = 3;
+    private static final double LANE_WIDTH = 3.0;
+    private static final double FOLLOW_DISTANCE = 10.0;
+    private static final double ROW_SPACING = 5.0;
+    private static final double ARRIVE_GAIN = 0.02;
+    private static final double STEER_GAIN = 0.1;
+    private static final double MAX_ACCELERATION = 0.01;
+    private static final double AVOID_RADIUS = 2.5;
+    private static final double AVOID_GAIN = 0.002;
+    // Steering a band of this many cars takes longer than handing the band to a pool thread.
+    private static final int MIN_CARS_PER_BAND = 128;
+    private static final int MAX_NEIGHBOURS = 32;
+
+    private final Vehicle[] vehicles;
+    private final GenericPoliceCar[] policeCars;
+    private final SpatialGrid spatialGrid;
+    private final double[] positions;
+    private final double[] velocities;
+    private final double[] steering;
+    private final List<Callable<Void>> bands;
+    private final ExecutorService executor;
+    private long lastUpdateNanos;
+
+    /**
+     * Constructs a pursuit system.
+     * @param vehicles the vehicles of the scene, where the first vehicle is the one pursued
+     *     and the other vehicles are the police cars
+     * @param spatialGrid the spatial grid of the vehicles, built from their current positions
+     * @param threadCount the maximum number of threads the steering is computed on
+     */
+    public PursuitSystem(Vehicle[] vehicles, SpatialGrid spatialGrid, int threadCount) {
+        this.vehicles = vehicles;
+        this.spatialGrid = spatialGrid;
+        policeCars = new GenericPoliceCar[vehicles.length - 1];
+        positions = new double[3 * vehicles.length];
+        velocities = new double[3 * vehicles.length];
+        steering = new double[3 * vehicles.length];
+        bands = new ArrayList<>();
+
+        for (int i = 0; i < policeCars.length; i++) {
+            policeCars[i] = (GenericPoliceCar) vehicles[i + 1];
+        }
+
+        int bandCount = Math.max(1, Math.min(threadCount, policeCars.length / MIN_CARS_PER_BAND));
+        for (int i = 0; i < bandCount; i++) {
+            int start = 1 + policeCars.length * i / bandCount;
+            int end = 1 + policeCars.length * (i + 1) / bandCount;
+            int[] neighbours = new int[MAX_NEIGHBOURS];
+            bands.add(() -> {
+                steer(start, end, neighbours);
+                return null;
+            });
+        }
+
+        executor = bandCount > 1
+            ? Executors.newFixedThreadPool(bandCount, runnable -> {
+                Thread thread = new Thread(runnable, "PursuitSystem");
+                thread.setDaemon(true);
+                return thread;
+            })
+            : null;
+    }
+
+    /**
+     * Gets the offset of a slot in the formation from the pursued vehicle.
+     * @param slot the index of the police car in the formation
+     * @return the offset of the slot
+     */
+    public static Vec3 getFormationOffset(int slot) {
+        return new Vec3(getFormationOffsetX(slot), 0.0, getFormationOffsetZ(slot));
+    }
+
+    /**
+     * Gets the time the last update took, from taking the snapshot to handing out the steering.
+     * @return the time of the last update in nanoseconds
+     */
+    public long getLastUpdateNanos() {
+        return lastUpdateNanos;
+    }
+
+    /**
+     * Takes a snapshot of the vehicles, computes the steering of every police car, and then hands
+     * the steering to the police cars for their next step. Must be called from the thread that steps
+     * the vehicles, before the vehicles are stepped.
+     */
+    public void update() {
+        long start = System.nanoTime();
+
+        for (int i = 0; i < vehicles.length; i++) {
+            putVec3(positions, i, vehicles[i].getPosition());
+            putVec3(velocities, i, vehicles[i].getVelocity());
+        }
+
+        try {
+            if (executor == null) {
+                bands.get(0).call();
+            }
+            else {
+                executor.invokeAll(bands);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+
+        for (int i = 0; i < policeCars.length; i++) {
+            int offset = 3 * (i + 1);
+            policeCars[i].setSteering(steering[offset], steering[offset + 1], steering[offset + 2]);
+        }
+
+        lastUpdateNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Stops the threads the steering is computed on. The pursuit system must not be updated afterwards.
+     */
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Computes the steering of a band of vehicles from the snapshot.
+     */
+    private void steer(int start, int end, int[] neighbours) {
+        double targetX = positions[0];
+        double targetZ = positions[2];
+        double targetVelocityX = velocities[0];
+        double targetVelocityZ = velocities[2];
+
+        for (int i = start; i < end; i++) {
+            int offset = 3 * i;
+            double x = positions[offset];
+            double z = positions[offset + 2];
+
+            // Match the velocity of the target, and close the distance to the slot.
+            double desiredVelocityX = targetVelocityX + (targetX + getFormationOffsetX(i - 1) - x) * ARRIVE_GAIN;
+            double desiredVelocityZ = targetVelocityZ + (targetZ + getFormationOffsetZ(i - 1) - z) * ARRIVE_GAIN;
+            double steerX = (desiredVelocityX - velocities[offset]) * STEER_GAIN;
+            double steerZ = (desiredVelocityZ - velocities[offset + 2]) * STEER_GAIN;
+
+            int neighbourCount = Math.min(neighbours.length,
+                spatialGrid.findWithin(x, positions[offset + 1], z, AVOID_RADIUS, i, neighbours));
+            for (int j = 0; j < neighbourCount; j++) {
+                double awayX = x - positions[3 * neighbours[j]];
+                double awayZ = z - positions[3 * neighbours[j] + 2];
+                double distanceSquared = Math.max(awayX * awayX + awayZ * awayZ, 1.0e-4);
+                steerX += awayX / distanceSquared * AVOID_GAIN;
+                steerZ += awayZ / distanceSquared * AVOID_GAIN;
+            }
+
+            double magnitude = Math.sqrt(steerX * steerX + steerZ * steerZ);
+            if (magnitude > MAX_ACCELERATION) {
+                steerX *= MAX_ACCELERATION / magnitude;
+                steerZ *= MAX_ACCELERATION / magnitude;
+            }
+
+            steering[offset] = steerX;
+            steering[offset + 1] = 0.0;
+            steering[offset + 2] = steerZ;
+        }
+    }
+
+    private static double getFormationOffsetX(int slot) {
+        return (slot % LANE_COUNT - LANE_COUNT / 2) * LANE_WIDTH;
+    }
+
+    private static double getFormationOffsetZ(int slot) {
+        return -FOLLOW_DISTANCE - slot / LANE_COUNT * ROW_SPACING;
+    }
+
+    private static void putVec3(double[] values, int index, Vec3 vector) {
+        values[3 * index] = vector.getX();
+        values[3 * index + 1] = vector.getY();
+        values[3 * index + 2] = vector.getZ();
+    }
+}
@@ -1,3 +1,4 @@
+import java.awt.Graphics2D;
 
 /**
  * A RenderContext is a 3D rendering interface.
@@ -15,4 +16,10 @@ public interface RenderContext {
      * @param transform the model transformation
      */
     void drawModel(Model model, double[] transform);
+
+    /**
+     * Renders every model drawn since the last call as seen from the camera.
+     * @param g the device context used to draw the models
+     */
+    void render(Graphics2D g);
 }
\ No newline at end of file
@@ -1,49 +1,178 @@
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Polygon;
+import java.awt.TexturePaint;
 import java.awt.geom.AffineTransform;
-import java.util.LinkedList;
+import java.nio.DoubleBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * A renderer implements RenderContext using Java's drawing methods.
+ * <p>
+ * The renderer draws into one or more viewports, each seen from its own camera. The world bounds of
+ * every model are computed once per frame and shared by the viewports, which skip the models outside
+ * their view before transforming any triangles. When there is more than one viewport, every viewport
+ * is drawn into its own rectangle of the back buffer by its own worker thread.
+ * <p>
+ * Transformed triangles are written into the flat arrays of a triangle arena owned by every viewport,
+ * which only grow to the largest model drawn so far. The camera matrices and the frustum of every viewport
+ * are also kept from frame to frame, and so is a device context for each of up to eight back buffers, such
+ * as a ring of back buffers presented in turn. Drawing a frame into a single viewport therefore allocates
+ * nothing in the renderer once the arenas have grown. Java2D still allocates a paint context and
+ * a path for every triangle it fills, and drawing several viewports allocates the futures of the worker tasks.
  */
 public class Renderer implements RenderContext {
+    /**
+     * The vertical field of view of the camera in radians.
+     */
+    public static final double FIELD_OF_VIEW = 70.0 * Math.PI / 180.0;
+
+    /**
+     * Triangles whose vertex depths add up to no more than this are too close to the camera to draw.
+     */
+    private static final double NEAR_DEPTH_SUM = 5.5;
+
+    /**
+     * The number of screen device contexts a view keeps a device context for, which covers a ring of
+     * back buffers.
+     */
+    private static final int GRAPHICS_SOURCES = 8;
+
     private final int width;
     private final int height;
-    private final Camera camera;
     private final Queue<Model> modelQueue;
     private final Queue<double[]> transformQueue;
     private final Lock queueLock;
     private final Condition queueCondition;
+    private View[] views;
+    private ExecutorService executor;
+    private List<Callable<Void>> viewTasks;
+    private Graphics2D frameGraphics;
+    private int frameModelCount;
+    private Model[] frameModels;
+    private double[][] frameTransforms;
+    private double[] frameBounds;
+    private boolean occlusionCulling;
+    private boolean mipMapping;
     private boolean isRendering;
 
     /**
-     * Constructs a renderer.
+     * Constructs a renderer with a single viewport that covers the screen.
      * @param width the screen width
      * @param height the screen height
      */
     public Renderer(int width, int height) {
         this.width = width;
         this.height = height;
-        camera = new Camera();
-        modelQueue = new LinkedList<>();
-        transformQueue = new LinkedList<>();
+        modelQueue = new ArrayDeque<>();
+        transformQueue = new ArrayDeque<>();
         queueLock = new ReentrantLock();
         queueCondition = queueLock.newCondition();
+        views = new View[] { new View(new Viewport(0, 0, width, height)) };
+        executor = null;
+        viewTasks = new ArrayList<>();
+        frameGraphics = null;
+        frameModelCount = 0;
+        frameModels = new Model[64];
+        frameTransforms = new double[64][];
+        frameBounds = new double[6 * 64];
+        occlusionCulling = Boolean.parseBoolean(System.getProperty("render.occlusion", "true"));
+        mipMapping = Boolean.parseBoolean(System.getProperty("render.mipmaps", "true"));
         isRendering = false;
     }
 
     /**
-     * Gets the camera of the renderer.
+     * Sets whether models hidden behind nearer vehicles are skipped before their triangles are transformed.
+     * Defaults to the system property render.occlusion, which is true unless set otherwise.
+     * @param occlusionCulling true to cull occluded models
+     */
+    public void setOcclusionCulling(boolean occlusionCulling) {
+        this.occlusionCulling = occlusionCulling;
+    }
+
+    /**
+     * Sets whether every triangle is drawn from the mip level of its texture that best matches its size
+     * on screen, instead of from the full texture.
+     * Defaults to the system property render.mipmaps, which is true unless set otherwise.
+     * @param mipMapping true to draw triangles from mip levels
+     */
+    public void setMipMapping(boolean mipMapping) {
+        this.mipMapping = mipMapping;
+    }
+
+    /**
+     * Sets the viewports the models are drawn into. The camera of the first viewport is the camera of the
+     * renderer. Viewports should not overlap, since they are drawn at the same time. Must not be called
+     * while rendering.
+     * @param viewports the viewports, inside the screen
+     */
+    public void setViewports(Viewport... viewports) {
+        if (viewports.length == 0) {
+            throw new IllegalArgumentException("At least one viewport is required");
+        }
+
+        views = new View[viewports.length];
+        for (int i = 0; i < viewports.length; i++) {
+            if (viewports[i].getX() < 0 || viewports[i].getY() < 0
+                || viewports[i].getX() + viewports[i].getWidth() > width
+                || viewports[i].getY() + viewports[i].getHeight() > height)
+            {
+                throw new IllegalArgumentException("Viewport " + i + " is outside the screen");
+            }
+            views[i] = new View(viewports[i]);
+        }
+
+        viewTasks = new ArrayList<>(views.length);
+        for (View view : views) {
+            viewTasks.add(() -> {
+                renderView(view, frameGraphics, frameModelCount);
+                return null;
+            });
+        }
+
+        if (executor != null) {
+            executor.shutdown();
+        }
+        executor = viewports.length > 1
+            ? Executors.newFixedThreadPool(viewports.length, runnable -> {
+                Thread thread = new Thread(runnable, "Renderer");
+                thread.setDaemon(true);
+                return thread;
+            })
+            : null;
+    }
+
+    /**
+     * Gets the viewports the models are drawn into.
+     * @return the viewports, in the order they were set
+     */
+    public Viewport[] getViewports() {
+        Viewport[] viewports = new Viewport[views.length];
+        for (int i = 0; i < views.length; i++) {
+            viewports[i] = views[i].viewport;
+        }
+        return viewports;
+    }
+
+    /**
+     * Gets the camera of the renderer, which is the camera of the first viewport.
      * @return the camera of the renderer
      */
     @Override
     public Camera getCamera() {
-        return camera;
+        return views[0].viewport.getCamera();
     }
 
     /**
@@ -71,81 +200,63 @@ public class Renderer implements RenderContext {
     }
 
     /**
-     * Renders all the models.
+     * Renders all the models into every viewport.
      * @param g the device context used to draw the models
      */
+    @Override
     public void render(Graphics2D g) {
         try {
             queueLock.lock();
             isRendering = true;
 
-            double[] viewProj = Mat4.mul(Mat4.mul(
-                Mat4.lookAt(camera.getPosition(), camera.getTarget(), camera.getUp()),
-                Mat4.perspective(70.0 * Math.PI / 180.0, (double) width / height, 0.0, 1.0)),
-                Mat4.toPixelSpace(width, height));
+            long time = FrameProfiler.start();
+            int modelCount = modelQueue.size();
+            if (frameModels.length < modelCount) {
+                frameModels = new Model[2 * modelCount];
+                frameTransforms = new double[2 * modelCount][];
+                frameBounds = new double[6 * 2 * modelCount];
+            }
 
-            Vec3 cameraOrientation = Vec3.sub(camera.getTarget(), camera.getPosition());
+            for (int i = 0; i < modelCount; i++) {
+                frameModels[i] = modelQueue.remove();
+                frameTransforms[i] = transformQueue.remove();
+                setWorldBounds(frameBounds, 6 * i, frameModels[i], frameTransforms[i]);
+            }
 
-            while (!modelQueue.isEmpty()) {
-                Model model = modelQueue.remove();
-                double[] mvp = Mat4.mul(transformQueue.remove(), viewProj);
-                Model.Triangle[] modelTriangles = model.getTriangles();
-                RenderTriangle[] renderTriangles = new RenderTriangle[modelTriangles.length];
-                Polygon polygon = new Polygon(new int[3], new int[3], 3);
+            time = FrameProfiler.stop(FrameProfiler.SETUP, time);
 
-                if (model.getTexturePaint() != null) {
-                    g.setPaint(model.getTexturePaint());
+            if (views.length == 1) {
+                renderView(views[0], g, modelCount);
+            }
+            else {
+                frameGraphics = g;
+                frameModelCount = modelCount;
+                try {
+                    List<Future<Void>> results = executor.invokeAll(viewTasks);
+                    for (int i = 0; i < results.size(); i++) {
+                        results.get(i).get();
+                    }
                 }
-                else {
-                    polygon.xpoints[0] = 0;
-                    polygon.ypoints[0] = 0;
-                    polygon.xpoints[1] = 1;
-                    polygon.ypoints[1] = 0;
-                    polygon.xpoints[2] = 0;
-                    polygon.ypoints[2] = 1;
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                 }
-
-                for (int i = 0; i < renderTriangles.length; i++) {
-                    Vec4 a = Mat4.mul(modelTriangles[i].getA().getPosition(), mvp);
-                    Vec4 b = Mat4.mul(modelTriangles[i].getB().getPosition(), mvp);
-                    Vec4 c = Mat4.mul(modelTriangles[i].getC().getPosition(), mvp);
-
-                    renderTriangles[i] = new RenderTriangle(
-                        new Vec3(a.getX() / a.getW(), a.getY() / a.getW(), a.getW()),
-                        new Vec3(b.getX() / b.getW(), b.getY() / b.getW(), b.getW()),
-                        new Vec3(c.getX() / c.getW(), c.getY() / c.getW(), c.getW()),
-                        modelTriangles[i].getA().getTexCoord(),
-                        modelTriangles[i].getB().getTexCoord(),
-                        modelTriangles[i].getC().getTexCoord(),
-                        modelTriangles[i].getNormal());
+                catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
                 }
+            }
 
-                sortTriangles(renderTriangles, 0, renderTriangles.length - 1);
-
-                for (int i = 0; i < renderTriangles.length; i++) {
-                    if (Vec3.dot(cameraOrientation, renderTriangles[i].normal) < 0.0
-                        && getDepth(renderTriangles[i]) > 5.5)
-                    {
-                        RenderTriangle renderTriangle = renderTriangles[i];
-                        polygon.xpoints[0] = (int) renderTriangles[i].uvA.getX();
-                        polygon.ypoints[0] = (int) renderTriangles[i].uvA.getY();
-                        polygon.xpoints[1] = (int) renderTriangles[i].uvB.getX();
-                        polygon.ypoints[1] = (int) renderTriangles[i].uvB.getY();
-                        polygon.xpoints[2] = (int) renderTriangles[i].uvC.getX();
-                        polygon.ypoints[2] = (int) renderTriangles[i].uvC.getY();
-                        double[] affine = Mat3.affineMatFromTriangle(
-                                new Vec2(polygon.xpoints[0], polygon.ypoints[0]),
-                                new Vec2(polygon.xpoints[1], polygon.ypoints[1]),
-                                new Vec2(polygon.xpoints[2], polygon.ypoints[2]),
-                                renderTriangle.posA.xy(),
-                                renderTriangle.posB.xy(),
-                                renderTriangle.posC.xy());
-
-                        g.setTransform(new AffineTransform(Mat3.toColMajor2x3(affine)));
-                        g.fillPolygon(polygon);
-                    }
+            for (View view : views) {
+                for (int i = 0; i < FrameProfiler.STAGE_COUNT; i++) {
+                    FrameProfiler.add(i, view.stageNanos[i]);
+                }
+                for (int i = 0; i < FrameProfiler.COUNTER_COUNT; i++) {
+                    FrameProfiler.count(i, view.counters[i]);
                 }
             }
+
+            Arrays.fill(frameModels, 0, modelCount, null);
+            Arrays.fill(frameTransforms, 0, modelCount, null);
+            frameGraphics = null;
         }
         finally {
             isRendering = false;
@@ -154,64 +265,505 @@ public class Renderer implements RenderContext {
         }
     }
 
-    private static void sortTriangles(RenderTriangle[] triangles, int start, int end) {
+    /**
+     * Draws the models of the frame that are inside a viewport, clipped to its rectangle.
+     * Stage times and counters are kept in the view until the frame is finished.
+     */
+    private void renderView(View view, Graphics2D screen, int modelCount) {
+        Viewport viewport = view.viewport;
+        Graphics2D g = view.getGraphics(screen);
+        Arrays.fill(view.stageNanos, 0L);
+        Arrays.fill(view.counters, 0);
+
+        long time = FrameProfiler.start();
+        view.setCamera(viewport.getCamera());
+        double[] cameraOrientation = view.cameraOrientation;
+        view.ensureCapacity(modelCount);
+
+        int count = 0;
+        for (int i = 0; i < modelCount; i++) {
+            if (view.isInsideFrustum(frameBounds, 6 * i)) {
+                view.models[count] = frameModels[i];
+                Mat4.mul(frameTransforms[i], view.viewProjection, view.mvps[count]);
+                count++;
+            }
+        }
+
+        time = view.stop(FrameProfiler.SETUP, time);
+
+        if (occlusionCulling) {
+            view.count(FrameProfiler.MODELS_OCCLUDED,
+                view.occlusionCuller.cull(view.models, view.mvps, count, cameraOrientation, view.occluded));
+            time = view.stop(FrameProfiler.OCCLUSION, time);
+        }
+
+        TriangleArena arena = view.arena;
+        Polygon polygon = arena.polygon;
+        TexturePaint currentPaint = null;
+        double texelFootprint = 0.0;
+        for (int m = 0; m < count; m++) {
+            if (occlusionCulling && view.occluded[m]) {
+                continue;
+            }
+
+            Model model = view.models[m];
+            double[] mvp = view.mvps[m];
+            DoubleBuffer positions = model.getPositions();
+            DoubleBuffer texCoords = model.getTexCoords();
+            DoubleBuffer normals = model.getNormals();
+            int triangleCount = model.getTriangleCount();
+            arena.ensureCapacity(triangleCount);
+            double[] vertices = arena.vertices;
+            double[] depths = arena.depths;
+            int[] order = arena.order;
+
+            for (int i = 0; i < triangleCount; i++) {
+                int vertex = 9 * i;
+                project(positions, vertex, mvp, vertices);
+                project(positions, vertex + 3, mvp, vertices);
+                project(positions, vertex + 6, mvp, vertices);
+                depths[i] = vertices[vertex + 2] + vertices[vertex + 5] + vertices[vertex + 8];
+                order[i] = i;
+            }
+
+            time = view.stop(FrameProfiler.TRANSFORM, time);
+            sortTriangles(order, depths, 0, triangleCount - 1);
+            time = view.stop(FrameProfiler.SORT, time);
+
+            int visibleCount = 0;
+            for (int i = 0; i < triangleCount; i++) {
+                int normal = 3 * order[i];
+                if (cameraOrientation[0] * normals.get(normal)
+                    + cameraOrientation[1] * normals.get(normal + 1)
+                    + cameraOrientation[2] * normals.get(normal + 2) < 0.0
+                    && depths[order[i]] > NEAR_DEPTH_SUM)
+                {
+                    order[visibleCount++] = order[i];
+                }
+            }
+
+            time = view.stop(FrameProfiler.CULL, time);
+            view.count(FrameProfiler.MODELS, 1);
+            view.count(FrameProfiler.TRIANGLES_SUBMITTED, triangleCount);
+            view.count(FrameProfiler.TRIANGLES_CULLED, triangleCount - visibleCount);
+            view.count(FrameProfiler.TRIANGLES_DRAWN, visibleCount);
+
+            MipMap mipMap = mipMapping ? model.getMipMap() : null;
+            TexturePaint paint = mipMap != null ? mipMap.getPaint() : model.getTexturePaint();
+            if (paint != null) {
+                if (paint != currentPaint) {
+                    g.setPaint(paint);
+                    currentPaint = paint;
+                    view.count(FrameProfiler.TEXTURE_SWITCHES, 1);
+                }
+            }
+            else {
+                polygon.xpoints[0] = 0;
+                polygon.ypoints[0] = 0;
+                polygon.xpoints[1] = 1;
+                polygon.ypoints[1] = 0;
+                polygon.xpoints[2] = 0;
+                polygon.ypoints[2] = 1;
+            }
+
+            for (int i = 0; i < visibleCount; i++) {
+                int triangle = order[i];
+                if (mipMap != null) {
+                    // Texture coordinates are rounded to whole texels of the level, so a triangle that
+                    // would shrink to a line is drawn from a larger level instead.
+                    int level = getMipLevel(vertices, texCoords, triangle, mipMap.getLevelCount());
+                    while (!setMipTexCoords(polygon, texCoords, triangle, mipMap, level) && level > 0) {
+                        level--;
+                    }
+                    texelFootprint += getTexelArea(texCoords, triangle) / (1 << 2 * level);
+                }
+                else {
+                    int uv = 6 * triangle;
+                    polygon.xpoints[0] = (int) texCoords.get(uv);
+                    polygon.ypoints[0] = (int) texCoords.get(uv + 1);
+                    polygon.xpoints[1] = (int) texCoords.get(uv + 2);
+                    polygon.ypoints[1] = (int) texCoords.get(uv + 3);
+                    polygon.xpoints[2] = (int) texCoords.get(uv + 4);
+                    polygon.ypoints[2] = (int) texCoords.get(uv + 5);
+                    if (paint != null) {
+                        texelFootprint += getTexelArea(texCoords, triangle);
+                    }
+                }
+
+                // Triangles are projected into the viewport, which is moved into place by the translation.
+                arena.setAffine(vertices, 9 * triangle);
+                arena.affine.setTransform(arena.matrix[0], arena.matrix[1], arena.matrix[2], arena.matrix[3],
+                    arena.matrix[4] + viewport.getX(), arena.matrix[5] + viewport.getY());
+                g.setTransform(arena.affine);
+                g.fillPolygon(polygon);
+            }
+
+            time = view.stop(FrameProfiler.FILL, time);
+        }
+
+        view.count(FrameProfiler.TEXEL_FOOTPRINT, (int) (texelFootprint / 1000.0));
+
+        Arrays.fill(view.models, 0, count, null);
+    }
+
+    /**
+     * Computes the world-space bounding box of a model from its model-space bounding box, as a center and
+     * the half extent along every axis, assuming an affine model transformation.
+     */
+    private static void setWorldBounds(double[] bounds, int offset, Model model, double[] transform) {
+        Vec3 min = model.getBoundsMin();
+        Vec3 max = model.getBoundsMax();
+        double cx = (min.getX() + max.getX()) / 2.0;
+        double cy = (min.getY() + max.getY()) / 2.0;
+        double cz = (min.getZ() + max.getZ()) / 2.0;
+        double ex = (max.getX() - min.getX()) / 2.0;
+        double ey = (max.getY() - min.getY()) / 2.0;
+        double ez = (max.getZ() - min.getZ()) / 2.0;
+
+        for (int i = 0; i < 3; i++) {
+            bounds[offset + i] = cx * transform[i] + cy * transform[4 + i] + cz * transform[8 + i] + transform[12 + i];
+            bounds[offset + 3 + i] = ex * Math.abs(transform[i])
+                + ey * Math.abs(transform[4 + i])
+                + ez * Math.abs(transform[8 + i]);
+        }
+    }
+
+    /**
+     * Sorts the indices of triangles from far to near by the sum of their vertex depths.
+     */
+    private static void sortTriangles(int[] order, double[] depths, int start, int end) {
         if (start < end) {
             int pivotIndex = start;
-            RenderTriangle pivot = triangles[start];
+            double pivotDepth = depths[order[start]];
             int index = start + 1;
 
             while (index <= end) {
-                if (getDepth(triangles[index]) > getDepth(pivot)) {
+                if (depths[order[index]] > pivotDepth) {
                     pivotIndex++;
-                    RenderTriangle temp = triangles[index];
-                    triangles[index] = triangles[pivotIndex];
-                    triangles[pivotIndex] = temp;
+                    int temp = order[index];
+                    order[index] = order[pivotIndex];
+                    order[pivotIndex] = temp;
                 }
 
                 index++;
             }
 
-            RenderTriangle temp = triangles[start];
-            triangles[start] = triangles[pivotIndex];
-            triangles[pivotIndex] = temp;
-            sortTriangles(triangles, start, pivotIndex - 1);
-            sortTriangles(triangles, pivotIndex + 1, end);
+            int temp = order[start];
+            order[start] = order[pivotIndex];
+            order[pivotIndex] = temp;
+            sortTriangles(order, depths, start, pivotIndex - 1);
+            sortTriangles(order, depths, pivotIndex + 1, end);
         }
     }
 
-    private static double getDepth(RenderTriangle triangle) {
-        return Vec3.add(Vec3.add(triangle.posA, triangle.posB), triangle.posC).getZ();
+    /**
+     * Transforms a vertex position by a matrix, and then divides x and y by w, keeping w as the depth.
+     * The projected x, y, and w are written at the same offset as the position.
+     */
+    private static void project(DoubleBuffer positions, int offset, double[] mvp, double[] vertices) {
+        double x = positions.get(offset);
+        double y = positions.get(offset + 1);
+        double z = positions.get(offset + 2);
+        double w = x * mvp[3] + y * mvp[7] + z * mvp[11] + mvp[15];
+
+        vertices[offset] = (x * mvp[0] + y * mvp[4] + z * mvp[8] + mvp[12]) / w;
+        vertices[offset + 1] = (x * mvp[1] + y * mvp[5] + z * mvp[9] + mvp[13]) / w;
+        vertices[offset + 2] = w;
+    }
+
+    /**
+     * Picks the mip level whose texels are closest to one pixel each: every level down divides the
+     * texel area of the triangle by four, so the level is half the base 2 logarithm of the ratio of
+     * its texel area to its screen area.
+     */
+    private static int getMipLevel(double[] vertices, DoubleBuffer texCoords, int triangle, int levelCount) {
+        int vertex = 9 * triangle;
+        double ax = vertices[vertex];
+        double ay = vertices[vertex + 1];
+        double screenArea = Math.abs(
+            (vertices[vertex + 3] - ax) * (vertices[vertex + 7] - ay)
+            - (vertices[vertex + 6] - ax) * (vertices[vertex + 4] - ay)) / 2.0;
+        double ratio = getTexelArea(texCoords, triangle) / screenArea;
+        if (!(ratio >= 2.0)) {
+            return 0;
+        }
+        return Math.min(Math.getExponent(ratio) / 2, levelCount - 1);
+    }
+
+    /**
+     * Moves the texture coordinates of a triangle into a level of a packed mip map.
+     * @return false if the texture coordinates of the triangle round to a line in the level
+     */
+    private static boolean setMipTexCoords(Polygon polygon, DoubleBuffer texCoords, int triangle,
+        MipMap mipMap, int level)
+    {
+        double scale = 1 << level;
+        int uv = 6 * triangle;
+        polygon.xpoints[0] = mipMap.getLevelX(level) + (int) (texCoords.get(uv) / scale);
+        polygon.ypoints[0] = mipMap.getLevelY(level) + (int) (texCoords.get(uv + 1) / scale);
+        polygon.xpoints[1] = mipMap.getLevelX(level) + (int) (texCoords.get(uv + 2) / scale);
+        polygon.ypoints[1] = mipMap.getLevelY(level) + (int) (texCoords.get(uv + 3) / scale);
+        polygon.xpoints[2] = mipMap.getLevelX(level) + (int) (texCoords.get(uv + 4) / scale);
+        polygon.ypoints[2] = mipMap.getLevelY(level) + (int) (texCoords.get(uv + 5) / scale);
+
+        return (polygon.xpoints[1] - polygon.xpoints[0]) * (polygon.ypoints[2] - polygon.ypoints[0])
+            != (polygon.xpoints[2] - polygon.xpoints[0]) * (polygon.ypoints[1] - polygon.ypoints[0]);
+    }
+
+    private static double getTexelArea(DoubleBuffer texCoords, int triangle) {
+        int uv = 6 * triangle;
+        double ua = texCoords.get(uv);
+        double va = texCoords.get(uv + 1);
+        return Math.abs(
+            (texCoords.get(uv + 2) - ua) * (texCoords.get(uv + 5) - va)
+            - (texCoords.get(uv + 4) - ua) * (texCoords.get(uv + 3) - va)) / 2.0;
     }
 
+    /**
+     * A view holds what a viewport needs to draw a frame, so that viewports can be drawn at the same time.
+     */
+    private static class View {
+        private final Viewport viewport;
+        private final OcclusionCuller occlusionCuller;
+        private final double[] frustum;
+        private final long[] stageNanos;
+        private final int[] counters;
+        private final TriangleArena arena;
+        private final double[] perspective;
+        private final double[] pixelSpace;
+        private final double[] lookAt;
+        private final double[] lookAtPerspective;
+        private final double[] viewProjection;
+        private final double[] cameraOrientation;
+        private final Graphics2D[] graphicsSources;
+        private final Graphics2D[] graphicsContexts;
+        private int nextGraphicsSlot;
+        private Model[] models;
+        private double[][] mvps;
+        private boolean[] occluded;
 
+        /**
+         * Constructs a view of a viewport.
+         * @param viewport the viewport to draw into
+         */
+        public View(Viewport viewport) {
+            this.viewport = viewport;
+            occlusionCuller = new OcclusionCuller(viewport.getWidth(), viewport.getHeight());
+            frustum = new double[4 * 5];
+            stageNanos = new long[FrameProfiler.STAGE_COUNT];
+            counters = new int[FrameProfiler.COUNTER_COUNT];
+            arena = new TriangleArena();
+            perspective = Mat4.perspective(FIELD_OF_VIEW, (double) viewport.getWidth() / viewport.getHeight(), 0.0, 1.0);
+            pixelSpace = Mat4.toPixelSpace(viewport.getWidth(), viewport.getHeight());
+            lookAt = new double[16];
+            lookAtPerspective = new double[16];
+            viewProjection = new double[16];
+            cameraOrientation = new double[3];
+            graphicsSources = new Graphics2D[GRAPHICS_SOURCES];
+            graphicsContexts = new Graphics2D[GRAPHICS_SOURCES];
+            nextGraphicsSlot = 0;
+            models = new Model[64];
+            mvps = new double[64][16];
+            occluded = new boolean[64];
+        }
 
-    private static class RenderTriangle {
-        private final Vec3 posA;
-        private final Vec3 posB;
-        private final Vec3 posC;
-        private final Vec2 uvA;
-        private final Vec2 uvB;
-        private final Vec2 uvC;
-        private final Vec3 normal;
+        /**
+         * Gets the device context of the viewport, clipped to its rectangle. The context is created from
+         * the device context of the screen the first time the screen is drawn into, and is kept for every
+         * screen drawn into recently, such as the device context of every back buffer of a ring. When more
+         * screens are drawn into than a view keeps contexts for, the oldest context is disposed.
+         * @param screen the device context of the screen
+         * @return the device context of the viewport, with the paint of the screen
+         */
+        public Graphics2D getGraphics(Graphics2D screen) {
+            int slot = 0;
+            while (slot < graphicsSources.length && graphicsSources[slot] != screen) {
+                slot++;
+            }
+
+            if (slot == graphicsSources.length) {
+                slot = nextGraphicsSlot;
+                nextGraphicsSlot = (slot + 1) % graphicsSources.length;
+                if (graphicsContexts[slot] != null) {
+                    graphicsContexts[slot].dispose();
+                }
+
+                Graphics2D graphics = (Graphics2D) screen.create();
+                arena.affine.setToIdentity();
+                graphics.setTransform(arena.affine);
+                graphics.setClip(viewport.getX(), viewport.getY(), viewport.getWidth(), viewport.getHeight());
+                graphicsSources[slot] = screen;
+                graphicsContexts[slot] = graphics;
+            }
+
+            // Models without a texture are filled with the paint of the screen, like a new context.
+            graphicsContexts[slot].setPaint(screen.getPaint());
+            return graphicsContexts[slot];
+        }
 
         /**
-         * Constructs a render triangle.
-         * @param posA the first vertex position
-         * @param posB the second vertex position
-         * @param posC the third vertex position
-         * @param uvA the first vertex texture coordinate
-         * @param uvB the second vertex texture coordinate
-         * @param uvC the third vertex texture coordinate
-         * @param normal the normal of the triangle
+         * Sets the view projection matrix, the direction the camera looks in, and the planes of the view
+         * frustum of a camera in world space: the four sides, and the depth below which every triangle is too
+         * near to draw. A plane keeps the points on the side its normal points to.
+         * @param camera the camera of the viewport
          */
-        public RenderTriangle(Vec3 posA, Vec3 posB, Vec3 posC, Vec2 uvA, Vec2 uvB, Vec2 uvC, Vec3 normal) {
-            this.posA = posA;
-            this.posB = posB;
-            this.posC = posC;
-            this.uvA = uvA;
-            this.uvB = uvB;
-            this.uvC = uvC;
-            this.normal = normal;
+        public void setCamera(Camera camera) {
+            Mat4.lookAt(camera.getPosition(), camera.getTarget(), camera.getUp(), lookAt);
+            Mat4.mul(lookAt, perspective, lookAtPerspective);
+            Mat4.mul(lookAtPerspective, pixelSpace, viewProjection);
+
+            Vec3 position = camera.getPosition();
+            Vec3 target = camera.getTarget();
+            cameraOrientation[0] = target.getX() - position.getX();
+            cameraOrientation[1] = target.getY() - position.getY();
+            cameraOrientation[2] = target.getZ() - position.getZ();
+
+            // The camera basis is in the columns of the view matrix, where the camera looks down the
+            // negative z axis.
+            double tangentY = Math.tan(FIELD_OF_VIEW / 2.0);
+            double tangentX = tangentY * viewport.getWidth() / viewport.getHeight();
+            for (int i = 0; i < 3; i++) {
+                double axisX = lookAt[4 * i];
+                double axisY = lookAt[4 * i + 1];
+                double axisZ = lookAt[4 * i + 2];
+                frustum[i] = axisZ * -tangentX - axisX;
+                frustum[4 + i] = axisZ * -tangentX + axisX;
+                frustum[8 + i] = axisZ * -tangentY - axisY;
+                frustum[12 + i] = axisZ * -tangentY + axisY;
+                frustum[16 + i] = axisZ * -1.0;
+            }
+
+            for (int plane = 0; plane < 5; plane++) {
+                setPlaneDistance(plane, position, plane == 4 ? NEAR_DEPTH_SUM / 3.0 : 0.0);
+            }
+        }
+
+        /**
+         * Checks whether a world-space bounding box reaches into the view frustum.
+         * @param bounds the center and half extents of bounding boxes
+         * @param offset the index of the bounding box in the array
+         * @return false if the box is entirely outside one of the planes of the frustum
+         */
+        public boolean isInsideFrustum(double[] bounds, int offset) {
+            for (int i = 0; i < frustum.length; i += 4) {
+                double nx = frustum[i];
+                double ny = frustum[i + 1];
+                double nz = frustum[i + 2];
+                double distance = nx * bounds[offset] + ny * bounds[offset + 1] + nz * bounds[offset + 2]
+                    + frustum[i + 3];
+                double radius = Math.abs(nx) * bounds[offset + 3]
+                    + Math.abs(ny) * bounds[offset + 4]
+                    + Math.abs(nz) * bounds[offset + 5];
+
+                if (distance + radius < 0.0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Makes room for the models of a frame.
+         * @param count the number of models
+         */
+        public void ensureCapacity(int count) {
+            if (models.length < count) {
+                models = new Model[2 * count];
+                mvps = new double[2 * count][16];
+                occluded = new boolean[2 * count];
+            }
+        }
+
+        /**
+         * Adds the time since a timestamp to a stage of the view, like FrameProfiler.stop.
+         * @param stage the stage to add to
+         * @param start the timestamp returned by FrameProfiler.start
+         * @return a timestamp for timing the next stage
+         */
+        public long stop(int stage, long start) {
+            if (FrameProfiler.ENABLED) {
+                long now = System.nanoTime();
+                stageNanos[stage] += now - start;
+                return now;
+            }
+
+            return 0L;
+        }
+
+        /**
+         * Adds to a counter of the view, like FrameProfiler.count.
+         * @param counter the counter to add to
+         * @param amount the amount to add
+         */
+        public void count(int counter, int amount) {
+            if (FrameProfiler.ENABLED) {
+                counters[counter] += amount;
+            }
+        }
+
+        private void setPlaneDistance(int plane, Vec3 position, double distance) {
+            frustum[4 * plane + 3] = -(frustum[4 * plane] * position.getX()
+                + frustum[4 * plane + 1] * position.getY()
+                + frustum[4 * plane + 2] * position.getZ()) - distance;
+        }
+    }
+
+    /**
+     * A triangle arena holds the transformed triangles of the model being drawn in flat arrays, which are
+     * reused for every model of every frame and grow to the largest model drawn so far, along with the
+     * polygon and transformation every triangle is filled with.
+     */
+    private static class TriangleArena {
+        private final Polygon polygon;
+        private final AffineTransform affine;
+        private final double[] texel;
+        private final double[] pixel;
+        private final double[] matrix;
+        private double[] vertices;
+        private double[] depths;
+        private int[] order;
+
+        /**
+         * Constructs an empty triangle arena.
+         */
+        public TriangleArena() {
+            polygon = new Polygon(new int[3], new int[3], 3);
+            affine = new AffineTransform();
+            texel = new double[6];
+            pixel = new double[6];
+            matrix = new double[6];
+            vertices = new double[0];
+            depths = new double[0];
+            order = new int[0];
+        }
+
+        /**
+         * Makes room for the triangles of a model: the projected x, y, and w of every vertex, the sum of
+         * the vertex depths of every triangle, and the indices of the triangles in drawing order.
+         * @param triangleCount the number of triangles
+         */
+        public void ensureCapacity(int triangleCount) {
+            if (order.length < triangleCount) {
+                vertices = new double[9 * triangleCount];
+                depths = new double[triangleCount];
+                order = new int[triangleCount];
+            }
+        }
+
+        /**
+         * Sets the matrix to the 2x3 column-major transformation from the texture coordinates in the
+         * polygon to the projected positions of a triangle.
+         * @param vertices the projected vertices
+         * @param offset the index of the first vertex of the triangle in the array
+         */
+        public void setAffine(double[] vertices, int offset) {
+            for (int i = 0; i < 3; i++) {
+                texel[2 * i] = polygon.xpoints[i];
+                texel[2 * i + 1] = polygon.ypoints[i];
+                pixel[2 * i] = vertices[offset + 3 * i];
+                pixel[2 * i + 1] = vertices[offset + 3 * i + 1];
+            }
+            Mat3.affineMatFromTriangle(texel, pixel, matrix);
         }
     }
-}
\ No newline at end of file
+}
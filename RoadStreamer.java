@@ -0,0 +1,81 @@
+/**
+ * A road streamer tiles the road and the terrain beside it along the z-axis in chunks, and draws the
+ * chunks in a configurable range around the camera target. Every chunk is a run of tiles baked into one
+ * static road model and one static terrain model, so a chunk is drawn with two models and a single
+ * translation however many tiles it holds. The baked models are shared by every chunk, and a chunk
+ * only differs in its translation, so the chunks in range are placed directly when the road is drawn
+ * and drawing the road never allocates, whatever the draw distance.
+ */
+public class RoadStreamer {
+    /**
+     * The length of a road tile along the z-axis, which the road and terrain tiles must match.
+     */
+    public static final double TILE_LENGTH = 27.0;
+
+    private static final double CHUNK_OFFSET = -32.0;
+
+    private final Vec3[] tileOffsets;
+    // The baked road and terrain models of a chunk, replaced together.
+    private volatile Model[] chunkModels;
+    private final double chunkLength;
+    private final int chunksBehind;
+    // The transformations handed to the renderer, one for every chunk in range.
+    private final double[][] drawTransforms;
+
+    /**
+     * Constructs a road streamer, and bakes the tiles of a chunk.
+     * @param roadTile the model of a road tile
+     * @param terrainTile the model of the terrain beside a road tile
+     * @param tilesPerChunk the number of tiles baked into a chunk
+     * @param chunksBehind the number of chunks drawn behind the chunk of the target
+     * @param chunksAhead the number of chunks drawn ahead of the chunk of the target
+     */
+    public RoadStreamer(Model roadTile, Model terrainTile, int tilesPerChunk, int chunksBehind, int chunksAhead) {
+        if (tilesPerChunk < 1 || chunksBehind < 0 || chunksAhead < 0) {
+            throw new IllegalArgumentException("tilesPerChunk >= 1 && chunksBehind >= 0 && chunksAhead >= 0");
+        }
+
+        tileOffsets = new Vec3[tilesPerChunk];
+        for (int i = 0; i < tilesPerChunk; i++) {
+            tileOffsets[i] = new Vec3(0.0, 0.0, i * TILE_LENGTH);
+        }
+
+        setTiles(roadTile, terrainTile);
+        chunkLength = tilesPerChunk * TILE_LENGTH;
+        this.chunksBehind = chunksBehind;
+
+        drawTransforms = new double[chunksBehind + chunksAhead + 1][];
+        for (int i = 0; i < drawTransforms.length; i++) {
+            drawTransforms[i] = Mat4.translate(Vec3.ZERO);
+        }
+    }
+
+    /**
+     * Replaces the road and terrain tiles, such as when proxy tiles are swapped for the loaded ones.
+     * The chunk models are baked on the calling thread, and every chunk is drawn with them from the
+     * next time the road is drawn.
+     * @param roadTile the model of a road tile
+     * @param terrainTile the model of the terrain beside a road tile
+     */
+    public void setTiles(Model roadTile, Model terrainTile) {
+        chunkModels = new Model[] { Model.merge(roadTile, tileOffsets), Model.merge(terrainTile, tileOffsets) };
+    }
+
+    /**
+     * Draws the chunks in the draw range of a target. The transformations handed to the renderer are
+     * reused by the next frame, so the renderer must be done with a frame before the next frame is drawn.
+     * @param context the renderer used to draw the chunks
+     * @param target the position the chunks are drawn around
+     */
+    public void draw(RenderContext context, Vec3 target) {
+        int center = (int) Math.floor(target.getZ() / chunkLength);
+        Model[] models = chunkModels;
+
+        for (int i = 0; i < drawTransforms.length; i++) {
+            double[] transform = drawTransforms[i];
+            transform[14] = (center - chunksBehind + i) * chunkLength + CHUNK_OFFSET;
+            context.drawModel(models[1], transform);
+            context.drawModel(models[0], transform);
+        }
+    }
+}
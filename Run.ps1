@@ -1,2 +1,2 @@
-javac Background.java Camera.java GenericPoliceCar.java Main.java Mat3.java Mat4.java Model.java MustangCamero.java OutputGraphicsProvider.java RenderContext.java Renderer.java Scene.java Vec2.java Vec3.java Vec4.java Vehicle.java
+javac AssetStreamer.java Background.java Camera.java DrawCommandRecorder.java DrawCommandReplay.java FrameEvent.java FrameExporter.java FrameProfiler.java FrameProfilerMXBean.java FrameServer.java FrameStats.java FrameViewer.java GenericPoliceCar.java Main.java Mat3.java Mat4.java MipMap.java MipMapBenchmark.java Model.java MustangCamero.java OcclusionBenchmark.java OcclusionCuller.java OffHeapArena.java OutputGraphicsProvider.java PerformanceHud.java PresentPipeline.java ProceduralModels.java PursuitSystem.java RenderContext.java Renderer.java RoadStreamer.java ScalingBenchmark.java Scenario.java Scene.java SceneAssets.java ShardedRender.java SkyPanorama.java SpatialGrid.java StateRecorder.java StateReplay.java TextureAtlas.java TextureSamplingBenchmark.java TiledTexture.java Transform.java TransformBenchmark.java Upscaler.java Vec2.java Vec3.java Vec4.java Vehicle.java Viewport.java
 java Main
\ No newline at end of file
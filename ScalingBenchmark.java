@@ -0,0 +1,287 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A scaling benchmark runs a scenario headlessly for every combination of the values swept on the
+ * command line, and writes one CSV row per run with the frame times, the frames per second, the CPU time
+ * of the process as a percentage of one core, the rate at which every thread allocated memory, and the
+ * garbage collections, and the heap and off-heap memory in use after the run. Each run first draws the warmup frames of its scenario, and then measures its
+ * frames, from the end of one frame to the end of the next.
+ * <p>
+ * For example, {@code java ScalingBenchmark scaling.csv policeCars=2,8,32,128 meshDetail=1,4} runs the
+ * default scenario eight times. Runs share one JVM, so the first runs also warm up the JIT compiler.
+ */
+public class ScalingBenchmark {
+    private static final String[] COLUMNS = {
+        "carTriangles", "framesPerSecond", "frameMeanMillis", "frameP50Millis", "frameP95Millis", "frameP99Millis",
+        "cpuPercent", "allocatedMBPerSecond", "allocatedKBPerFrame", "gcCount", "gcMillis",
+        "modelOffHeap", "heapMB", "offHeapMB"
+    };
+
+    /**
+     * Runs the benchmark.
+     * @param args the CSV file to write, an optional scenario properties file, and any number of
+     *     key=value arguments that override the scenario, where a comma-separated list of values
+     *     sweeps the key
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: java ScalingBenchmark <csv> [scenario.properties] [key=value[,value...]]...");
+            System.exit(-1);
+        }
+
+        Scenario base = new Scenario();
+        List<String> sweptKeys = new ArrayList<>();
+        List<String[]> sweptValues = new ArrayList<>();
+
+        try {
+            for (int i = 1; i < args.length; i++) {
+                int split = args[i].indexOf('=');
+                if (split < 0) {
+                    base = Scenario.load(args[i]);
+                    continue;
+                }
+
+                String key = args[i].substring(0, split);
+                String[] values = args[i].substring(split + 1).split(",");
+                base = base.with(key, values[0]);
+                if (values.length > 1) {
+                    sweptKeys.add(key);
+                    sweptValues.add(values);
+                }
+            }
+        }
+        catch (IOException e) {
+            System.err.println("Cannot read scenario: " + e.getMessage());
+            System.exit(-1);
+        }
+
+        try (PrintStream csv = new PrintStream(args[0])) {
+            csv.println(String.join(",", Scenario.getKeys()) + "," + String.join(",", COLUMNS));
+
+            int[] indices = new int[sweptKeys.size()];
+            do {
+                Scenario scenario = base;
+                for (int i = 0; i < indices.length; i++) {
+                    scenario = scenario.with(sweptKeys.get(i), sweptValues.get(i)[indices[i]]);
+                }
+
+                double[] result = run(scenario);
+                StringBuilder row = new StringBuilder();
+                for (String key : Scenario.getKeys()) {
+                    row.append(scenario.get(key)).append(',');
+                }
+                row.append(String.format("%d,%.2f,%.3f,%.3f,%.3f,%.3f,%.1f,%.2f,%.1f,%d,%.1f,%b,%.1f,%.1f",
+                    (int) result[0], result[1], result[2], result[3], result[4], result[5],
+                    result[6], result[7], result[8], (int) result[9], result[10],
+                    Model.OFF_HEAP, result[11], result[12]));
+                csv.println(row);
+                csv.flush();
+
+                StringBuilder label = new StringBuilder(scenario.get("name"));
+                for (String key : sweptKeys) {
+                    label.append(' ').append(key).append('=').append(scenario.get(key));
+                }
+                System.out.printf("%s: %.1f fps, p50 %.3f ms, p99 %.3f ms, cpu %.0f%%, %.1f MB/s allocated, "
+                    + "%d gc in %.0f ms, heap %.1f MB, off-heap %.1f MB%n",
+                    label, result[1], result[3], result[5], result[6], result[7], (int) result[9], result[10],
+                    result[11], result[12]);
+            } while (next(indices, sweptValues));
+        }
+        catch (IOException e) {
+            System.err.println("Cannot write " + args[0] + ": " + e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Runs a scenario and measures it.
+     * @return the values of the result columns, in order
+     */
+    private static double[] run(Scenario scenario) {
+        System.gc();
+        Output output = new Output(scenario.getInt("width"), scenario.getInt("height"),
+            scenario.getInt("warmupFrames"), scenario.getInt("frames"));
+        Scene scene = scenario.createScene(output);
+        scene.run();
+
+        long[] frameNanos = output.frameNanos.clone();
+        Arrays.sort(frameNanos);
+        double seconds = output.nanos / 1.0e9;
+        double allocatedBytes = output.allocatedBytes;
+        int frames = frameNanos.length;
+
+        // The scene is still reachable, so this is the memory a running scene of the scenario keeps.
+        System.gc();
+        long heapBytes = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        long offHeapBytes = 0L;
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                offHeapBytes += pool.getMemoryUsed();
+            }
+        }
+
+        return new double[] {
+            scene.getVehicles()[0].getModel().getTriangleCount(),
+            frames / seconds,
+            output.nanos / 1.0e6 / frames,
+            getPercentile(frameNanos, 50.0) / 1.0e6,
+            getPercentile(frameNanos, 95.0) / 1.0e6,
+            getPercentile(frameNanos, 99.0) / 1.0e6,
+            100.0 * output.cpuNanos / output.nanos,
+            allocatedBytes / 1.0e6 / seconds,
+            allocatedBytes / 1.0e3 / frames,
+            output.gcCount,
+            output.gcMillis,
+            heapBytes / 1.0e6,
+            offHeapBytes / 1.0e6
+        };
+    }
+
+    private static long getPercentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    /**
+     * Moves to the next combination of swept values, like an odometer.
+     * @return false after the last combination
+     */
+    private static boolean next(int[] indices, List<String[]> values) {
+        for (int i = indices.length - 1; i >= 0; i--) {
+            if (++indices[i] < values.get(i).length) {
+                return true;
+            }
+            indices[i] = 0;
+        }
+        return false;
+    }
+
+    /**
+     * A headless output that times every swapped frame after the warmup, and samples the CPU time,
+     * allocations and garbage collections at the start and end of the measured frames.
+     */
+    private static class Output implements OutputGraphicsProvider {
+        private final BufferedImage backBuffer;
+        private final Graphics2D graphics;
+        private final int warmupFrames;
+        private final long[] frameNanos;
+        private final com.sun.management.ThreadMXBean threadBean;
+        private final com.sun.management.OperatingSystemMXBean osBean;
+        private final Map<Long, Long> startAllocatedBytes;
+        private int frame;
+        private long lastSwap;
+        private long startCpuNanos;
+        private long startGcCount;
+        private long startGcMillis;
+        private long nanos;
+        private long cpuNanos;
+        private long allocatedBytes;
+        private long gcCount;
+        private long gcMillis;
+
+        /**
+         * Constructs a headless output.
+         * @param width the back buffer width
+         * @param height the back buffer height
+         * @param warmupFrames the frames swapped before measuring
+         * @param frames the frames measured
+         */
+        public Output(int width, int height, int warmupFrames, int frames) {
+            backBuffer = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            graphics = backBuffer.createGraphics();
+            this.warmupFrames = warmupFrames;
+            frameNanos = new long[frames];
+            threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            osBean = (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+            startAllocatedBytes = new HashMap<>();
+            frame = 0;
+        }
+
+        @Override
+        public Graphics2D getGraphics2D() {
+            return graphics;
+        }
+
+        @Override
+        public BufferedImage getBackBuffer() {
+            return backBuffer;
+        }
+
+        @Override
+        public int getBufferWidth() {
+            return backBuffer.getWidth();
+        }
+
+        @Override
+        public int getBufferHeight() {
+            return backBuffer.getHeight();
+        }
+
+        /**
+         * Ends a frame, and starts or stops measuring at the ends of the warmup and of the measured frames.
+         */
+        @Override
+        public void swapBuffers() {
+            long now = System.nanoTime();
+            frame++;
+
+            if (frame == warmupFrames || warmupFrames == 0 && frame == 1) {
+                startCpuNanos = osBean.getProcessCpuTime();
+                startGcCount = getGcCount();
+                startGcMillis = getGcMillis();
+                long[] ids = threadBean.getAllThreadIds();
+                long[] bytes = threadBean.getThreadAllocatedBytes(ids);
+                for (int i = 0; i < ids.length; i++) {
+                    startAllocatedBytes.put(ids[i], bytes[i]);
+                }
+                nanos = -now;
+            }
+            else if (frame > warmupFrames && frame - warmupFrames <= frameNanos.length) {
+                frameNanos[frame - warmupFrames - 1] = now - lastSwap;
+            }
+
+            if (frame == warmupFrames + frameNanos.length) {
+                nanos += now;
+                cpuNanos = osBean.getProcessCpuTime() - startCpuNanos;
+                gcCount = getGcCount() - startGcCount;
+                gcMillis = getGcMillis() - startGcMillis;
+                long[] ids = threadBean.getAllThreadIds();
+                long[] bytes = threadBean.getThreadAllocatedBytes(ids);
+                for (int i = 0; i < ids.length; i++) {
+                    if (bytes[i] >= 0L) {
+                        allocatedBytes += bytes[i] - startAllocatedBytes.getOrDefault(ids[i], 0L);
+                    }
+                }
+            }
+
+            lastSwap = now;
+        }
+
+        private static long getGcCount() {
+            long count = 0L;
+            for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+                count += Math.max(0L, bean.getCollectionCount());
+            }
+            return count;
+        }
+
+        private static long getGcMillis() {
+            long millis = 0L;
+            for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+                millis += Math.max(0L, bean.getCollectionTime());
+            }
+            return millis;
+        }
+    }
+}
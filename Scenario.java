@@ -0,0 +1,160 @@
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * A scenario describes a seeded, fixed timestep run of the scene to benchmark: how many police cars
+ * chase the Camero, how detailed the generated meshes and textures are, the resolution, the views the
+ * cameras follow, the draw distance, and how many frames are drawn. Scenarios are read from properties
+ * files, and any value can be overridden, such as from the command line.
+ * <p>
+ * The keys and their defaults are:
+ * <ul>
+ * <li>name (default) - a label for the scenario</li>
+ * <li>assets (generated) - generated to build the models with ProceduralModels, or files to load them
+ *     from the asset directory</li>
+ * <li>policeCars (2) - the number of police cars</li>
+ * <li>meshDetail (1) - the quads along each side of every face of the generated models</li>
+ * <li>textureSize (64) - the width and height of the generated textures</li>
+ * <li>textureFormat (rgb) - the texel format of the texture atlases, or none to draw without atlases</li>
+ * <li>width, height (640, 360) - the resolution of the frames</li>
+ * <li>views (chase) - the views drawn side by side, joined with +, such as chase+helicopter+rear</li>
+ * <li>roadChunks (1) - the chunks of road drawn ahead of the Camero</li>
+ * <li>fps (30) - the simulated frame rate</li>
+ * <li>warmupFrames (60) - the frames drawn before measuring</li>
+ * <li>frames (300) - the frames measured</li>
+ * <li>seed (0) - the seed of the simulation and of the generated textures</li>
+ * </ul>
+ */
+public class Scenario {
+    private static final String[] KEYS = {
+        "name", "assets", "policeCars", "meshDetail", "textureSize", "textureFormat", "width", "height",
+        "views", "roadChunks", "fps", "warmupFrames", "frames", "seed"
+    };
+    private static final String[] DEFAULTS = {
+        "default", "generated", "2", "1", "64", "rgb", "640", "360",
+        "chase", "1", "30", "60", "300", "0"
+    };
+
+    private final Properties values;
+
+    /**
+     * Constructs the default scenario.
+     */
+    public Scenario() {
+        values = new Properties();
+        for (int i = 0; i < KEYS.length; i++) {
+            values.setProperty(KEYS[i], DEFAULTS[i]);
+        }
+    }
+
+    private Scenario(Properties values) {
+        this.values = values;
+    }
+
+    /**
+     * Loads a scenario from a properties file. Keys missing from the file keep their defaults.
+     * @param path the properties file
+     * @return the scenario
+     * @throws IOException when the file cannot be read
+     */
+    public static Scenario load(String path) throws IOException {
+        Properties file = new Properties();
+        try (Reader reader = new FileReader(path)) {
+            file.load(reader);
+        }
+
+        Scenario scenario = new Scenario();
+        for (String key : file.stringPropertyNames()) {
+            scenario = scenario.with(key, file.getProperty(key).trim());
+        }
+        return scenario;
+    }
+
+    /**
+     * Gets the keys of a scenario, in the order they are written to reports.
+     * @return the keys
+     */
+    public static String[] getKeys() {
+        return KEYS.clone();
+    }
+
+    /**
+     * Creates a copy of the scenario with one value replaced.
+     * @param key the key of the value
+     * @param value the new value
+     * @return the new scenario
+     */
+    public Scenario with(String key, String value) {
+        if (!Arrays.asList(KEYS).contains(key)) {
+            throw new IllegalArgumentException("Unknown scenario key: " + key);
+        }
+
+        Properties copy = new Properties();
+        copy.putAll(values);
+        copy.setProperty(key, value);
+        return new Scenario(copy);
+    }
+
+    /**
+     * Gets a value of the scenario.
+     * @param key the key of the value
+     * @return the value
+     */
+    public String get(String key) {
+        return values.getProperty(key);
+    }
+
+    /**
+     * Gets a whole number value of the scenario.
+     * @param key the key of the value
+     * @return the value
+     */
+    public int getInt(String key) {
+        try {
+            return Integer.parseInt(get(key));
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Scenario " + key + " is not a whole number: " + get(key));
+        }
+    }
+
+    /**
+     * Creates the scene of the scenario, drawing into an output. The scene uses a fixed timestep at
+     * the frame rate of the scenario, and runs for its warmup frames followed by its measured frames.
+     * @param output the output the scene draws into, whose size should be the resolution of the scenario
+     * @return the scene, ready to run
+     */
+    public Scene createScene(OutputGraphicsProvider output) {
+        long seed = getInt("seed");
+        SceneAssets assets;
+        switch (get("assets")) {
+        case "generated":
+            assets = SceneAssets.generate(getInt("meshDetail"), getInt("textureSize"), seed);
+            break;
+
+        case "files":
+            assets = SceneAssets.load();
+            break;
+
+        default:
+            throw new IllegalArgumentException("Unknown scenario assets: " + get("assets"));
+        }
+
+        Scene scene = new Scene(output, getInt("policeCars"), assets);
+        scene.setSeed(seed);
+        scene.setFixedTimestep(true);
+        scene.setFrameRate(getInt("fps"));
+        scene.setFrameCount(getInt("warmupFrames") + getInt("frames"));
+        scene.setViews(get("views").split("\\+"));
+
+        if (!get("textureFormat").equals("none")) {
+            scene.packTextures(get("textureFormat"));
+        }
+        scene.setRoadDistance(4, 1, getInt("roadChunks"));
+
+        return scene;
+    }
+}
@@ -1,6 +1,9 @@
-import java.awt.Color;
 import java.awt.Graphics2D;
-import java.awt.geom.AffineTransform;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 import static java.lang.Math.cos;
 import static java.lang.Math.sin;
 
@@ -9,37 +12,116 @@ import static java.lang.Math.sin;
  */
 public class Scene implements Runnable {
     private static final int POLICE_CAR_COUNT = 2;
+    private static final double TICKS_PER_SECOND = 60.0;
+    private static final double TICK_SECONDS = 1.0 / TICKS_PER_SECOND;
+    private static final int MAX_TICKS_PER_FRAME = 8;
+    private static final double CAMERA_SPEED = 0.005;
+    private static final int CAMERA_STATE_SIZE = 6;
+    private static final int VEHICLE_STATE_SIZE = 6;
+    private static final double SPATIAL_CELL_SIZE = 4.0;
+    private static final int ROAD_TILES_PER_CHUNK = 4;
+    private static final int ROAD_CHUNKS_BEHIND = 1;
+    private static final int ROAD_CHUNKS_AHEAD = 1;
+    private static final int SKY_PANORAMA_WIDTH = 2048;
+    private static final int SKY_PANORAMA_HEIGHT = 512;
+    private static final int TEXTURE_ATLAS_SIZE = 4096;
+    private static final String[] VIEW_NAMES = { "chase", "helicopter", "rear" };
 
     private final OutputGraphicsProvider output;
-    private final Renderer renderContext;
-    private final Background sky;
-    private final Background hills;
-    private final Background road;
+    private final Renderer renderer;
+    private RenderContext renderContext;
+    private String[] views;
+    private volatile SkyPanorama sky;
+    private Model hills;
+    private Model road;
+    private RoadStreamer roadStreamer;
+    private int roadTilesPerChunk;
+    private int roadChunksBehind;
+    private int roadChunksAhead;
+    private List<TextureAtlas> textureAtlases;
+    private String textureFormat;
+    private AssetStreamer assetStreamer;
     private final Vehicle camero;
-    private final Vehicle[] policeCars;
+    private final GenericPoliceCar[] policeCars;
+    private final Vehicle[] vehicles;
+    private final SpatialGrid spatialGrid;
+    private PursuitSystem pursuitSystem;
+    private int pursuitThreads;
+    private final Random random;
+    private final double[] frameState;
+    private PerformanceHud hud;
+    private StateRecorder recorder;
+    private StateReplay replay;
+    private boolean fixedTimestep;
+    private double frameRate;
+    private int frameCount;
+    private int firstFrame;
+    private double previousTime;
+    private double time;
 
     /**
      * Constructs a scene.
      * @param output the output graphics provider used to display the scene
      */
     public Scene(OutputGraphicsProvider output) {
+        this(output, POLICE_CAR_COUNT);
+    }
+
+    /**
+     * Constructs a scene with a number of police cars.
+     * @param output the output graphics provider used to display the scene
+     * @param policeCarCount the number of police cars chasing the Camero
+     */
+    public Scene(OutputGraphicsProvider output, int policeCarCount) {
+        this(output, policeCarCount, SceneAssets.load());
+    }
+
+    /**
+     * Constructs a scene with a number of police cars from assets that were not loaded from the asset
+     * directory, such as generated assets.
+     * @param output the output graphics provider used to display the scene
+     * @param policeCarCount the number of police cars chasing the Camero
+     * @param assets the models the scene is built from
+     */
+    public Scene(OutputGraphicsProvider output, int policeCarCount, SceneAssets assets) {
         this.output = output;
-        renderContext = new Renderer(output.getBufferWidth(), output.getBufferHeight());
-        sky = new Background(Model.load("asset/sky.obj", "asset/sky.png"));
-        hills = new Background(Model.load("asset/grass.obj", "asset/grass.png"));
-        road = new Background(Model.load("asset/road.obj", "asset/road0.png"));
-        camero = new MustangCamero(this);
-        policeCars = new Vehicle[POLICE_CAR_COUNT];
+        renderer = new Renderer(output.getBufferWidth(), output.getBufferHeight());
+        renderContext = renderer;
+        views = new String[] { VIEW_NAMES[0] };
+        sky = new SkyPanorama(assets.getSky(), SKY_PANORAMA_WIDTH, SKY_PANORAMA_HEIGHT);
+        hills = assets.getTerrain();
+        road = assets.getRoad();
+        setRoadDistance(ROAD_TILES_PER_CHUNK, ROAD_CHUNKS_BEHIND, ROAD_CHUNKS_AHEAD);
+        textureAtlases = new ArrayList<>();
+        textureFormat = null;
+        assetStreamer = null;
+        random = new Random();
+        camero = new MustangCamero(this, assets.getCamero());
+        policeCars = new GenericPoliceCar[policeCarCount];
 
         for (int i = 0; i < policeCars.length; i++) {
-            policeCars[i] = new GenericPoliceCar(this);
-            policeCars[i].setPosition(new Vec3((i - policeCars.length / 2) * 3.0, 0.0, -10.0));
+            policeCars[i] = new GenericPoliceCar(this, assets.getPoliceCar());
+            policeCars[i].setPosition(PursuitSystem.getFormationOffset(i));
         }
 
-        new Thread(camero).start();
-        for (int i = 0; i < policeCars.length; i++) {
-            new Thread(policeCars[i]).start();
-        }
+        vehicles = new Vehicle[1 + policeCars.length];
+        vehicles[0] = camero;
+        System.arraycopy(policeCars, 0, vehicles, 1, policeCars.length);
+        frameState = new double[getFrameStateSize()];
+        spatialGrid = new SpatialGrid(SPATIAL_CELL_SIZE);
+        spatialGrid.build(vehicles);
+        pursuitSystem = null;
+        pursuitThreads = Runtime.getRuntime().availableProcessors();
+
+        hud = null;
+        recorder = null;
+        replay = null;
+        fixedTimestep = false;
+        frameRate = 0.0;
+        frameCount = 0;
+        firstFrame = 0;
+        previousTime = 0.0;
+        time = 0.0;
     }
 
     /**
@@ -50,35 +132,513 @@ public class Scene implements Runnable {
         return renderContext;
     }
 
+    /**
+     * Sets the renderer of the scene, such as a DrawCommandRecorder that wraps the current renderer.
+     * Must be called before the scene is run.
+     * @param renderContext the new renderer of the scene
+     */
+    public void setRenderContext(RenderContext renderContext) {
+        this.renderContext = renderContext;
+    }
+
+    /**
+     * Sets the views the scene is drawn from, each into its own viewport: chase, which circles the Camero,
+     * helicopter, which follows it from high above, and rear, which looks back from behind the Camero at
+     * the police cars. The first view takes the left two thirds of the frame, and the other views are
+     * stacked in the right third. Every view is drawn by its own renderer thread. Only the camera of the
+     * first view is captured by a DrawCommandRecorder. Must be called before the scene is run.
+     * @param views the names of the views, the first of which is the main view
+     */
+    public void setViews(String... views) {
+        if (views.length == 0) {
+            throw new IllegalArgumentException("At least one view is required");
+        }
+        for (String view : views) {
+            if (!Arrays.asList(VIEW_NAMES).contains(view)) {
+                throw new IllegalArgumentException("Unknown view: " + view);
+            }
+        }
+
+        int width = output.getBufferWidth();
+        int height = output.getBufferHeight();
+        int mainWidth = views.length > 1 ? width * 2 / 3 : width;
+        Viewport[] viewports = new Viewport[views.length];
+        viewports[0] = new Viewport(0, 0, mainWidth, height);
+
+        for (int i = 1; i < views.length; i++) {
+            int top = height * (i - 1) / (views.length - 1);
+            int bottom = height * i / (views.length - 1);
+            viewports[i] = new Viewport(mainWidth, top, width - mainWidth, bottom - top);
+        }
+
+        renderer.setViewports(viewports);
+        this.views = views.clone();
+    }
+
+    /**
+     * Gets the random number generator shared by everything simulated in the scene.
+     * @return the random number generator of the scene
+     */
+    public Random getRandom() {
+        return random;
+    }
+
+    /**
+     * Gets every vehicle in the scene: the Camero, followed by the police cars.
+     * The index of a vehicle identifies it in spatial grid queries.
+     * @return the vehicles of the scene, which must not be modified
+     */
+    public Vehicle[] getVehicles() {
+        return vehicles;
+    }
+
+    /**
+     * Gets the spatial grid of the vehicles, which is rebuilt after every fixed simulation step,
+     * or once per frame when every vehicle runs in its own thread. Queries are answered in terms of
+     * indices into getVehicles, and must be made from the thread that runs the scene.
+     * @return the spatial grid of the vehicles
+     */
+    public SpatialGrid getSpatialGrid() {
+        return spatialGrid;
+    }
+
+    /**
+     * Sets the number of threads that compute the pursuit of the police cars. The pursuit only
+     * steers the police cars when the scene uses a fixed timestep, and its threads only live while the
+     * scene runs. Defaults to the number of processors. Must be called before the scene is run.
+     * @param threadCount the maximum number of threads
+     */
+    public void setPursuitThreads(int threadCount) {
+        pursuitThreads = threadCount;
+    }
+
+    /**
+     * Seeds the random number generator of the scene. A seeded scene that uses a fixed timestep
+     * and a fixed frame rate produces the same frames on every run.
+     * Must be called before the scene is run.
+     * @param seed the seed of the random number generator
+     */
+    public void setSeed(long seed) {
+        random.setSeed(seed);
+    }
+
+    /**
+     * Gets the number of values that describe a frame: the camera position and target, followed by
+     * the position and rotation of every vehicle.
+     * @return the number of values in a frame state
+     */
+    public int getFrameStateSize() {
+        return CAMERA_STATE_SIZE + VEHICLE_STATE_SIZE * (1 + policeCars.length);
+    }
+
+    /**
+     * Sets the recorder that every drawn frame state is written to. Recording requires a fixed timestep.
+     * The recorder is closed when the scene stops running. Must be called before the scene is run.
+     * @param recorder the recorder, or null to record nothing
+     */
+    public void setRecorder(StateRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Sets the recording that frames are drawn from instead of simulating the scene. Replayed frames
+     * are identical to the recorded frames. The scene stops running at the end of the recording.
+     * Must be called before the scene is run.
+     * @param replay the recording positioned at the first frame to draw, or null to simulate the scene
+     */
+    public void setReplay(StateReplay replay) {
+        this.replay = replay;
+    }
+
+    /**
+     * Returns true if the scene simulates at a fixed rate independently of the frame rate.
+     * @return true if the scene uses a fixed simulation timestep; otherwise false
+     */
+    public boolean isFixedTimestep() {
+        return fixedTimestep;
+    }
+
+    /**
+     * Sets whether the scene simulates at a fixed rate independently of the frame rate.
+     * When enabled, the vehicles are stepped by the scene thread at a fixed rate, and each
+     * frame is drawn by interpolating between the two latest simulation steps. When disabled,
+     * each vehicle runs in its own thread and advances one step per rendered frame.
+     * Must be called before the scene is run.
+     * @param fixedTimestep true to use a fixed simulation timestep
+     */
+    public void setFixedTimestep(boolean fixedTimestep) {
+        this.fixedTimestep = fixedTimestep;
+    }
+
+    /**
+     * Sets the rate at which frames are rendered in simulation time. When positive, every frame
+     * advances the fixed timestep simulation by exactly one frame period instead of the elapsed
+     * wall-clock time, which is used for offline rendering. Must be called before the scene is run.
+     * @param frameRate the number of frames per simulated second, or 0 to follow the wall clock
+     */
+    public void setFrameRate(double frameRate) {
+        this.frameRate = frameRate;
+    }
+
+    /**
+     * Sets the number of frames rendered before the scene stops running.
+     * Must be called before the scene is run.
+     * @param frameCount the number of frames to render, or 0 to run indefinitely
+     */
+    public void setFrameCount(int frameCount) {
+        this.frameCount = frameCount;
+    }
+
+    /**
+     * Sets the performance HUD drawn over every frame. The HUD tracks the CPU usage of the
+     * scene thread and of the vehicle threads. Must be called before the scene is run.
+     * @param hud the performance HUD, or null to draw no HUD
+     */
+    public void setHud(PerformanceHud hud) {
+        this.hud = hud;
+    }
+
+    /**
+     * Sets how many chunks of road are drawn behind and ahead of the chunk the Camero is on.
+     * The road is streamed from a fixed ring of chunks sized for this distance, and every chunk
+     * bakes a run of road tiles into a single static model. The chunks are baked once, when the scene
+     * is run, so that they are baked from the packed textures. Must be called before the scene is run.
+     * @param tilesPerChunk the number of road tiles baked into a chunk
+     * @param chunksBehind the number of chunks drawn behind the Camero
+     * @param chunksAhead the number of chunks drawn ahead of the Camero
+     */
+    public void setRoadDistance(int tilesPerChunk, int chunksBehind, int chunksAhead) {
+        if (tilesPerChunk < 1 || chunksBehind < 0 || chunksAhead < 0) {
+            throw new IllegalArgumentException("tilesPerChunk >= 1 && chunksBehind >= 0 && chunksAhead >= 0");
+        }
+
+        roadTilesPerChunk = tilesPerChunk;
+        roadChunksBehind = chunksBehind;
+        roadChunksAhead = chunksAhead;
+    }
+
+    /**
+     * Packs the textures of the road, the terrain, and the vehicles into texture atlases, so that
+     * the renderer switches texture paint less often. Must be called at most once, before the scene is run.
+     * @param format the texel format of the atlases: "rgb", "rgb565", or "indexed"
+     */
+    public void packTextures(String format) {
+        Model[] models = new Model[2 + vehicles.length];
+        models[0] = road;
+        models[1] = hills;
+        for (int i = 0; i < vehicles.length; i++) {
+            models[2 + i] = vehicles[i].getModel();
+        }
+
+        textureAtlases = TextureAtlas.pack(models, TEXTURE_ATLAS_SIZE, format);
+        textureFormat = format;
+    }
+
+    /**
+     * Replaces the sky, such as when a proxy is swapped for the loaded sky. The panorama is baked on
+     * the calling thread, and is drawn from the next frame.
+     * @param model the sky model, centered on its origin, with a texture
+     */
+    public void setSky(Model model) {
+        sky = new SkyPanorama(model, SKY_PANORAMA_WIDTH, SKY_PANORAMA_HEIGHT);
+    }
+
+    /**
+     * Replaces the models of the road, the terrain, and the vehicles, such as when proxies are swapped
+     * for the loaded models. When the textures of the scene were packed, the new models are packed into
+     * atlases of the same format. The atlases and the road chunks are built on the calling thread, and
+     * every model is drawn from the next time it is drawn, so a background thread can swap models while
+     * the scene runs.
+     * @param road the model of a road tile
+     * @param terrain the model of the terrain beside a road tile
+     * @param camero the model of the Camero
+     * @param policeCar the model shared by the police cars
+     */
+    public void setModels(Model road, Model terrain, Model camero, Model policeCar) {
+        if (textureFormat != null) {
+            textureAtlases = TextureAtlas.pack(new Model[] { road, terrain, camero, policeCar },
+                TEXTURE_ATLAS_SIZE, textureFormat);
+        }
+
+        this.road = road;
+        hills = terrain;
+        roadStreamer.setTiles(road, terrain);
+        this.camero.setModel(camero);
+        for (int i = 0; i < policeCars.length; i++) {
+            policeCars[i].setModel(policeCar);
+        }
+    }
+
+    /**
+     * Sets the asset streamer that loads the full assets while the scene is drawn, for a scene
+     * constructed from proxies. The streamer is started with the scene. Must be called before the
+     * scene is run.
+     * @param assetStreamer the asset streamer, or null to draw the assets the scene was constructed from
+     */
+    public void setAssetStreamer(AssetStreamer assetStreamer) {
+        this.assetStreamer = assetStreamer;
+    }
+
+    /**
+     * Gets the texture atlases the textures of the scene were packed into.
+     * @return the texture atlases, which is empty unless packTextures was called
+     */
+    public List<TextureAtlas> getTextureAtlases() {
+        return textureAtlases;
+    }
+
+    /**
+     * Sets the first frame that is drawn. The fixed timestep simulation is fast-forwarded through the
+     * frames before it without drawing them, so with a fixed frame rate and seed, the drawn frames are
+     * identical to the same frames of a run that starts at frame 0. Must be called before the scene is run.
+     * @param firstFrame the index of the first frame to draw
+     */
+    public void setFirstFrame(int firstFrame) {
+        this.firstFrame = firstFrame;
+    }
+
     /**
      * The implementation of Runnable.
      */
     @Override
     public void run() {
-        double time = 0.0;
+        roadStreamer = new RoadStreamer(road, hills, roadTilesPerChunk, roadChunksBehind, roadChunksAhead);
+        pursuitSystem = new PursuitSystem(vehicles, spatialGrid, pursuitThreads);
+        if (assetStreamer != null) {
+            assetStreamer.start(this);
+        }
+
+        if (hud != null) {
+            hud.trackThread(Thread.currentThread());
+            if (assetStreamer != null) {
+                hud.trackThread(assetStreamer.getThread());
+            }
+        }
 
-        for (;;) {
-            time += 0.005;
-            sky.setPosition(camero.getPosition());
-            road.setPosition(new Vec3(0.0, 0.0, (int) camero.getPosition().getZ() / 27 * 27 - 32));
-            hills.setPosition(new Vec3(0.0, 0.0, (int) camero.getPosition().getZ() / 27 * 27 - 32));
-            sky.draw(renderContext);
-            hills.draw(renderContext);
-            road.draw(renderContext);
+        if (replay != null) {
+            runReplay();
+        }
+        else if (fixedTimestep) {
+            runFixedTimestep();
+        }
+        else if (recorder != null) {
+            throw new IllegalStateException("Recording requires a fixed timestep");
+        }
+        else {
+            runLockstep();
+        }
+
+        pursuitSystem.close();
+        if (assetStreamer != null) {
+            assetStreamer.stop();
+        }
+
+        if (recorder != null) {
+            try {
+                recorder.close();
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void runLockstep() {
+        camero.start();
+        for (int i = 0; i < policeCars.length; i++) {
+            policeCars[i].start();
+        }
+
+        if (hud != null) {
+            hud.trackThread(camero.getThread());
+            for (int i = 0; i < policeCars.length; i++) {
+                hud.trackThread(policeCars[i].getThread());
+            }
+        }
+
+        for (int frame = 0; frameCount == 0 || frame < frameCount; frame++) {
+            FrameProfiler.beginFrame();
+            long submitStart = FrameProfiler.start();
+            previousTime = time;
+            time += CAMERA_SPEED;
+            drawBackgrounds(camero.getPosition());
+            spatialGrid.build(vehicles);
 
             camero.unsetTick();
             for (int i = 0; i < policeCars.length; i++) {
                 policeCars[i].unsetTick();
             }
 
-            Graphics2D g = output.getGraphics2D();
-            g.setColor(new Color(0, 127, 255));
-            g.setTransform(new AffineTransform());
-            g.fillRect(0, 0, output.getBufferWidth(), output.getBufferHeight());
-            renderContext.getCamera().setPosition(Vec3.add(camero.getPosition(), new Vec3(8.0 * cos(time), 1.9, 10.0 * sin(time))));
-            renderContext.getCamera().setTarget(camero.getPosition());
-            renderContext.render(g);
-            output.swapBuffers();
+            FrameProfiler.stop(FrameProfiler.SUBMIT, submitStart);
+            Vec3 target = camero.getPosition();
+            present(getCameraPosition(target, time), target);
+        }
+
+        camero.stop();
+        for (int i = 0; i < policeCars.length; i++) {
+            policeCars[i].stop();
+        }
+    }
+
+    private void runFixedTimestep() {
+        long previousNanos = System.nanoTime();
+        double accumulator = 0.0;
+
+        for (int frame = 0; frameCount == 0 || frame < firstFrame + frameCount; frame++) {
+            FrameProfiler.beginFrame();
+            long nanos = System.nanoTime();
+            accumulator += frameRate > 0.0 ? 1.0 / frameRate : (nanos - previousNanos) / 1.0e9;
+            previousNanos = nanos;
+
+            int ticks = 0;
+            while (accumulator >= TICK_SECONDS) {
+                if (ticks == MAX_TICKS_PER_FRAME) {
+                    // The machine cannot keep up; drop the backlog instead of spiralling.
+                    accumulator %= TICK_SECONDS;
+                    break;
+                }
+
+                step();
+                accumulator -= TICK_SECONDS;
+                ticks++;
+            }
+
+            if (frame < firstFrame) {
+                continue;
+            }
+
+            captureFrameState(accumulator / TICK_SECONDS);
+            drawFrame(frameState);
+
+            if (recorder != null) {
+                try {
+                    recorder.write(frameState);
+                }
+                catch (IOException e) {
+                    System.err.println("Cannot record frame: " + e.getMessage());
+                    recorder = null;
+                }
+            }
+        }
+    }
+
+    private void runReplay() {
+        try {
+            for (int frame = 0; frameCount == 0 || frame < frameCount; frame++) {
+                FrameProfiler.beginFrame();
+                if (!replay.readFrame(frameState)) {
+                    break;
+                }
+
+                drawFrame(frameState);
+            }
+        }
+        catch (IOException e) {
+            System.err.println("Cannot replay frame: " + e.getMessage());
+        }
+    }
+
+    private void captureFrameState(double alpha) {
+        Vec3 target = camero.getPosition(alpha);
+        putVec3(frameState, 0, getCameraPosition(target, previousTime + (time - previousTime) * alpha));
+        putVec3(frameState, 3, target);
+
+        for (int i = 0; i < vehicles.length; i++) {
+            int offset = CAMERA_STATE_SIZE + VEHICLE_STATE_SIZE * i;
+            putVec3(frameState, offset, vehicles[i].getPosition(alpha));
+            putVec3(frameState, offset + 3, vehicles[i].getRotation(alpha));
+        }
+    }
+
+    private void drawFrame(double[] state) {
+        long submitStart = FrameProfiler.start();
+        Vec3 target = getVec3(state, 3);
+        drawBackgrounds(target);
+
+        for (int i = 0; i < vehicles.length; i++) {
+            int offset = CAMERA_STATE_SIZE + VEHICLE_STATE_SIZE * i;
+            vehicles[i].draw(renderContext, getVec3(state, offset), getVec3(state, offset + 3));
+        }
+
+        FrameProfiler.stop(FrameProfiler.SUBMIT, submitStart);
+        present(getVec3(state, 0), target);
+    }
+
+    private void step() {
+        long pursuitStart = FrameProfiler.start();
+        pursuitSystem.update();
+        FrameProfiler.stop(FrameProfiler.PURSUIT, pursuitStart);
+
+        previousTime = time;
+        time += CAMERA_SPEED;
+        camero.update();
+        for (int i = 0; i < policeCars.length; i++) {
+            policeCars[i].update();
+        }
+        spatialGrid.build(vehicles);
+    }
+
+    private void drawBackgrounds(Vec3 target) {
+        roadStreamer.draw(renderContext, target);
+    }
+
+    private static Vec3 getCameraPosition(Vec3 target, double cameraTime) {
+        return Vec3.add(target, new Vec3(8.0 * cos(cameraTime), 1.9, 10.0 * sin(cameraTime)));
+    }
+
+    private static Vec3 getVec3(double[] values, int offset) {
+        return new Vec3(values[offset], values[offset + 1], values[offset + 2]);
+    }
+
+    private static void putVec3(double[] values, int offset, Vec3 vector) {
+        values[offset] = vector.getX();
+        values[offset + 1] = vector.getY();
+        values[offset + 2] = vector.getZ();
+    }
+
+    private void present(Vec3 cameraPosition, Vec3 target) {
+        long skyStart = FrameProfiler.start();
+        Graphics2D g = output.getGraphics2D();
+        Viewport[] viewports = renderer.getViewports();
+        SkyPanorama panorama = sky;
+
+        for (int i = 0; i < viewports.length; i++) {
+            Camera camera = viewports[i].getCamera();
+            switch (views[i]) {
+            case "helicopter":
+                camera.setPosition(Vec3.add(target, new Vec3(6.0, 24.0, -14.0)));
+                camera.setTarget(Vec3.add(target, new Vec3(0.0, 0.0, 8.0)));
+                break;
+
+            case "rear":
+                camera.setPosition(Vec3.add(target, new Vec3(0.0, 1.6, -3.0)));
+                camera.setTarget(Vec3.add(target, new Vec3(0.0, 0.8, -30.0)));
+                break;
+
+            default:
+                camera.setPosition(cameraPosition);
+                camera.setTarget(target);
+                break;
+            }
+
+            panorama.draw(output.getBackBuffer(), viewports[i], Renderer.FIELD_OF_VIEW);
+        }
+
+        FrameProfiler.stop(FrameProfiler.SKY, skyStart);
+
+        renderContext.render(g);
+
+        if (hud != null) {
+            hud.draw(output.getBackBuffer());
+        }
+
+        long presentStart = FrameProfiler.start();
+        output.swapBuffers();
+        FrameProfiler.stop(FrameProfiler.PRESENT, presentStart);
+
+        if (assetStreamer != null) {
+            assetStreamer.frameDrawn();
         }
+        FrameProfiler.endFrame();
     }
-}
\ No newline at end of file
+}
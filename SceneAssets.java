@@ -0,0 +1,135 @@
+import java.util.Arrays;
+
+/**
+ * The scene assets are the models a scene is built from: the sky, a road tile, the terrain beside it,
+ * the Camero and the police car shared by every police car. They are either loaded from the files in
+ * the asset directory, or generated by ProceduralModels.
+ */
+public class SceneAssets {
+    private static final int CAMERO_COLOR = 0xF0C020;
+    private static final int POLICE_COLOR = 0xF0F0F0;
+    private static final int POLICE_LIGHT_COLOR = 0x2040F0;
+    private static final int PROXY_TEXTURE_SIZE = 4;
+    private static final String[] NAMES = { "sky", "road", "terrain", "camero", "policeCar" };
+    private static final String[] FILE_NAMES = {
+        "asset/sky.obj", "asset/road.obj", "asset/grass.obj", "asset/camero2.obj", "asset/police2.obj"
+    };
+    private static final String[] TEXTURE_FILE_NAMES = {
+        "asset/sky.png", "asset/road0.png", "asset/grass.png", "asset/camero_map.png", "asset/police_map.png"
+    };
+
+    private final Model sky;
+    private final Model road;
+    private final Model terrain;
+    private final Model camero;
+    private final Model policeCar;
+
+    /**
+     * Constructs scene assets.
+     * @param sky the sky model, centered on its origin, with a texture
+     * @param road the model of a road tile
+     * @param terrain the model of the terrain beside a road tile
+     * @param camero the model of the Camero
+     * @param policeCar the model of a police car
+     */
+    public SceneAssets(Model sky, Model road, Model terrain, Model camero, Model policeCar) {
+        this.sky = sky;
+        this.road = road;
+        this.terrain = terrain;
+        this.camero = camero;
+        this.policeCar = policeCar;
+    }
+
+    /**
+     * Loads the scene assets from the asset directory.
+     * @return the loaded assets
+     */
+    public static SceneAssets load() {
+        return new SceneAssets(loadModel("sky"), loadModel("road"), loadModel("terrain"),
+            loadModel("camero"), loadModel("policeCar"));
+    }
+
+    /**
+     * Loads one of the scene assets from the asset directory.
+     * @param name the asset to load: "sky", "road", "terrain", "camero", or "policeCar"
+     * @return the loaded model
+     */
+    public static Model loadModel(String name) {
+        int index = Arrays.asList(NAMES).indexOf(name);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown asset: " + name);
+        }
+
+        return Model.load(FILE_NAMES[index], TEXTURE_FILE_NAMES[index]);
+    }
+
+    /**
+     * Generates proxies that stand in for the scene assets until they are loaded: the same shapes as
+     * the generated assets, with one quad per face and textures of a few texels. Proxies
+     * are generated in a few milliseconds, so the first frame can be drawn before any file is read.
+     * @return the proxy assets
+     */
+    public static SceneAssets createProxies() {
+        return generate(1, PROXY_TEXTURE_SIZE, 0L);
+    }
+
+    /**
+     * Generates the scene assets without any files.
+     * @param meshDetail the number of quads along each side of every face of the road, terrain and cars
+     * @param textureSize the width and height of every texture in texels
+     * @param seed the seed of the texture noise
+     * @return the generated assets
+     */
+    public static SceneAssets generate(int meshDetail, int textureSize, long seed) {
+        if (meshDetail < 1 || textureSize < 1) {
+            throw new IllegalArgumentException("meshDetail >= 1 && textureSize >= 1");
+        }
+
+        return new SceneAssets(
+            ProceduralModels.createSky(textureSize),
+            ProceduralModels.createRoadTile(meshDetail, textureSize, seed),
+            ProceduralModels.createTerrainTile(meshDetail, textureSize, seed + 1),
+            ProceduralModels.createCar(meshDetail, textureSize, seed + 2, CAMERO_COLOR, CAMERO_COLOR),
+            ProceduralModels.createCar(meshDetail, textureSize, seed + 3, POLICE_COLOR, POLICE_LIGHT_COLOR));
+    }
+
+    /**
+     * Gets the sky model.
+     * @return the sky model
+     */
+    public Model getSky() {
+        return sky;
+    }
+
+    /**
+     * Gets the model of a road tile.
+     * @return the road tile
+     */
+    public Model getRoad() {
+        return road;
+    }
+
+    /**
+     * Gets the model of the terrain beside a road tile.
+     * @return the terrain tile
+     */
+    public Model getTerrain() {
+        return terrain;
+    }
+
+    /**
+     * Gets the model of the Camero.
+     * @return the Camero model
+     */
+    public Model getCamero() {
+        return camero;
+    }
+
+    /**
+     * Gets the model shared by the police cars.
+     * @return the police car model
+     */
+    public Model getPoliceCar() {
+        return policeCar;
+    }
+}
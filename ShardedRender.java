@@ -0,0 +1,247 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A sharded render splits a range of frames into shards and renders each shard headlessly in its own
+ * JVM process, or in its own thread. Every shard seeds the scene identically and fast-forwards the
+ * fixed timestep simulation to its first frame, so the shards together produce exactly the frames of a
+ * single export. PNG shards write numbered files into one directory; Y4M and RGB shards write part files
+ * that are joined into one stream when every shard has finished.
+ */
+public class ShardedRender {
+    private static final String WORKER = "--worker";
+
+    // The properties read by Main.configure and Main.createScene that worker processes inherit.
+    private static final String[] SCENE_PROPERTIES = {
+        "scene.policeCars", "scene.progressive", "pursuit.threads", "hud.enabled", "texture.atlas",
+        "texture.format", "render.views", "road.tilesPerChunk", "road.chunksBehind", "road.chunksAhead"
+    };
+
+    /**
+     * Renders a range of frames in shards, and then reports the time of every shard and the aggregate
+     * frame rate. The system property shard.mode is process (default) or thread; export.fps and
+     * scene.seed (default 0) set the frame rate and seed shared by every shard. The scene of every shard
+     * is configured from the same system properties as an export, which are passed on to worker processes.
+     * Recording and replay are not supported, since every shard would write or read the same file.
+     * @param args the output directory or file, the number of frames, the number of shards, and an
+     *     optional format of png (default), y4m, or rgb
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals(WORKER)) {
+            runWorker(args);
+            return;
+        }
+
+        if (args.length < 3) {
+            System.err.println("Usage: java ShardedRender <output> <frames> <shards> [png|y4m|rgb]");
+            System.exit(-1);
+        }
+
+        if (System.getProperty("record.path") != null || System.getProperty("replay.path") != null) {
+            throw new IllegalArgumentException("record.path and replay.path cannot be used with shards");
+        }
+
+        String output = args[0];
+        int frames = Integer.parseInt(args[1]);
+        int shards = Math.max(1, Math.min(Integer.parseInt(args[2]), frames));
+        String format = args.length > 3 ? args[3] : "png";
+        // Rejects an unknown format before any shard is started.
+        FrameExporter.getFormat(format);
+        int frameRate = Integer.getInteger("export.fps", 30);
+        long seed = Long.getLong("scene.seed", 0L);
+        boolean threads = System.getProperty("shard.mode", "process").equals("thread");
+
+        long start = System.nanoTime();
+        long[] shardNanos = threads
+            ? renderThreads(output, format, frames, shards, frameRate, seed)
+            : renderProcesses(output, format, frames, shards, frameRate, seed);
+
+        if (!format.equals("png")) {
+            join(output, format, shards);
+        }
+
+        double seconds = (System.nanoTime() - start) / 1.0e9;
+        for (int i = 0; i < shards; i++) {
+            System.out.printf("shard %d: frames %d-%d, %.2f s%n",
+                i, getFirstFrame(i, frames, shards), getFirstFrame(i + 1, frames, shards) - 1, shardNanos[i] / 1.0e9);
+        }
+        System.out.printf("%d frames in %d shards (%s), %.2f s, %.1f fps%n",
+            frames, shards, threads ? "thread" : "process", seconds, frames / seconds);
+    }
+
+    /**
+     * Renders one shard into the current JVM, with the scene configured by Main.configure.
+     * @param output the output directory for PNG, or the output file for Y4M and RGB
+     * @param format the output format, which is png, y4m, or rgb
+     * @param firstFrame the index of the first frame of the shard
+     * @param frameCount the number of frames of the shard
+     * @param frameRate the simulated frame rate
+     * @param seed the seed of the scene
+     * @param encoderThreads the number of PNG encoder threads
+     * @return the render time in nanoseconds
+     * @throws IOException when the output cannot be written
+     */
+    public static long renderShard(String output, String format, int firstFrame, int frameCount,
+        int frameRate, long seed, int encoderThreads) throws IOException
+    {
+        long start = System.nanoTime();
+        FrameExporter exporter = new FrameExporter(Main.WIDTH, Main.HEIGHT, FrameExporter.getFormat(format),
+            output, frameRate, 16, encoderThreads);
+        exporter.setBlocking(true);
+        exporter.setFrameIndex(firstFrame);
+
+        Scene scene = Main.createScene(exporter, false);
+        Main.configure(scene);
+        scene.setSeed(seed);
+        scene.setFixedTimestep(true);
+        scene.setFrameRate(frameRate);
+        scene.setFirstFrame(firstFrame);
+        scene.setFrameCount(frameCount);
+        scene.run();
+        exporter.close();
+
+        if (exporter.getDroppedFrames() != 0) {
+            throw new IOException("Dropped " + exporter.getDroppedFrames() + " frames");
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    private static void runWorker(String[] args) {
+        try {
+            long nanos = renderShard(args[1], args[2], Integer.parseInt(args[3]), Integer.parseInt(args[4]),
+                Integer.parseInt(args[5]), Long.parseLong(args[6]), Integer.parseInt(args[7]));
+            System.out.println(nanos);
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+            System.exit(-1);
+        }
+    }
+
+    private static long[] renderProcesses(String output, String format, int frames, int shards,
+        int frameRate, long seed) throws IOException, InterruptedException
+    {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        int encoderThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / shards);
+        Process[] processes = new Process[shards];
+
+        for (int i = 0; i < shards; i++) {
+            int firstFrame = getFirstFrame(i, frames, shards);
+            List<String> command = new ArrayList<>();
+            command.add(java);
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add("-Djava.awt.headless=true");
+            for (String property : SCENE_PROPERTIES) {
+                if (System.getProperty(property) != null) {
+                    command.add("-D" + property + "=" + System.getProperty(property));
+                }
+            }
+            command.add(ShardedRender.class.getName());
+            command.add(WORKER);
+            command.add(getShardOutput(output, format, i));
+            command.add(format);
+            command.add(String.valueOf(firstFrame));
+            command.add(String.valueOf(getFirstFrame(i + 1, frames, shards) - firstFrame));
+            command.add(String.valueOf(frameRate));
+            command.add(String.valueOf(seed));
+            command.add(String.valueOf(encoderThreads));
+
+            ProcessBuilder builder = new ProcessBuilder(command);
+            builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+            processes[i] = builder.start();
+        }
+
+        long[] shardNanos = new long[shards];
+        for (int i = 0; i < shards; i++) {
+            String result = new String(processes[i].getInputStream().readAllBytes()).trim();
+            if (processes[i].waitFor() != 0) {
+                throw new IOException("Shard " + i + " failed with exit code " + processes[i].exitValue());
+            }
+            shardNanos[i] = Long.parseLong(result);
+        }
+
+        return shardNanos;
+    }
+
+    private static long[] renderThreads(String output, String format, int frames, int shards,
+        int frameRate, long seed) throws Exception
+    {
+        int encoderThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / shards);
+        ExecutorService executor = Executors.newFixedThreadPool(shards);
+        List<Future<Long>> results = new ArrayList<>();
+
+        for (int i = 0; i < shards; i++) {
+            String shardOutput = getShardOutput(output, format, i);
+            int firstFrame = getFirstFrame(i, frames, shards);
+            int frameCount = getFirstFrame(i + 1, frames, shards) - firstFrame;
+            results.add(executor.submit(
+                () -> renderShard(shardOutput, format, firstFrame, frameCount, frameRate, seed, encoderThreads)));
+        }
+
+        long[] shardNanos = new long[shards];
+        try {
+            for (int i = 0; i < shards; i++) {
+                shardNanos[i] = results.get(i).get();
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        return shardNanos;
+    }
+
+    /**
+     * Joins the part files of a stream in shard order, keeping only the Y4M header of the first part.
+     */
+    private static void join(String output, String format, int shards) throws IOException {
+        try (FileChannel out = FileChannel.open(Path.of(output),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            for (int i = 0; i < shards; i++) {
+                Path part = Path.of(getShardOutput(output, format, i));
+
+                try (FileChannel in = FileChannel.open(part, StandardOpenOption.READ)) {
+                    long position = i > 0 && format.equals("y4m") ? getHeaderLength(in) : 0L;
+                    long size = in.size();
+                    while (position < size) {
+                        position += in.transferTo(position, size - position, out);
+                    }
+                }
+
+                Files.delete(part);
+            }
+        }
+    }
+
+    private static long getHeaderLength(FileChannel in) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        in.read(buffer, 0L);
+
+        for (int i = 0; i < buffer.position(); i++) {
+            if (buffer.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        throw new IOException("Missing Y4M header");
+    }
+
+    private static String getShardOutput(String output, String format, int shard) {
+        return format.equals("png") ? output : output + ".part" + shard;
+    }
+
+    private static int getFirstFrame(int shard, int frames, int shards) {
+        return (int) ((long) frames * shard / shards);
+    }
+}
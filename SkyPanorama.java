@@ -0,0 +1,300 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * A sky panorama draws a sky that is infinitely far away straight into the back buffer, instead of
+ * pushing a sky dome through the renderer every frame.
+ * <p>
+ * The panorama is baked once from the sky model: every texel of a cylindrical panorama holds the texture
+ * color of the sky triangle seen from the center of the model in its direction, using the same facing rule
+ * as the renderer. Columns are spread evenly over the heading, and rows evenly over the height of the
+ * direction above the ground plane at unit distance, between -MAX_SLOPE and MAX_SLOPE. To draw a frame,
+ * the panorama coordinates of the view direction are computed at the corners of every block of pixels,
+ * and then interpolated across the block, so only a few trigonometric calls are made per frame.
+ */
+public class SkyPanorama {
+    private static final double MAX_SLOPE = 2.0;
+    private static final int BLOCK_SIZE = 8;
+    private static final int EDGE_SAMPLES = 8;
+    private static final int CLEAR_COLOR = 0x007FFF;
+
+    private final int width;
+    private final int height;
+    private final int[] texels;
+    private int[] blockUs;
+    private int[] blockVs;
+
+    /**
+     * Constructs a sky panorama by baking a sky model.
+     * @param model the sky model, centered on its origin, with a texture
+     * @param width the number of panorama columns around the horizon, which must be a power of two
+     * @param height the number of panorama rows
+     */
+    public SkyPanorama(Model model, int width, int height) {
+        if (Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("width must be a power of two");
+        }
+
+        this.width = width;
+        this.height = height;
+        texels = new int[width * height];
+        blockUs = new int[0];
+        blockVs = new int[0];
+        bake(model);
+    }
+
+    /**
+     * Draws the sky over the whole of an image, seen from a camera.
+     * @param target the image to draw into, of type TYPE_INT_RGB
+     * @param camera the camera the frame is rendered from
+     * @param fieldOfView the vertical field of view of the camera in radians
+     */
+    public void draw(BufferedImage target, Camera camera, double fieldOfView) {
+        draw(target, new Viewport(0, 0, target.getWidth(), target.getHeight(), camera), fieldOfView);
+    }
+
+    /**
+     * Draws the sky over a viewport of an image, seen from the camera of the viewport.
+     * @param target the image to draw into, of type TYPE_INT_RGB
+     * @param viewport the rectangle of the image to draw into, and its camera
+     * @param fieldOfView the vertical field of view of the camera in radians
+     */
+    public void draw(BufferedImage target, Viewport viewport, double fieldOfView) {
+        int[] pixels = ((DataBufferInt) target.getRaster().getDataBuffer()).getData();
+        int stride = target.getWidth();
+        int viewWidth = viewport.getWidth();
+        int viewHeight = viewport.getHeight();
+        int offset = viewport.getY() * stride + viewport.getX();
+        Camera camera = viewport.getCamera();
+        int blockColumns = (viewWidth + BLOCK_SIZE - 1) / BLOCK_SIZE + 1;
+        int blockRows = (viewHeight + BLOCK_SIZE - 1) / BLOCK_SIZE + 1;
+        if (blockUs.length < blockColumns * blockRows) {
+            blockUs = new int[blockColumns * blockRows];
+            blockVs = new int[blockColumns * blockRows];
+        }
+
+        // The same camera basis as Mat4.lookAt, scaled so that a pixel offset maps to a view direction.
+        Vec3 axisZ = Vec3.sub(camera.getPosition(), camera.getTarget()).normalized();
+        Vec3 axisX = Vec3.cross(camera.getUp(), axisZ).normalized();
+        Vec3 axisY = Vec3.cross(axisZ, axisX);
+        double tangent = Math.tan(fieldOfView / 2.0);
+        Vec3 stepX = Vec3.mul(axisX, 2.0 * tangent / viewHeight);
+        Vec3 stepY = Vec3.mul(axisY, -2.0 * tangent / viewHeight);
+        Vec3 origin = Vec3.sub(
+            Vec3.sub(Vec3.mul(axisZ, -1.0), Vec3.mul(stepX, 0.5 * viewWidth)),
+            Vec3.mul(stepY, 0.5 * viewHeight));
+
+        for (int row = 0; row < blockRows; row++) {
+            for (int column = 0; column < blockColumns; column++) {
+                double x = column * BLOCK_SIZE + 0.5;
+                double y = row * BLOCK_SIZE + 0.5;
+                double dx = origin.getX() + x * stepX.getX() + y * stepY.getX();
+                double dy = origin.getY() + x * stepX.getY() + y * stepY.getY();
+                double dz = origin.getZ() + x * stepX.getZ() + y * stepY.getZ();
+                blockUs[row * blockColumns + column] = (int) (getU(dx, dz) * 65536.0);
+                blockVs[row * blockColumns + column] = (int) (getV(dx, dy, dz) * 65536.0);
+            }
+        }
+
+        int fixedWidth = width << 16;
+        for (int row = 0; row < blockRows - 1; row++) {
+            for (int column = 0; column < blockColumns - 1; column++) {
+                int corner = row * blockColumns + column;
+                int u00 = blockUs[corner];
+                int u10 = unwrap(blockUs[corner + 1], u00, fixedWidth);
+                int u01 = unwrap(blockUs[corner + blockColumns], u00, fixedWidth);
+                int u11 = unwrap(blockUs[corner + blockColumns + 1], u00, fixedWidth);
+                int v00 = blockVs[corner];
+                int v10 = blockVs[corner + 1];
+                int v01 = blockVs[corner + blockColumns];
+                int v11 = blockVs[corner + blockColumns + 1];
+                int startX = column * BLOCK_SIZE;
+                int startY = row * BLOCK_SIZE;
+                int endX = Math.min(startX + BLOCK_SIZE, viewWidth);
+                int endY = Math.min(startY + BLOCK_SIZE, viewHeight);
+
+                for (int y = startY; y < endY; y++) {
+                    int t = y - startY;
+                    int uLeft = u00 + (u01 - u00) / BLOCK_SIZE * t;
+                    int uRight = u10 + (u11 - u10) / BLOCK_SIZE * t;
+                    int vLeft = v00 + (v01 - v00) / BLOCK_SIZE * t;
+                    int vRight = v10 + (v11 - v10) / BLOCK_SIZE * t;
+                    int uStep = (uRight - uLeft) / BLOCK_SIZE;
+                    int vStep = (vRight - vLeft) / BLOCK_SIZE;
+                    int u = uLeft;
+                    int v = vLeft;
+                    int index = offset + y * stride + startX;
+
+                    for (int x = startX; x < endX; x++) {
+                        pixels[index++] = texels[(v >> 16) * width + ((u >> 16) & (width - 1))];
+                        u += uStep;
+                        v += vStep;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills the panorama with the sky model, by scanning every triangle over the panorama texels it may
+     * cover and keeping the nearest hit of each texel's direction.
+     */
+    private void bake(Model model) {
+        double[] distances = new double[width * height];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        Arrays.fill(texels, CLEAR_COLOR);
+
+        BufferedImage image = model.getTexture();
+        if (image == null) {
+            return;
+        }
+
+        int textureWidth = image.getWidth();
+        int textureHeight = image.getHeight();
+        int[] texture = image.getRGB(0, 0, textureWidth, textureHeight, null, 0, textureWidth);
+        double[] columnXs = new double[width];
+        double[] columnZs = new double[width];
+        double[] rowSlopes = new double[height];
+
+        for (int column = 0; column < width; column++) {
+            double heading = (column + 0.5) / width * 2.0 * Math.PI - Math.PI;
+            columnXs[column] = Math.cos(heading);
+            columnZs[column] = Math.sin(heading);
+        }
+
+        for (int row = 0; row < height; row++) {
+            rowSlopes[row] = MAX_SLOPE - (row + 0.5) / height * 2.0 * MAX_SLOPE;
+        }
+
+        for (Model.Triangle triangle : model.getTriangles()) {
+            Vec3 a = triangle.getA().getPosition();
+            Vec3 edgeB = Vec3.sub(triangle.getB().getPosition(), a);
+            Vec3 edgeC = Vec3.sub(triangle.getC().getPosition(), a);
+            Vec3 plane = Vec3.cross(edgeB, edgeC);
+            double planeDistance = Vec3.dot(plane, a);
+            double planeArea = Vec3.dot(plane, plane);
+            if (planeDistance == 0.0 || planeArea == 0.0) {
+                continue;
+            }
+
+            // Bound the texels the triangle may cover from points along its edges.
+            double referenceU = getU(a.getX(), a.getZ());
+            double minU = Double.POSITIVE_INFINITY;
+            double maxU = Double.NEGATIVE_INFINITY;
+            double minV = Double.POSITIVE_INFINITY;
+            double maxV = Double.NEGATIVE_INFINITY;
+            for (int edge = 0; edge < 3; edge++) {
+                Vec3 from = edge == 0 ? a : edge == 1 ? triangle.getB().getPosition() : triangle.getC().getPosition();
+                Vec3 to = edge == 0 ? triangle.getB().getPosition() : edge == 1 ? triangle.getC().getPosition() : a;
+                for (int i = 0; i < EDGE_SAMPLES; i++) {
+                    Vec3 point = Vec3.lerp(from, to, (double) i / EDGE_SAMPLES);
+                    double u = getU(point.getX(), point.getZ());
+                    u += u - referenceU > width / 2.0 ? -width : u - referenceU < -width / 2.0 ? width : 0.0;
+                    minU = Math.min(minU, u);
+                    maxU = Math.max(maxU, u);
+                    minV = Math.min(minV, getV(point.getX(), point.getY(), point.getZ()));
+                    maxV = Math.max(maxV, getV(point.getX(), point.getY(), point.getZ()));
+                }
+            }
+
+            // A triangle straight above or below the center covers every heading.
+            for (int side = -1; side <= 1; side += 2) {
+                if (getHit(0.0, side, 0.0, a, edgeB, edgeC, plane, planeDistance, planeArea) != null) {
+                    minU = 0.0;
+                    maxU = width - 1.0;
+                    minV = side > 0 ? 0.0 : minV;
+                    maxV = side < 0 ? height - 1.0 : maxV;
+                }
+            }
+
+            int startRow = Math.max(0, (int) Math.floor(minV) - 1);
+            int endRow = Math.min(height - 1, (int) Math.floor(maxV) + 1);
+            int startColumn = (int) Math.floor(minU) - 1;
+            int endColumn = Math.min(startColumn + width - 1, (int) Math.floor(maxU) + 1);
+
+            for (int row = startRow; row <= endRow; row++) {
+                for (int unwrapped = startColumn; unwrapped <= endColumn; unwrapped++) {
+                    int column = unwrapped & (width - 1);
+                    double dx = columnXs[column];
+                    double dy = rowSlopes[row];
+                    double dz = columnZs[column];
+                    if (dx * triangle.getNormal().getX() + dy * triangle.getNormal().getY()
+                        + dz * triangle.getNormal().getZ() >= 0.0)
+                    {
+                        continue;
+                    }
+
+                    double[] hit = getHit(dx, dy, dz, a, edgeB, edgeC, plane, planeDistance, planeArea);
+                    int texel = row * width + column;
+                    if (hit != null && hit[0] < distances[texel]) {
+                        Vec2 uvA = triangle.getA().getTexCoord();
+                        Vec2 uvB = triangle.getB().getTexCoord();
+                        Vec2 uvC = triangle.getC().getTexCoord();
+                        double u = uvA.getX() + hit[1] * (uvB.getX() - uvA.getX()) + hit[2] * (uvC.getX() - uvA.getX());
+                        double v = uvA.getY() + hit[1] * (uvB.getY() - uvA.getY()) + hit[2] * (uvC.getY() - uvA.getY());
+                        distances[texel] = hit[0];
+                        texels[texel] = texture[Math.floorMod((int) Math.floor(v), textureHeight) * textureWidth
+                            + Math.floorMod((int) Math.floor(u), textureWidth)] & 0xFFFFFF;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Intersects a ray from the center with a triangle.
+     * @return the distance along the ray and the barycentric weights of the second and third vertices,
+     *     or null if the ray misses the triangle
+     */
+    private static double[] getHit(double dx, double dy, double dz, Vec3 a, Vec3 edgeB, Vec3 edgeC,
+        Vec3 plane, double planeDistance, double planeArea)
+    {
+        double facing = dx * plane.getX() + dy * plane.getY() + dz * plane.getZ();
+        if (facing == 0.0) {
+            return null;
+        }
+
+        double distance = planeDistance / facing;
+        if (distance <= 0.0) {
+            return null;
+        }
+
+        Vec3 offset = Vec3.sub(new Vec3(dx * distance, dy * distance, dz * distance), a);
+        double weightB = Vec3.dot(Vec3.cross(offset, edgeC), plane) / planeArea;
+        double weightC = Vec3.dot(Vec3.cross(edgeB, offset), plane) / planeArea;
+        if (weightB < 0.0 || weightC < 0.0 || weightB + weightC > 1.0) {
+            return null;
+        }
+
+        return new double[] { distance, weightB, weightC };
+    }
+
+    /**
+     * Gets the panorama column of a direction, between 0 and width.
+     */
+    private double getU(double dx, double dz) {
+        double u = (Math.atan2(dz, dx) + Math.PI) / (2.0 * Math.PI) * width;
+        return u < width ? u : u - width;
+    }
+
+    /**
+     * Gets the panorama row of a direction, clamped to the rows of the panorama.
+     */
+    private double getV(double dx, double dy, double dz) {
+        double slope = dy / Math.max(Math.sqrt(dx * dx + dz * dz), 1.0e-9);
+        double v = (MAX_SLOPE - slope) / (2.0 * MAX_SLOPE) * height;
+        return Math.max(0.0, Math.min(height - 1.0, v));
+    }
+
+    private static int unwrap(int u, int reference, int fixedWidth) {
+        if (u - reference > fixedWidth / 2) {
+            return u - fixedWidth;
+        }
+        else if (u - reference < -fixedWidth / 2) {
+            return u + fixedWidth;
+        }
+
+        return u;
+    }
+}
@@ -0,0 +1,321 @@
+import java.util.Arrays;
+
+/**
+ * A spatial grid is a uniform grid over the ground plane that indexes points by the cell they are in,
+ * so that proximity queries only look at nearby cells instead of every point. Cells are hashed into a
+ * fixed table, so the grid covers an unbounded highway, and the grid is rebuilt from scratch with a
+ * counting sort in O(n) whenever the points move.
+ * <p>
+ * Points are identified by their index in the array the grid was built from. Distances are measured
+ * in three dimensions; cells only divide the x-axis and the z-axis.
+ */
+public class SpatialGrid {
+    private final double cellSize;
+    private int[] bucketStarts;
+    private int[] sortedPoints;
+    private int[] cellXs;
+    private int[] cellZs;
+    private double[] xs;
+    private double[] ys;
+    private double[] zs;
+    private double[] distances;
+    private int pointCount;
+
+    /**
+     * Constructs an empty spatial grid.
+     * @param cellSize the width and depth of a cell, which should be about the typical query radius
+     */
+    public SpatialGrid(double cellSize) {
+        if (cellSize <= 0.0) {
+            throw new IllegalArgumentException("cellSize > 0");
+        }
+
+        this.cellSize = cellSize;
+        bucketStarts = new int[2];
+        ensureCapacity(16);
+    }
+
+    /**
+     * Gets the width and depth of a cell.
+     * @return the size of a cell
+     */
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Gets the number of points in the grid.
+     * @return the number of points
+     */
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    /**
+     * Rebuilds the grid from the positions of vehicles.
+     * @param vehicles the vehicles, whose indices identify them in query results
+     */
+    public void build(Vehicle[] vehicles) {
+        ensureCapacity(vehicles.length);
+        for (int i = 0; i < vehicles.length; i++) {
+            Vec3 position = vehicles[i].getPosition();
+            xs[i] = position.getX();
+            ys[i] = position.getY();
+            zs[i] = position.getZ();
+        }
+        sort(vehicles.length);
+    }
+
+    /**
+     * Rebuilds the grid from packed positions.
+     * @param positions the x, y, and z of every point, one after another
+     * @param count the number of points
+     */
+    public void build(double[] positions, int count) {
+        ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            xs[i] = positions[3 * i];
+            ys[i] = positions[3 * i + 1];
+            zs[i] = positions[3 * i + 2];
+        }
+        sort(count);
+    }
+
+    /**
+     * Finds the points within a distance of a position. Several threads may search at once
+     * while the grid is not being rebuilt.
+     * @param center the position to search around
+     * @param radius the search distance
+     * @param exclude the index of a point to leave out, such as the point searching, or -1
+     * @param result receives the indices of the points found, in no particular order
+     * @return the number of points found, which may exceed the length of result
+     */
+    public int findWithin(Vec3 center, double radius, int exclude, int[] result) {
+        return findWithin(center.getX(), center.getY(), center.getZ(), radius, exclude, result);
+    }
+
+    /**
+     * Finds the points within a distance of a position given by its coordinates, without allocating.
+     * Several threads may search at once while the grid is not being rebuilt.
+     * @param x the x-coordinate of the position to search around
+     * @param y the y-coordinate of the position to search around
+     * @param z the z-coordinate of the position to search around
+     * @param radius the search distance
+     * @param exclude the index of a point to leave out, such as the point searching, or -1
+     * @param result receives the indices of the points found, in no particular order
+     * @return the number of points found, which may exceed the length of result
+     */
+    public int findWithin(double x, double y, double z, double radius, int exclude, int[] result) {
+        int minCellX = getCell(x - radius);
+        int maxCellX = getCell(x + radius);
+        int minCellZ = getCell(z - radius);
+        int maxCellZ = getCell(z + radius);
+        double radiusSquared = radius * radius;
+        int found = 0;
+
+        for (int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++) {
+            for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+                int bucket = getBucket(cellX, cellZ);
+                for (int i = bucketStarts[bucket]; i < bucketStarts[bucket + 1]; i++) {
+                    int point = sortedPoints[i];
+                    if (point != exclude && cellXs[point] == cellX && cellZs[point] == cellZ
+                        && getDistanceSquared(point, x, y, z) <= radiusSquared)
+                    {
+                        if (found < result.length) {
+                            result[found] = point;
+                        }
+                        found++;
+                    }
+                }
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Finds the nearest points to a position by searching rings of cells outwards until no
+     * unsearched cell can hold a nearer point. When the rings grow larger than the grid is full,
+     * every point is compared instead.
+     * @param center the position to search around
+     * @param k the number of points to find
+     * @param exclude the index of a point to leave out, such as the point searching, or -1
+     * @param result receives the indices of the points found, nearest first
+     * @return the number of points found, which is less than k only when the grid has fewer points
+     */
+    public int findNearest(Vec3 center, int k, int exclude, int[] result) {
+        k = Math.min(k, Math.min(result.length, pointCount - (exclude >= 0 && exclude < pointCount ? 1 : 0)));
+        if (k <= 0) {
+            return 0;
+        }
+
+        int centerCellX = getCell(center.getX());
+        int centerCellZ = getCell(center.getZ());
+        int found = 0;
+
+        for (int ring = 0; ; ring++) {
+            if ((2L * ring + 1) * (2L * ring + 1) > 4L * pointCount) {
+                found = 0;
+                for (int point = 0; point < pointCount; point++) {
+                    if (point != exclude) {
+                        found = insertNearest(point, getDistanceSquared(point, center.getX(), center.getY(), center.getZ()), k, found, result);
+                    }
+                }
+                return found;
+            }
+
+            for (int cellZ = centerCellZ - ring; cellZ <= centerCellZ + ring; cellZ++) {
+                boolean edgeRow = cellZ == centerCellZ - ring || cellZ == centerCellZ + ring;
+                for (int cellX = centerCellX - ring; cellX <= centerCellX + ring; cellX += edgeRow ? 1 : 2 * ring) {
+                    int bucket = getBucket(cellX, cellZ);
+                    for (int i = bucketStarts[bucket]; i < bucketStarts[bucket + 1]; i++) {
+                        int point = sortedPoints[i];
+                        if (point != exclude && cellXs[point] == cellX && cellZs[point] == cellZ) {
+                            found = insertNearest(point, getDistanceSquared(point, center.getX(), center.getY(), center.getZ()), k, found, result);
+                        }
+                    }
+
+                    if (ring == 0) {
+                        break;
+                    }
+                }
+            }
+
+            // Every unsearched cell is at least ring cells away from the cell of the center.
+            double reach = ring * cellSize + Math.min(
+                Math.min(center.getX() - centerCellX * cellSize, (centerCellX + 1) * cellSize - center.getX()),
+                Math.min(center.getZ() - centerCellZ * cellSize, (centerCellZ + 1) * cellSize - center.getZ()));
+            if (found == k && distances[k - 1] <= reach * reach) {
+                return found;
+            }
+        }
+    }
+
+    /**
+     * Finds every pair of points that are within a distance of each other. Each cell is only
+     * compared with itself and four of its neighbours, so every pair is reported once.
+     * @param radius the distance within which two points form a pair
+     * @param pairs receives the two indices of every pair, one pair after another
+     * @return the number of pairs found, which may exceed half the length of pairs
+     */
+    public int findPairs(double radius, int[] pairs) {
+        if (radius > cellSize) {
+            throw new IllegalArgumentException("radius <= cellSize");
+        }
+
+        double radiusSquared = radius * radius;
+        int found = 0;
+
+        for (int i = 0; i < pointCount; i++) {
+            int cellX = cellXs[i];
+            int cellZ = cellZs[i];
+
+            // The own cell, and then the neighbours east, north-west, north, and north-east.
+            for (int neighbour = 0; neighbour < 5; neighbour++) {
+                int otherCellX = cellX + (neighbour == 0 ? 0 : neighbour == 1 ? 1 : neighbour - 3);
+                int otherCellZ = cellZ + (neighbour < 2 ? 0 : 1);
+                int bucket = getBucket(otherCellX, otherCellZ);
+
+                for (int j = bucketStarts[bucket]; j < bucketStarts[bucket + 1]; j++) {
+                    int other = sortedPoints[j];
+                    if ((neighbour != 0 || other > i) && cellXs[other] == otherCellX && cellZs[other] == otherCellZ) {
+                        double dx = xs[other] - xs[i];
+                        double dy = ys[other] - ys[i];
+                        double dz = zs[other] - zs[i];
+                        if (dx * dx + dy * dy + dz * dz <= radiusSquared) {
+                            if (2 * found + 1 < pairs.length) {
+                                pairs[2 * found] = i;
+                                pairs[2 * found + 1] = other;
+                            }
+                            found++;
+                        }
+                    }
+                }
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Inserts a point into the distance-sorted result of a nearest search if it is among the k nearest.
+     */
+    private int insertNearest(int point, double distance, int k, int found, int[] result) {
+        if (found == k && distance >= distances[k - 1]) {
+            return found;
+        }
+
+        int slot = found < k ? found++ : k - 1;
+        while (slot > 0 && distances[slot - 1] > distance) {
+            distances[slot] = distances[slot - 1];
+            result[slot] = result[slot - 1];
+            slot--;
+        }
+        distances[slot] = distance;
+        result[slot] = point;
+        return found;
+    }
+
+    private void sort(int count) {
+        pointCount = count;
+        int bucketCount = Integer.highestOneBit(Math.max(1, 2 * count - 1)) << 1;
+        if (bucketStarts.length != bucketCount + 1) {
+            bucketStarts = new int[bucketCount + 1];
+        }
+        else {
+            Arrays.fill(bucketStarts, 0);
+        }
+
+        for (int i = 0; i < count; i++) {
+            cellXs[i] = getCell(xs[i]);
+            cellZs[i] = getCell(zs[i]);
+            bucketStarts[getBucket(cellXs[i], cellZs[i]) + 1]++;
+        }
+
+        for (int i = 0; i < bucketCount; i++) {
+            bucketStarts[i + 1] += bucketStarts[i];
+        }
+
+        // Fill every bucket from its end, which leaves the start of each bucket one slot to the right.
+        for (int i = count - 1; i >= 0; i--) {
+            int bucket = getBucket(cellXs[i], cellZs[i]);
+            sortedPoints[--bucketStarts[bucket + 1]] = i;
+        }
+
+        for (int i = 0; i < bucketCount; i++) {
+            bucketStarts[i] = bucketStarts[i + 1];
+        }
+        bucketStarts[bucketCount] = count;
+    }
+
+    private void ensureCapacity(int count) {
+        if (xs != null && xs.length >= count) {
+            return;
+        }
+
+        int capacity = Math.max(count, 16);
+        sortedPoints = new int[capacity];
+        cellXs = new int[capacity];
+        cellZs = new int[capacity];
+        xs = new double[capacity];
+        ys = new double[capacity];
+        zs = new double[capacity];
+        distances = new double[capacity];
+    }
+
+    private int getCell(double coordinate) {
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    private int getBucket(int cellX, int cellZ) {
+        int hash = cellX * 0x9E3779B1 ^ cellZ * 0x85EBCA77;
+        return (hash ^ hash >>> 16) & (bucketStarts.length - 2);
+    }
+
+    private double getDistanceSquared(int point, double x, double y, double z) {
+        double dx = xs[point] - x;
+        double dy = ys[point] - y;
+        double dz = zs[point] - z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+}
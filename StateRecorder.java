@@ -0,0 +1,174 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A state recorder writes a fixed-length vector of doubles per frame to a compact binary file.
+ * Every keyframe stores the values verbatim; every other frame stores the XOR of each value against the
+ * same value of the previous frame as a bit stream. A value that did not change takes a single bit; a
+ * changed value takes a 13-bit header, holding the number of leading zero bits of the XOR and the number of
+ * bits from its highest to its lowest set bit, followed by those bits, so only the changed mantissa bits
+ * are stored. Every frame is padded to a whole byte.
+ * An index of keyframe offsets is written at the end of the file so that StateReplay can seek.
+ * <p>
+ * File layout: the magic number, the number of values per frame, and the keyframe interval; then the
+ * frames, each a marker byte followed by its values; then the keyframe offsets; then a footer holding
+ * the offset of the keyframe index and the number of frames.
+ */
+public class StateRecorder {
+    static final int MAGIC = 0x43415232;
+    static final int HEADER_SIZE = 12;
+    static final int FOOTER_SIZE = 12;
+    static final byte KEYFRAME = 1;
+    static final byte DELTA_FRAME = 0;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final int valueCount;
+    private final int keyframeInterval;
+    private final long[] previousBits;
+    private final List<Long> keyframeOffsets;
+    private long position;
+    private int frameCount;
+    private int pendingBits;
+    private int pendingBitCount;
+
+    /**
+     * Constructs a state recorder and writes the file header.
+     * @param path the file to record to
+     * @param valueCount the number of values per frame
+     * @param keyframeInterval the number of frames between keyframes
+     * @throws IOException when the file cannot be created
+     */
+    public StateRecorder(String path, int valueCount, int keyframeInterval) throws IOException {
+        if (keyframeInterval < 1) {
+            throw new IllegalArgumentException("keyframeInterval >= 1");
+        }
+
+        channel = FileChannel.open(Path.of(path),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = ByteBuffer.allocate(Math.max(1 << 16, 1 + 10 * valueCount));
+        this.valueCount = valueCount;
+        this.keyframeInterval = keyframeInterval;
+        previousBits = new long[valueCount];
+        keyframeOffsets = new ArrayList<>();
+
+        buffer.putInt(MAGIC);
+        buffer.putInt(valueCount);
+        buffer.putInt(keyframeInterval);
+        position = HEADER_SIZE;
+    }
+
+    /**
+     * Gets the number of frames recorded.
+     * @return the number of frames recorded
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Records the values of the next frame.
+     * @param values the values of the frame, whose length is the number of values per frame
+     * @throws IOException when the frame cannot be written
+     */
+    public void write(double[] values) throws IOException {
+        if (buffer.remaining() < 1 + 10 * valueCount) {
+            flush();
+        }
+
+        int start = buffer.position();
+
+        if (frameCount % keyframeInterval == 0) {
+            keyframeOffsets.add(position);
+            buffer.put(KEYFRAME);
+            for (int i = 0; i < valueCount; i++) {
+                previousBits[i] = Double.doubleToRawLongBits(values[i]);
+                buffer.putLong(previousBits[i]);
+            }
+        }
+        else {
+            buffer.put(DELTA_FRAME);
+            for (int i = 0; i < valueCount; i++) {
+                long bits = Double.doubleToRawLongBits(values[i]);
+                putXor(bits ^ previousBits[i]);
+                previousBits[i] = bits;
+            }
+
+            if (pendingBitCount > 0) {
+                buffer.put((byte) (pendingBits << (8 - pendingBitCount)));
+                pendingBits = 0;
+                pendingBitCount = 0;
+            }
+        }
+
+        position += buffer.position() - start;
+        frameCount++;
+    }
+
+    /**
+     * Writes the keyframe index and the footer, and then closes the file.
+     * @throws IOException when the file cannot be written
+     */
+    public void close() throws IOException {
+        long indexOffset = position;
+
+        for (long offset : keyframeOffsets) {
+            if (buffer.remaining() < Long.BYTES) {
+                flush();
+            }
+            buffer.putLong(offset);
+        }
+
+        if (buffer.remaining() < FOOTER_SIZE) {
+            flush();
+        }
+
+        buffer.putLong(indexOffset);
+        buffer.putInt(frameCount);
+        flush();
+        channel.close();
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void putXor(long xor) {
+        if (xor == 0L) {
+            putBits(0L, 1);
+            return;
+        }
+
+        int leadingZeros = Long.numberOfLeadingZeros(xor);
+        int trailingZeros = Long.numberOfTrailingZeros(xor);
+        int length = Long.SIZE - leadingZeros - trailingZeros;
+        putBits(1L, 1);
+        putBits(leadingZeros, 6);
+        putBits(length - 1, 6);
+        putBits(xor >>> trailingZeros, length);
+    }
+
+    private void putBits(long value, int count) {
+        while (count > 0) {
+            int n = Math.min(count, 8 - pendingBitCount);
+            count -= n;
+            pendingBits = (pendingBits << n) | (int) ((value >>> count) & ((1 << n) - 1));
+            pendingBitCount += n;
+
+            if (pendingBitCount == 8) {
+                buffer.put((byte) pendingBits);
+                pendingBits = 0;
+                pendingBitCount = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A state replay reads the frames written by StateRecorder, either in order or from any frame
+ * by seeking to the nearest preceding keyframe and decoding forward from there.
+ */
+public class StateReplay {
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final int valueCount;
+    private final int keyframeInterval;
+    private final int frameCount;
+    private final long[] keyframeOffsets;
+    private final long[] previousBits;
+    private int frameIndex;
+    private int currentByte;
+    private int remainingBits;
+
+    /**
+     * Opens a recording and reads its keyframe index.
+     * @param path the recorded file
+     * @throws IOException when the file cannot be read or is not a recording
+     */
+    public StateReplay(String path) throws IOException {
+        channel = FileChannel.open(Path.of(path), StandardOpenOption.READ);
+
+        ByteBuffer header = ByteBuffer.allocate(StateRecorder.HEADER_SIZE);
+        readFully(header, 0L);
+        if (header.getInt() != StateRecorder.MAGIC) {
+            channel.close();
+            throw new IOException("Not a state recording: " + path);
+        }
+
+        valueCount = header.getInt();
+        keyframeInterval = header.getInt();
+
+        ByteBuffer footer = ByteBuffer.allocate(StateRecorder.FOOTER_SIZE);
+        readFully(footer, channel.size() - StateRecorder.FOOTER_SIZE);
+        long indexOffset = footer.getLong();
+        frameCount = footer.getInt();
+
+        int keyframeCount = (frameCount + keyframeInterval - 1) / keyframeInterval;
+        ByteBuffer index = ByteBuffer.allocate(keyframeCount * Long.BYTES);
+        readFully(index, indexOffset);
+        keyframeOffsets = new long[keyframeCount];
+        for (int i = 0; i < keyframeCount; i++) {
+            keyframeOffsets[i] = index.getLong();
+        }
+
+        buffer = ByteBuffer.allocate(Math.max(1 << 16, 1 + 10 * valueCount));
+        previousBits = new long[valueCount];
+        seek(0);
+    }
+
+    /**
+     * Gets the number of values per frame.
+     * @return the number of values per frame
+     */
+    public int getValueCount() {
+        return valueCount;
+    }
+
+    /**
+     * Gets the number of recorded frames.
+     * @return the number of recorded frames
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Gets the index of the frame returned by the next call to readFrame.
+     * @return the index of the next frame
+     */
+    public int getFrameIndex() {
+        return frameIndex;
+    }
+
+    /**
+     * Moves to a frame, so that the next call to readFrame returns it.
+     * @param frame the index of the frame to move to
+     * @throws IOException when the recording cannot be read
+     */
+    public void seek(int frame) throws IOException {
+        if (frame < 0 || frame > frameCount) {
+            throw new IndexOutOfBoundsException("frame: " + frame);
+        }
+
+        int keyframe = Math.min(frame / keyframeInterval, keyframeOffsets.length - 1);
+        if (keyframe < 0) {
+            frameIndex = frame;
+            return;
+        }
+
+        channel.position(keyframeOffsets[keyframe]);
+        buffer.clear().flip();
+        frameIndex = keyframe * keyframeInterval;
+
+        double[] skipped = new double[valueCount];
+        while (frameIndex < frame) {
+            readFrame(skipped);
+        }
+    }
+
+    /**
+     * Reads the next frame.
+     * @param values the array to read the values of the frame into
+     * @return true if a frame was read; false at the end of the recording
+     * @throws IOException when the recording cannot be read
+     */
+    public boolean readFrame(double[] values) throws IOException {
+        if (frameIndex >= frameCount) {
+            return false;
+        }
+
+        fill(1 + 10 * valueCount);
+        byte marker = buffer.get();
+
+        if (marker == StateRecorder.KEYFRAME) {
+            for (int i = 0; i < valueCount; i++) {
+                previousBits[i] = buffer.getLong();
+                values[i] = Double.longBitsToDouble(previousBits[i]);
+            }
+        }
+        else {
+            // Every frame starts on a whole byte.
+            remainingBits = 0;
+            for (int i = 0; i < valueCount; i++) {
+                previousBits[i] ^= getXor();
+                values[i] = Double.longBitsToDouble(previousBits[i]);
+            }
+        }
+
+        frameIndex++;
+        return true;
+    }
+
+    /**
+     * Closes the recording.
+     * @throws IOException when the recording cannot be closed
+     */
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void fill(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            buffer.compact();
+            while (buffer.position() < bytes && channel.read(buffer) > 0) {}
+            buffer.flip();
+        }
+    }
+
+    private void readFully(ByteBuffer target, long position) throws IOException {
+        while (target.hasRemaining()) {
+            if (channel.read(target, position + target.position()) < 0) {
+                throw new IOException("Unexpected end of state recording");
+            }
+        }
+        target.flip();
+    }
+
+    private long getXor() {
+        if (getBits(1) == 0L) {
+            return 0L;
+        }
+
+        int leadingZeros = (int) getBits(6);
+        int length = (int) getBits(6) + 1;
+        return getBits(length) << (Long.SIZE - leadingZeros - length);
+    }
+
+    private long getBits(int count) {
+        long value = 0L;
+
+        while (count > 0) {
+            if (remainingBits == 0) {
+                currentByte = buffer.get() & 0xFF;
+                remainingBits = 8;
+            }
+
+            int n = Math.min(count, remainingBits);
+            remainingBits -= n;
+            count -= n;
+            value = (value << n) | ((currentByte >>> remainingBits) & ((1 << n) - 1));
+        }
+
+        return value;
+    }
+}
@@ -0,0 +1,390 @@
+import java.awt.Graphics2D;
+import java.awt.TexturePaint;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A texture atlas packs the textures of several models into one image, so that the renderer draws all
+ * of them with a single texture paint and switches paint far less often. The texture coordinates of every
+ * packed model are moved to the texture's place in the atlas.
+ * <p>
+ * Textures are packed on shelves, tallest first, and every texture is surrounded by a gutter that wraps
+ * around to its opposite edge, so texels sampled on the edge of a texture are the same as when the texture
+ * is tiled by its own texture paint. Every mip level halves the gutter, so an atlas only has the mip
+ * levels whose gutter is still a texel wide. An atlas is only as large as the shelves it holds. Only models
+ * whose texture coordinates stay inside their texture are packed, since a texture that repeats across a
+ * model cannot repeat inside an atlas.
+ * <p>
+ * An atlas can be stored in a compact format: "rgb" keeps 32-bit texels, "rgb565" stores 16-bit texels,
+ * and "indexed" stores 8-bit indices into a palette of 256 colors chosen for the atlas by median cut.
+ * Textures with transparency are always kept in 32-bit texels.
+ */
+public class TextureAtlas {
+    private static final int GUTTER = 4;
+    private static final int PALETTE_SIZE = 256;
+    private static final int MIP_LEVELS = 3;
+
+    private final BufferedImage image;
+    private final TexturePaint paint;
+    private final MipMap mipMap;
+    private final int textureCount;
+    private final long sourceBytes;
+
+    private TextureAtlas(BufferedImage image, int textureCount, long sourceBytes) {
+        this.image = image;
+        this.textureCount = textureCount;
+        this.sourceBytes = sourceBytes;
+        paint = new TexturePaint(image, new Rectangle2D.Double(0.0, 0.0, image.getWidth(), image.getHeight()));
+        mipMap = new MipMap(image, MIP_LEVELS);
+    }
+
+    /**
+     * Packs the textures of models into as few atlases as needed, and moves the models onto the atlases.
+     * Models that share a texture share its place in the atlas. Textures larger than an atlas, and textures
+     * of models that repeat their texture, are left alone.
+     * @param models the models to pack
+     * @param size the largest width and height of an atlas
+     * @param format the texel format of the atlases: "rgb", "rgb565", or "indexed"
+     * @return the atlases that were built
+     */
+    public static List<TextureAtlas> pack(Model[] models, int size, String format) {
+        if (!format.equals("rgb") && !format.equals("rgb565") && !format.equals("indexed")) {
+            throw new IllegalArgumentException("Unknown texture format: " + format);
+        }
+
+        Map<BufferedImage, List<Model>> users = new IdentityHashMap<>();
+        List<BufferedImage> textures = new ArrayList<>();
+        for (Model model : models) {
+            BufferedImage texture = model.getTexture();
+            if (texture == null || texture.getWidth() + 2 * GUTTER > size || texture.getHeight() + 2 * GUTTER > size
+                || !isInsideTexture(model))
+            {
+                continue;
+            }
+
+            if (!users.containsKey(texture)) {
+                users.put(texture, new ArrayList<>());
+                textures.add(texture);
+            }
+            if (!users.get(texture).contains(model)) {
+                users.get(texture).add(model);
+            }
+        }
+
+        textures.sort((a, b) -> Integer.compare(b.getHeight(), a.getHeight()));
+        List<TextureAtlas> atlases = new ArrayList<>();
+        int start = 0;
+
+        while (start < textures.size()) {
+            // Fill shelves from the top of the atlas until the next texture no longer fits.
+            int[] xs = new int[textures.size()];
+            int[] ys = new int[textures.size()];
+            int shelfX = 0;
+            int shelfY = 0;
+            int shelfHeight = 0;
+            int atlasWidth = 0;
+            int end = start;
+
+            while (end < textures.size()) {
+                int width = textures.get(end).getWidth() + 2 * GUTTER;
+                int height = textures.get(end).getHeight() + 2 * GUTTER;
+                if (shelfX + width > size) {
+                    shelfX = 0;
+                    shelfY += shelfHeight;
+                    shelfHeight = 0;
+                }
+                if (shelfY + height > size) {
+                    break;
+                }
+
+                xs[end] = shelfX + GUTTER;
+                ys[end] = shelfY + GUTTER;
+                shelfX += width;
+                shelfHeight = Math.max(shelfHeight, height);
+                atlasWidth = Math.max(atlasWidth, shelfX);
+                end++;
+            }
+
+            boolean alpha = false;
+            for (int i = start; i < end; i++) {
+                alpha |= textures.get(i).getColorModel().hasAlpha();
+            }
+
+            int atlasHeight = shelfY + shelfHeight;
+            int[] texels = new int[atlasWidth * atlasHeight];
+            long sourceBytes = 0L;
+            for (int i = start; i < end; i++) {
+                BufferedImage texture = textures.get(i);
+                copyWithGutter(texture, texels, atlasWidth, atlasHeight, xs[i], ys[i]);
+                sourceBytes += (long) texture.getWidth() * texture.getHeight()
+                    * texture.getColorModel().getPixelSize() / 8;
+            }
+
+            TextureAtlas atlas = new TextureAtlas(
+                createImage(texels, atlasWidth, atlasHeight, alpha ? "rgb" : format, alpha),
+                end - start,
+                sourceBytes);
+            atlases.add(atlas);
+
+            for (int i = start; i < end; i++) {
+                for (Model model : users.get(textures.get(i))) {
+                    model.setAtlas(atlas.image, atlas.paint, atlas.mipMap, new Vec2(xs[i], ys[i]));
+                }
+            }
+
+            start = end;
+        }
+
+        return atlases;
+    }
+
+    /**
+     * Gets the image of the atlas.
+     * @return the image of the atlas
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * Gets the texture paint shared by every model on the atlas.
+     * @return the texture paint of the atlas
+     */
+    public TexturePaint getPaint() {
+        return paint;
+    }
+
+    /**
+     * Gets the mip map of the atlas, shared by every model on the atlas.
+     * @return the mip map of the atlas
+     */
+    public MipMap getMipMap() {
+        return mipMap;
+    }
+
+    /**
+     * Gets the number of textures packed into the atlas.
+     * @return the number of textures
+     */
+    public int getTextureCount() {
+        return textureCount;
+    }
+
+    /**
+     * Gets the memory taken by the texels of the atlas.
+     * @return the size of the atlas texels in bytes
+     */
+    public long getByteCount() {
+        return (long) image.getWidth() * image.getHeight() * image.getColorModel().getPixelSize() / 8;
+    }
+
+    /**
+     * Gets the memory taken by the texels of the textures before they were packed.
+     * @return the size of the packed textures in bytes
+     */
+    public long getSourceByteCount() {
+        return sourceBytes;
+    }
+
+    private static boolean isInsideTexture(Model model) {
+        int width = model.getTexture().getWidth();
+        int height = model.getTexture().getHeight();
+        Vec2 offset = model.getTexCoordOffset();
+
+        for (Model.Triangle triangle : model.getTriangles()) {
+            for (Model.Vertex vertex : new Model.Vertex[] { triangle.getA(), triangle.getB(), triangle.getC() }) {
+                double u = vertex.getTexCoord().getX() - offset.getX();
+                double v = vertex.getTexCoord().getY() - offset.getY();
+                if (u < 0.0 || u > width || v < 0.0 || v > height) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Copies a texture into the atlas texels, and wraps it around into the gutter around it.
+     */
+    private static void copyWithGutter(BufferedImage texture, int[] texels, int atlasWidth, int atlasHeight,
+        int x, int y)
+    {
+        int width = texture.getWidth();
+        int height = texture.getHeight();
+        int[] source = texture.getRGB(0, 0, width, height, null, 0, width);
+
+        for (int row = -GUTTER; row < height + GUTTER; row++) {
+            int sourceRow = Math.floorMod(row, height);
+            for (int column = -GUTTER; column < width + GUTTER; column++) {
+                int sourceColumn = Math.floorMod(column, width);
+                if (y + row >= 0 && y + row < atlasHeight && x + column >= 0 && x + column < atlasWidth) {
+                    texels[(y + row) * atlasWidth + x + column] = source[sourceRow * width + sourceColumn];
+                }
+            }
+        }
+    }
+
+    private static BufferedImage createImage(int[] texels, int width, int height, String format, boolean alpha) {
+        if (format.equals("indexed")) {
+            IndexColorModel palette = createPalette(texels);
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED, palette);
+            byte[] indices = new byte[texels.length];
+            int[] nearest = new int[1 << 15];
+            Arrays.fill(nearest, -1);
+
+            // Colors are matched to the palette at 15-bit precision, which bounds the matches to compute.
+            for (int i = 0; i < texels.length; i++) {
+                int key = (texels[i] >> 9 & 0x7C00) | (texels[i] >> 6 & 0x03E0) | (texels[i] >> 3 & 0x001F);
+                if (nearest[key] < 0) {
+                    nearest[key] = findNearest(palette, texels[i]);
+                }
+                indices[i] = (byte) nearest[key];
+            }
+
+            image.getRaster().setDataElements(0, 0, width, height, indices);
+            return image;
+        }
+
+        BufferedImage image = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB
+            : format.equals("rgb565") ? BufferedImage.TYPE_USHORT_565_RGB
+            : BufferedImage.TYPE_INT_RGB);
+        if (format.equals("rgb565")) {
+            BufferedImage source = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            source.setRGB(0, 0, width, height, texels, 0, width);
+            Graphics2D g = image.createGraphics();
+            g.drawImage(source, 0, 0, null);
+            g.dispose();
+        }
+        else {
+            image.setRGB(0, 0, width, height, texels, 0, width);
+        }
+        return image;
+    }
+
+    /**
+     * Chooses a palette for texels by median cut: the box of colors with the widest channel is split at the
+     * median of that channel until there are enough boxes, and every box contributes its mean color.
+     */
+    private static IndexColorModel createPalette(int[] texels) {
+        int[] counts = new int[1 << 15];
+        for (int texel : texels) {
+            counts[(texel >> 9 & 0x7C00) | (texel >> 6 & 0x03E0) | (texel >> 3 & 0x001F)]++;
+        }
+
+        int colorCount = 0;
+        for (int count : counts) {
+            colorCount += count > 0 ? 1 : 0;
+        }
+
+        int[] colors = new int[colorCount];
+        for (int i = 0, j = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                colors[j++] = i;
+            }
+        }
+
+        List<int[]> boxes = new ArrayList<>();
+        boxes.add(new int[] { 0, colorCount });
+        while (boxes.size() < PALETTE_SIZE) {
+            int widest = -1;
+            int widestChannel = 0;
+            int widestRange = 0;
+            for (int i = 0; i < boxes.size(); i++) {
+                for (int channel = 0; channel < 3; channel++) {
+                    int range = getRange(colors, boxes.get(i)[0], boxes.get(i)[1], channel);
+                    if (range > widestRange) {
+                        widest = i;
+                        widestChannel = channel;
+                        widestRange = range;
+                    }
+                }
+            }
+
+            if (widest < 0) {
+                break;
+            }
+
+            int[] box = boxes.get(widest);
+            int shift = 10 - 5 * widestChannel;
+            Integer[] sorted = new Integer[box[1] - box[0]];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = colors[box[0] + i];
+            }
+            Arrays.sort(sorted, (a, b) -> Integer.compare(a >> shift & 0x1F, b >> shift & 0x1F));
+            for (int i = 0; i < sorted.length; i++) {
+                colors[box[0] + i] = sorted[i];
+            }
+
+            // Split at the texel median, keeping at least one color on each side.
+            long total = 0L;
+            for (int i = box[0]; i < box[1]; i++) {
+                total += counts[colors[i]];
+            }
+            long seen = 0L;
+            int split = box[0] + 1;
+            while (split < box[1] - 1 && seen + counts[colors[split - 1]] < total / 2) {
+                seen += counts[colors[split - 1]];
+                split++;
+            }
+
+            boxes.set(widest, new int[] { box[0], split });
+            boxes.add(new int[] { split, box[1] });
+        }
+
+        byte[] reds = new byte[PALETTE_SIZE];
+        byte[] greens = new byte[PALETTE_SIZE];
+        byte[] blues = new byte[PALETTE_SIZE];
+        for (int i = 0; i < boxes.size(); i++) {
+            long red = 0L;
+            long green = 0L;
+            long blue = 0L;
+            long total = 0L;
+            for (int j = boxes.get(i)[0]; j < boxes.get(i)[1]; j++) {
+                int color = colors[j];
+                red += (long) counts[color] * ((color >> 10 & 0x1F) * 255 / 31);
+                green += (long) counts[color] * ((color >> 5 & 0x1F) * 255 / 31);
+                blue += (long) counts[color] * ((color & 0x1F) * 255 / 31);
+                total += counts[color];
+            }
+            reds[i] = (byte) (total > 0 ? red / total : 0);
+            greens[i] = (byte) (total > 0 ? green / total : 0);
+            blues[i] = (byte) (total > 0 ? blue / total : 0);
+        }
+
+        return new IndexColorModel(8, PALETTE_SIZE, reds, greens, blues);
+    }
+
+    private static int getRange(int[] colors, int start, int end, int channel) {
+        int shift = 10 - 5 * channel;
+        int min = 0x1F;
+        int max = 0;
+        for (int i = start; i < end; i++) {
+            min = Math.min(min, colors[i] >> shift & 0x1F);
+            max = Math.max(max, colors[i] >> shift & 0x1F);
+        }
+        return end - start > 1 ? max - min : 0;
+    }
+
+    private static int findNearest(IndexColorModel palette, int rgb) {
+        int best = 0;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < palette.getMapSize(); i++) {
+            int dr = palette.getRed(i) - (rgb >> 16 & 0xFF);
+            int dg = palette.getGreen(i) - (rgb >> 8 & 0xFF);
+            int db = palette.getBlue(i) - (rgb & 0xFF);
+            int distance = dr * dr + dg * dg + db * db;
+            if (distance < bestDistance) {
+                best = i;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+}
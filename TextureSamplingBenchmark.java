@@ -0,0 +1,145 @@
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+/**
+ * A texture sampling benchmark fills a frame with two triangles whose texture is rotated by several
+ * angles relative to the screen, sampling the texture from its row-major texels and from a tiled
+ * texture, and prints how many texels per second each layout samples.
+ */
+public class TextureSamplingBenchmark {
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 360;
+    private static final int TEXTURE_SIZE = 2048;
+    private static final int[] ANGLES = { 0, 15, 30, 45, 60, 90 };
+    private static final double TEXELS_PER_PIXEL = 1.5;
+
+    /**
+     * Runs the benchmark.
+     * @param args the texture file, whose width and height must be powers of two (default: a 2048x2048
+     *     texture of noise), and the number of frames per angle and layout (default 200)
+     */
+    public static void main(String[] args) {
+        BufferedImage image = null;
+        try {
+            image = args.length > 0 && !args[0].isEmpty() ? ImageIO.read(new File(args[0])) : createTexture();
+        }
+        catch (IOException e) {
+            System.err.println("File not found: " + args[0]);
+            System.exit(-1);
+        }
+        int frameCount = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] rows = image.getRGB(0, 0, width, height, null, 0, width);
+        long buildStart = System.nanoTime();
+        TiledTexture tiled = new TiledTexture(image);
+        System.out.printf("%dx%d texture tiled in %.3f ms%n", width, height, (System.nanoTime() - buildStart) / 1.0e6);
+
+        int[] pixels = new int[WIDTH * HEIGHT];
+
+        for (int pass = 0; pass < 3; pass++) {
+            for (int angle : ANGLES) {
+                double radians = Math.toRadians(angle);
+                // The texture moves by du and dv per pixel along a row, and by -dv and du per row.
+                int du = (int) (Math.cos(radians) * TEXELS_PER_PIXEL * 65536.0);
+                int dv = (int) (Math.sin(radians) * TEXELS_PER_PIXEL * 65536.0);
+
+                long start = System.nanoTime();
+                long rowChecksum = 0;
+                for (int frame = 0; frame < frameCount; frame++) {
+                    fill(pixels, rows, width, height, null, frame, du, dv);
+                    rowChecksum += checksum(pixels);
+                }
+                long rowNanos = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                long tiledChecksum = 0;
+                for (int frame = 0; frame < frameCount; frame++) {
+                    fill(pixels, null, width, height, tiled, frame, du, dv);
+                    tiledChecksum += checksum(pixels);
+                }
+                long tiledNanos = System.nanoTime() - start;
+
+                double texels = (double) WIDTH * HEIGHT * frameCount;
+                System.out.printf("pass %d: angle %2d, row-major %.1f Mtexels/s, tiled %.1f Mtexels/s, %s%n",
+                    pass,
+                    angle,
+                    texels / rowNanos * 1.0e3,
+                    texels / tiledNanos * 1.0e3,
+                    rowChecksum == tiledChecksum ? "same image" : "IMAGES DIFFER");
+            }
+        }
+    }
+
+    /**
+     * Fills the frame with two triangles, one above and one below its diagonal, walking each triangle
+     * in spans of pixels. The texture is sampled from rows if rows is not null, or else from the tiled texture.
+     */
+    private static void fill(int[] pixels, int[] rows, int width, int height, TiledTexture tiled,
+        int frame, int du, int dv)
+    {
+        // Scroll the texture a little every frame, so no two frames sample the same texels.
+        int originU = frame * 7 << 16;
+        int originV = frame * 3 << 16;
+
+        for (int y = 0; y < HEIGHT; y++) {
+            int split = WIDTH - (int) ((y + 0.5) * WIDTH / HEIGHT);
+            int u = originU - y * dv;
+            int v = originV + y * du;
+
+            // The first triangle covers the row up to the diagonal, and the second the rest of it.
+            if (rows != null) {
+                sampleRowMajorSpan(rows, width, height, pixels, y * WIDTH, split, u, v, du, dv);
+                sampleRowMajorSpan(rows, width, height, pixels, y * WIDTH + split, WIDTH - split,
+                    u + split * du, v + split * dv, du, dv);
+            }
+            else {
+                tiled.sampleSpan(pixels, y * WIDTH, split, u, v, du, dv);
+                tiled.sampleSpan(pixels, y * WIDTH + split, WIDTH - split, u + split * du, v + split * dv, du, dv);
+            }
+        }
+    }
+
+    /**
+     * Samples row-major texels along a span of pixels the same way as TiledTexture.sampleSpan.
+     */
+    private static void sampleRowMajorSpan(int[] rows, int width, int height, int[] target, int offset, int count,
+        int u, int v, int du, int dv)
+    {
+        int widthMask = width - 1;
+        int heightMask = height - 1;
+
+        for (int i = 0; i < count; i++) {
+            target[offset + i] = rows[(v >> 16 & heightMask) * width + (u >> 16 & widthMask)];
+            u += du;
+            v += dv;
+        }
+    }
+
+    private static long checksum(int[] pixels) {
+        long sum = 0;
+        for (int i = 0; i < pixels.length; i += 61) {
+            sum = sum * 31 + pixels[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Creates a texture of noise, large enough not to fit in the processor caches.
+     */
+    private static BufferedImage createTexture() {
+        BufferedImage texture = new BufferedImage(TEXTURE_SIZE, TEXTURE_SIZE, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(1);
+        for (int y = 0; y < texture.getHeight(); y++) {
+            for (int x = 0; x < texture.getWidth(); x++) {
+                texture.setRGB(x, y, random.nextInt());
+            }
+        }
+        return texture;
+    }
+}
@@ -0,0 +1,114 @@
+import java.awt.image.BufferedImage;
+
+/**
+ * A tiled texture stores the texels of a texture in tiles of 16 by 16 texels instead of in rows.
+ * The tiles are stored row by row, and the texels of a tile in Morton order (Z-order), interleaving the
+ * bits of their x and y coordinates, so texels that are close in both directions are close in memory.
+ * <p>
+ * A cache line of a row-major texture holds 16 texels of one row, so a span that crosses the texture at
+ * an angle, such as a triangle of a spinning car, touches a new cache line on almost every texel, and a
+ * span down a column touches a new page every few texels. A cache line of a tiled texture holds a block
+ * of four by four texels, and a tile of 1 KB holds 16 of them, so such a span keeps reading texels from
+ * the lines it has just fetched.
+ */
+public class TiledTexture {
+    private static final int TILE_SHIFT = 4;
+    private static final int TILE_SIZE = 1 << TILE_SHIFT;
+    private static final int[] MORTON_X = new int[TILE_SIZE];
+    private static final int[] MORTON_Y = new int[TILE_SIZE];
+
+    static {
+        for (int i = 0; i < TILE_SIZE; i++) {
+            for (int bit = 0; bit < TILE_SHIFT; bit++) {
+                MORTON_X[i] |= (i >> bit & 1) << 2 * bit;
+                MORTON_Y[i] |= (i >> bit & 1) << 2 * bit + 1;
+            }
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final int tileColumns;
+    private final int tileColumnShift;
+    private final int[] texels;
+
+    /**
+     * Constructs a tiled texture from an image.
+     * @param image the texture, whose width and height must be powers of two
+     */
+    public TiledTexture(BufferedImage image) {
+        if (Integer.bitCount(image.getWidth()) != 1 || Integer.bitCount(image.getHeight()) != 1) {
+            throw new IllegalArgumentException("width and height must be powers of two");
+        }
+
+        width = image.getWidth();
+        height = image.getHeight();
+        tileColumns = (width + TILE_SIZE - 1) >> TILE_SHIFT;
+        tileColumnShift = Integer.numberOfTrailingZeros(tileColumns);
+        int tileRows = (height + TILE_SIZE - 1) >> TILE_SHIFT;
+        texels = new int[tileColumns * tileRows << 2 * TILE_SHIFT];
+
+        int[] rows = image.getRGB(0, 0, width, height, null, 0, width);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                texels[getIndex(x, y)] = rows[y * width + x];
+            }
+        }
+    }
+
+    /**
+     * Gets the width of the texture.
+     * @return the width in texels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the height of the texture.
+     * @return the height in texels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets a texel of the texture.
+     * @param x the column of the texel, which must be inside the texture
+     * @param y the row of the texel, which must be inside the texture
+     * @return the color of the texel
+     */
+    public int getTexel(int x, int y) {
+        return texels[getIndex(x, y)];
+    }
+
+    /**
+     * Samples the texture along a span of pixels with the nearest texel, repeating the texture.
+     * Texture coordinates are in 16.16 fixed point texels.
+     * @param target the pixels to write the span into
+     * @param offset the index of the first pixel of the span
+     * @param count the number of pixels in the span
+     * @param u the texture column at the first pixel
+     * @param v the texture row at the first pixel
+     * @param du the step of the texture column from one pixel to the next
+     * @param dv the step of the texture row from one pixel to the next
+     */
+    public void sampleSpan(int[] target, int offset, int count, int u, int v, int du, int dv) {
+        int widthMask = width - 1;
+        int heightMask = height - 1;
+
+        for (int i = 0; i < count; i++) {
+            int x = u >> 16 & widthMask;
+            int y = v >> 16 & heightMask;
+            target[offset + i] = texels[((y >> TILE_SHIFT << tileColumnShift) + (x >> TILE_SHIFT)) << 2 * TILE_SHIFT
+                | MORTON_Y[y & TILE_SIZE - 1] | MORTON_X[x & TILE_SIZE - 1]];
+            u += du;
+            v += dv;
+        }
+    }
+
+    private int getIndex(int x, int y) {
+        return ((y >> TILE_SHIFT << tileColumnShift) + (x >> TILE_SHIFT)) << 2 * TILE_SHIFT
+            | MORTON_Y[y & TILE_SIZE - 1] | MORTON_X[x & TILE_SIZE - 1];
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * A transform caches the world matrix of an object that is positioned and rotated every frame.
+ * The rotation matrix is only rebuilt when the rotation changes; when only the position changes,
+ * only the translation row of the world matrix is rewritten. The world matrix is double-buffered,
+ * so the matrix handed to the renderer for one frame is not overwritten while the next frame's
+ * matrix is updated.
+ * <p>
+ * The world matrix equals rotateY * rotateZ * rotateX * translate(position).
+ */
+public class Transform {
+    private final double[] rotationMatrix;
+    private final double[][] worldMatrices;
+    private final int[] worldRotationVersions;
+    private Vec3 position;
+    private Vec3 rotation;
+    private int rotationVersion;
+    private int worldIndex;
+
+    /**
+     * Constructs a transform at the origin with no rotation.
+     */
+    public Transform() {
+        rotationMatrix = Mat4.identity.clone();
+        worldMatrices = new double[][] { Mat4.identity.clone(), Mat4.identity.clone() };
+        worldRotationVersions = new int[2];
+        position = Vec3.ZERO;
+        rotation = Vec3.ZERO;
+        rotationVersion = 0;
+        worldIndex = 0;
+    }
+
+    /**
+     * Gets the position of the transform.
+     * @return the position of the transform
+     */
+    public Vec3 getPosition() {
+        return position;
+    }
+
+    /**
+     * Sets the position of the transform.
+     * @param position the new position of the transform
+     */
+    public void setPosition(Vec3 position) {
+        this.position = position;
+    }
+
+    /**
+     * Gets the rotation of the transform.
+     * @return the rotation of the transform in radians around each axis
+     */
+    public Vec3 getRotation() {
+        return rotation;
+    }
+
+    /**
+     * Sets the rotation of the transform. The rotation matrix is marked dirty only when
+     * an angle actually changes.
+     * @param rotation the new rotation of the transform in radians around each axis
+     */
+    public void setRotation(Vec3 rotation) {
+        if (rotation.getX() != this.rotation.getX()
+            || rotation.getY() != this.rotation.getY()
+            || rotation.getZ() != this.rotation.getZ())
+        {
+            this.rotation = rotation;
+            rotationVersion++;
+            updateRotationMatrix();
+        }
+    }
+
+    /**
+     * Updates the next world matrix buffer and returns it. The returned matrix stays valid
+     * until the second following call.
+     * @return the world matrix of the transform
+     */
+    public double[] getWorldMatrix() {
+        worldIndex ^= 1;
+        double[] world = worldMatrices[worldIndex];
+
+        if (worldRotationVersions[worldIndex] != rotationVersion) {
+            System.arraycopy(rotationMatrix, 0, world, 0, 12);
+            worldRotationVersions[worldIndex] = rotationVersion;
+        }
+
+        world[12] = position.getX();
+        world[13] = position.getY();
+        world[14] = position.getZ();
+        return world;
+    }
+
+    private void updateRotationMatrix() {
+        double[] matrix = Mat4.mul(Mat4.mul(
+            Mat4.rotateY(rotation.getY()),
+            Mat4.rotateZ(rotation.getZ())),
+            Mat4.rotateX(rotation.getX()));
+        System.arraycopy(matrix, 0, rotationMatrix, 0, 16);
+    }
+}
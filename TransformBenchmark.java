@@ -0,0 +1,75 @@
+import java.util.Random;
+
+/**
+ * A transform benchmark compares building a vehicle world matrix from scratch every frame with
+ * the cached matrices of Transform, over many vehicles that all move every frame but only some
+ * of which turn.
+ */
+public class TransformBenchmark {
+    /**
+     * Runs the benchmark and prints the time per vehicle per frame of both methods.
+     * @param args the number of vehicles (default 10000), the number of frames per pass (default 200),
+     *     and the fraction of vehicles that turn every frame (default 0.1)
+     */
+    public static void main(String[] args) {
+        int vehicleCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int frameCount = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        double turningFraction = args.length > 2 ? Double.parseDouble(args[2]) : 0.1;
+
+        Random random = new Random(0L);
+        Vec3[] positions = new Vec3[vehicleCount];
+        Vec3[] rotations = new Vec3[vehicleCount];
+        boolean[] turning = new boolean[vehicleCount];
+        Transform[] transforms = new Transform[vehicleCount];
+
+        for (int i = 0; i < vehicleCount; i++) {
+            positions[i] = new Vec3(random.nextDouble() * 100.0, 0.0, random.nextDouble() * 1000.0);
+            rotations[i] = new Vec3(0.0, random.nextDouble() * 2.0 * Math.PI, 0.0);
+            turning[i] = random.nextDouble() < turningFraction;
+            transforms[i] = new Transform();
+        }
+
+        for (int pass = 0; pass < 5; pass++) {
+            double uncachedChecksum = 0.0;
+            double cachedChecksum = 0.0;
+
+            long start = System.nanoTime();
+            for (int frame = 0; frame < frameCount; frame++) {
+                for (int i = 0; i < vehicleCount; i++) {
+                    Vec3 position = positions[i].withZ(positions[i].getZ() + frame * 0.1);
+                    Vec3 rotation = turning[i] ? rotations[i].withY(rotations[i].getY() + frame * 0.01) : rotations[i];
+                    double[] world = Mat4.mul(Mat4.mul(Mat4.mul(
+                        Mat4.rotateY(rotation.getY()),
+                        Mat4.rotateZ(rotation.getZ())),
+                        Mat4.rotateX(rotation.getX())),
+                        Mat4.translate(position));
+                    uncachedChecksum += world[0] + world[14];
+                }
+            }
+            long uncachedNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int frame = 0; frame < frameCount; frame++) {
+                for (int i = 0; i < vehicleCount; i++) {
+                    Vec3 position = positions[i].withZ(positions[i].getZ() + frame * 0.1);
+                    Vec3 rotation = turning[i] ? rotations[i].withY(rotations[i].getY() + frame * 0.01) : rotations[i];
+                    transforms[i].setPosition(position);
+                    transforms[i].setRotation(rotation);
+                    double[] world = transforms[i].getWorldMatrix();
+                    cachedChecksum += world[0] + world[14];
+                }
+            }
+            long cachedNanos = System.nanoTime() - start;
+
+            double operations = (double) vehicleCount * frameCount;
+            System.out.printf("pass %d: %d vehicles, %.0f%% turning, uncached %.1f ns, cached %.1f ns, %.1fx, %s%n",
+                pass,
+                vehicleCount,
+                turningFraction * 100.0,
+                uncachedNanos / operations,
+                cachedNanos / operations,
+                (double) uncachedNanos / cachedNanos,
+                uncachedChecksum == cachedChecksum ? "identical" : "MISMATCH");
+        }
+    }
+}
@@ -0,0 +1,179 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * An upscaler enlarges back buffers by an integer factor directly on their int rasters,
+ * writing into a pre-allocated output image. Rows are split into bands that are scaled in parallel.
+ */
+public class Upscaler {
+    /**
+     * Repeats every pixel in a scale by scale block.
+     */
+    public static final int NEAREST = 0;
+
+    /**
+     * Smooths diagonal edges using the Scale2x algorithm. Only available with a scale of two.
+     */
+    public static final int SCALE2X = 1;
+
+    private final int width;
+    private final int height;
+    private final int scale;
+    private final int mode;
+    private final BufferedImage output;
+    private final int[] outputPixels;
+    private final List<Callable<Void>> bands;
+    private final ExecutorService executor;
+    private int[] inputPixels;
+
+    /**
+     * Constructs an upscaler.
+     * @param width the width of the images to upscale
+     * @param height the height of the images to upscale
+     * @param scale the integer scaling factor
+     * @param mode the scaling mode, which is either NEAREST or SCALE2X
+     * @param threadCount the number of threads used to scale bands of rows
+     */
+    public Upscaler(int width, int height, int scale, int mode, int threadCount) {
+        if (scale < 1) {
+            throw new IllegalArgumentException("scale >= 1");
+        }
+        if (mode == SCALE2X && scale != 2) {
+            throw new IllegalArgumentException("mode != SCALE2X || scale == 2");
+        }
+
+        this.width = width;
+        this.height = height;
+        this.scale = scale;
+        this.mode = mode;
+        output = new BufferedImage(scale * width, scale * height, BufferedImage.TYPE_INT_RGB);
+        outputPixels = ((DataBufferInt) output.getRaster().getDataBuffer()).getData();
+        bands = new ArrayList<>();
+
+        int bandCount = Math.max(1, Math.min(threadCount, height));
+        for (int i = 0; i < bandCount; i++) {
+            int startRow = height * i / bandCount;
+            int endRow = height * (i + 1) / bandCount;
+            bands.add(() -> {
+                scaleRows(startRow, endRow);
+                return null;
+            });
+        }
+
+        executor = bandCount > 1
+            ? Executors.newFixedThreadPool(bandCount, runnable -> {
+                Thread thread = new Thread(runnable, "Upscaler");
+                thread.setDaemon(true);
+                return thread;
+            })
+            : null;
+    }
+
+    /**
+     * Gets the pre-allocated output image.
+     * @return the output image
+     */
+    public BufferedImage getOutput() {
+        return output;
+    }
+
+    /**
+     * Upscales an image into the output image.
+     * @param image the image to upscale, which must be of type TYPE_INT_RGB and have the upscaler's size
+     * @return the output image
+     */
+    public BufferedImage upscale(BufferedImage image) {
+        inputPixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+        try {
+            if (executor == null) {
+                bands.get(0).call();
+            }
+            else {
+                executor.invokeAll(bands);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+
+        return output;
+    }
+
+    private void scaleRows(int startRow, int endRow) {
+        if (mode == SCALE2X) {
+            scale2xRows(startRow, endRow);
+        }
+        else {
+            nearestRows(startRow, endRow);
+        }
+    }
+
+    private void nearestRows(int startRow, int endRow) {
+        int[] in = inputPixels;
+        int[] out = outputPixels;
+        int outWidth = scale * width;
+
+        for (int y = startRow; y < endRow; y++) {
+            int inRow = y * width;
+            int outRow = y * scale * outWidth;
+            int o = outRow;
+
+            if (scale == 2) {
+                for (int x = 0; x < width; x++) {
+                    int pixel = in[inRow + x];
+                    out[o] = pixel;
+                    out[o + 1] = pixel;
+                    o += 2;
+                }
+            }
+            else {
+                for (int x = 0; x < width; x++) {
+                    int pixel = in[inRow + x];
+                    for (int i = 0; i < scale; i++) {
+                        out[o++] = pixel;
+                    }
+                }
+            }
+
+            for (int i = 1; i < scale; i++) {
+                System.arraycopy(out, outRow, out, outRow + i * outWidth, outWidth);
+            }
+        }
+    }
+
+    private void scale2xRows(int startRow, int endRow) {
+        int[] in = inputPixels;
+        int[] out = outputPixels;
+        int outWidth = 2 * width;
+
+        for (int y = startRow; y < endRow; y++) {
+            int row = y * width;
+            int upRow = y > 0 ? row - width : row;
+            int downRow = y < height - 1 ? row + width : row;
+            int o0 = 2 * y * outWidth;
+            int o1 = o0 + outWidth;
+
+            for (int x = 0; x < width; x++) {
+                int p = in[row + x];
+                int a = in[upRow + x];
+                int d = in[downRow + x];
+                int c = in[row + (x > 0 ? x - 1 : x)];
+                int b = in[row + (x < width - 1 ? x + 1 : x)];
+
+                out[o0++] = c == a && c != d && a != b ? a : p;
+                out[o0++] = a == b && a != c && b != d ? b : p;
+                out[o1++] = d == c && d != b && c != a ? c : p;
+                out[o1++] = b == d && b != a && d != c ? d : p;
+            }
+        }
+    }
+}
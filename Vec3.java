@@ -209,6 +209,18 @@ public final class Vec3 {
         return new Vec3(lhs / rhs.x, lhs / rhs.y, lhs / rhs.z);
     }
 
+    /**
+     * Linearly interpolates between two vectors.
+     * @param from the vector returned when t is zero
+     * @param to the vector returned when t is one
+     * @param t the interpolation factor
+     * @return the interpolated vector
+     */
+    public static Vec3 lerp(Vec3 from, Vec3 to, double t) {
+        double s = 1.0 - t;
+        return new Vec3(from.x * s + to.x * t, from.y * s + to.y * t, from.z * s + to.z * t);
+    }
+
     /**
      * Checks if this vector is equal to another vector.
      * @param o the other vector
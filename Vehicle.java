@@ -4,14 +4,18 @@
  */
 public abstract class Vehicle implements Runnable {
     protected final Scene scene;
-    private final Model model;
+    private volatile Model model;
     private final double maxSpeed;
+    private final Transform transform;
 
     protected Vec3 position;
     protected Vec3 rotation;
     protected Vec3 velocity;
     protected Vec3 acceleration;
+    private Vec3 previousPosition;
+    private Vec3 previousRotation;
     private volatile boolean ticked;
+    private Thread thread;
 
     /**
      * Constructs a vehicle.
@@ -23,10 +27,14 @@ public abstract class Vehicle implements Runnable {
         this.scene = scene;
         this.model = model;
         this.maxSpeed = maxSpeed;
+        model.setOccluder(true);
+        transform = new Transform();
         position = Vec3.ZERO;
         rotation = Vec3.ZERO;
         velocity = Vec3.ZERO;
         acceleration = Vec3.ZERO;
+        previousPosition = position;
+        previousRotation = rotation;
         ticked = false;
     }
 
@@ -44,6 +52,55 @@ public abstract class Vehicle implements Runnable {
      */
     public void setPosition(Vec3 position) {
         this.position = position;
+        previousPosition = position;
+    }
+
+    /**
+     * Gets the model of the vehicle.
+     * @return the model used for the vehicle
+     */
+    public Model getModel() {
+        return model;
+    }
+
+    /**
+     * Replaces the model of the vehicle, such as when a proxy is swapped for the loaded model.
+     * The vehicle is drawn with the new model from the next time it is drawn.
+     * @param model the new model of the vehicle
+     */
+    public void setModel(Model model) {
+        model.setOccluder(true);
+        this.model = model;
+    }
+
+    /**
+     * Gets the velocity of the vehicle.
+     * @return the velocity of the vehicle
+     */
+    public Vec3 getVelocity() {
+        return velocity;
+    }
+
+    /**
+     * Gets the position of the vehicle between the previous and the current simulation step.
+     * @param alpha the interpolation factor, where 0 is the previous step and 1 is the current step
+     * @return the interpolated position of the vehicle
+     */
+    public Vec3 getPosition(double alpha) {
+        return Vec3.lerp(previousPosition, position, alpha);
+    }
+
+    /**
+     * Gets the rotation of the vehicle between the previous and the current simulation step.
+     * Each angle is interpolated along the shortest arc, so wrapping from 2pi to 0 does not spin backwards.
+     * @param alpha the interpolation factor, where 0 is the previous step and 1 is the current step
+     * @return the interpolated rotation of the vehicle
+     */
+    public Vec3 getRotation(double alpha) {
+        return new Vec3(
+            lerpAngle(previousRotation.getX(), rotation.getX(), alpha),
+            lerpAngle(previousRotation.getY(), rotation.getY(), alpha),
+            lerpAngle(previousRotation.getZ(), rotation.getZ(), alpha));
     }
 
     /**
@@ -61,15 +118,81 @@ public abstract class Vehicle implements Runnable {
         ticked = false;
     }
 
+    /**
+     * Starts running the vehicle in its own thread, where it advances one step per rendered frame.
+     */
+    public void start() {
+        thread = new Thread(this, getClass().getSimpleName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Gets the thread started by start.
+     * @return the thread running the vehicle, or null when the vehicle is stepped by the scene
+     */
+    public Thread getThread() {
+        return thread;
+    }
+
+    /**
+     * Stops the thread started by start.
+     */
+    public void stop() {
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
     protected abstract void tick();
 
+    /**
+     * Advances the vehicle by one simulation step. The state before the step is kept
+     * so that draw calls can interpolate between the two latest steps.
+     */
+    public void update() {
+        previousPosition = position;
+        previousRotation = rotation;
+        tick();
+        velocity = Vec3.add(velocity, acceleration);
+
+        if (velocity.sqrMagnitude() >= maxSpeed * maxSpeed) {
+            velocity = Vec3.mul(velocity.normalized(), maxSpeed);
+        }
+
+        position = Vec3.add(position, velocity);
+    }
+
+    /**
+     * Draws the vehicle between the previous and the current simulation step.
+     * @param context the renderer used to draw the vehicle
+     * @param alpha the interpolation factor, where 0 is the previous step and 1 is the current step
+     */
+    public void draw(RenderContext context, double alpha) {
+        draw(context, getPosition(alpha), getRotation(alpha));
+    }
+
+    /**
+     * Draws the vehicle with a given position and rotation instead of its own.
+     * The world matrix is cached, and its rotation is only rebuilt when the rotation changes.
+     * @param context the renderer used to draw the vehicle
+     * @param position the position to draw the vehicle at
+     * @param rotation the rotation to draw the vehicle with
+     */
+    public void draw(RenderContext context, Vec3 position, Vec3 rotation) {
+        transform.setPosition(position);
+        transform.setRotation(rotation);
+        context.drawModel(model, transform.getWorldMatrix());
+    }
+
     protected void draw() {
-        scene.getRenderContext().drawModel(model,
-            Mat4.mul(Mat4.mul(Mat4.mul(
-                Mat4.rotateY(rotation.getY()),
-                Mat4.rotateZ(rotation.getZ())),
-                Mat4.rotateX(rotation.getX())),
-                Mat4.translate(position)));
+        draw(scene.getRenderContext(), 1.0);
+    }
+
+    private static double lerpAngle(double from, double to, double alpha) {
+        double delta = Math.IEEEremainder(to - from, 2.0 * Math.PI);
+        return alpha >= 1.0 ? to : from + delta * alpha;
     }
 
     /**
@@ -78,17 +201,14 @@ public abstract class Vehicle implements Runnable {
     @Override
     public void run() {
         while (!Thread.interrupted()) {
-            tick();
-            velocity = Vec3.add(velocity, acceleration);
+            update();
 
-            if (velocity.sqrMagnitude() >= maxSpeed * maxSpeed) {
-                velocity = Vec3.mul(velocity.normalized(), maxSpeed);
+            while (ticked) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
             }
 
-            position = Vec3.add(position, velocity);
-
-            while (ticked) {}
-
             draw();
             ticked = true;
         }
@@ -0,0 +1,78 @@
+/**
+ * A viewport is a rectangle of the back buffer that a renderer draws the scene into as seen from its
+ * own camera, such as a chase camera beside a rear view.
+ */
+public class Viewport {
+    private final int x;
+    private final int y;
+    private final int width;
+    private final int height;
+    private final Camera camera;
+
+    /**
+     * Constructs a viewport with a new camera.
+     * @param x the left edge of the viewport in the back buffer
+     * @param y the top edge of the viewport in the back buffer
+     * @param width the width of the viewport
+     * @param height the height of the viewport
+     */
+    public Viewport(int x, int y, int width, int height) {
+        this(x, y, width, height, new Camera());
+    }
+
+    /**
+     * Constructs a viewport that shares a camera.
+     * @param x the left edge of the viewport in the back buffer
+     * @param y the top edge of the viewport in the back buffer
+     * @param width the width of the viewport
+     * @param height the height of the viewport
+     * @param camera the camera the viewport is drawn from
+     */
+    public Viewport(int x, int y, int width, int height, Camera camera) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        this.camera = camera;
+    }
+
+    /**
+     * Gets the left edge of the viewport.
+     * @return the x coordinate of the viewport in the back buffer
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Gets the top edge of the viewport.
+     * @return the y coordinate of the viewport in the back buffer
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Gets the width of the viewport.
+     * @return the width in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the height of the viewport.
+     * @return the height in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the camera the viewport is drawn from.
+     * @return the camera of the viewport
+     */
+    public Camera getCamera() {
+        return camera;
+    }
+}